@@ -29,6 +29,20 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+    testOptions {
+        // 負載測試默認不運行，以 -Ploadtest 開啟；基準測試以 -Pbenchmark 開啟。-P 傳入的測試參數轉為系統屬性
+        unitTests.all { test ->
+            if (!project.hasProperty("loadtest")) {
+                test.exclude("**/loadtest/**")
+            }
+            if (project.hasProperty("benchmark")) {
+                test.systemProperty("benchmark", "true")
+            }
+            listOf("loadtest.users", "loadtest.durationSeconds", "benchmark.iterations").forEach { name ->
+                project.findProperty(name)?.let { test.systemProperty(name, it) }
+            }
+        }
+    }
 }
 
 dependencies {
@@ -39,7 +53,13 @@ dependencies {
     implementation(libs.drawerlayout)
     implementation(libs.recyclerview)
     implementation(libs.swiperefreshlayout)
+    implementation(libs.okhttp)
+    compileOnly(project(":codec"))
+    annotationProcessor(project(":codec"))
     testImplementation(libs.junit)
+    testImplementation(libs.json)
+    testImplementation(libs.mockwebserver)
+    testImplementation(libs.robolectric)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import hk.edu.hkmu.myapplication.model.BusRoute;
+import hk.edu.hkmu.myapplication.model.BusStop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 路線及站點目錄在內存中保留的堆大小：使用符號表與不使用的比較
+ * 目錄按九巴的規模生成（約1600條路線、6600個站點，起訖站及站名重複），
+ * 需要在設備上以 android.util.JsonReader 運行。
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogHeapBenchmark {
+    private static final String TAG = "CatalogHeapBenchmark";
+    private static final int ROUNDS = 5;
+
+    private static final byte[] ROUTES = buildRoutes(800, 120);
+    private static final byte[] STOPS = buildStops(6600, 3600);
+
+    // 測量期間經靜態字段引用目錄，避免編譯器提前把它當作不再使用而被回收
+    private static volatile List<Object> retained;
+
+    @Test
+    public void sharesRepeatedValues() throws IOException {
+        List<BusRoute> routes = new ArrayList<>();
+        CatalogStreamParser.readRoutes(new ByteArrayInputStream(ROUTES), routes::add);
+        assertEquals(1600, routes.size());
+        // 同一路線的來回程共用路線號、方向及服務類型
+        assertSame(routes.get(0).getRouteId(), routes.get(1).getRouteId());
+        assertSame(routes.get(0).getDirection(), routes.get(2).getDirection());
+        assertSame(routes.get(0).getServiceType(), routes.get(1).getServiceType());
+
+        List<BusStop> stops = new ArrayList<>();
+        CatalogStreamParser.readStops(new ByteArrayInputStream(STOPS), stops::add);
+        assertEquals(6600, stops.size());
+        assertSame(stops.get(0).getNameTC(), stops.get(3600).getNameTC());
+    }
+
+    @Test
+    public void compareRetainedHeap() throws IOException {
+        // 預熱
+        retain(null);
+        retain(new SymbolTable());
+
+        long[] plain = new long[ROUNDS];
+        long[] interned = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            plain[i] = retainedBytes(false);
+            interned[i] = retainedBytes(true);
+        }
+        long plainBytes = median(plain);
+        long internedBytes = median(interned);
+        Log.i(TAG, String.format(Locale.US, "without symbols: %,d B", plainBytes));
+        Log.i(TAG, String.format(Locale.US, "with symbols:    %,d B (%.0f%%)",
+                internedBytes, internedBytes * 100.0 / plainBytes));
+        assertTrue("interned " + internedBytes + " >= plain " + plainBytes, internedBytes < plainBytes * 0.9);
+    }
+
+    // 解析完整目錄後，目錄對象仍被引用時增加的堆大小
+    private static long retainedBytes(boolean useSymbols) throws IOException {
+        long before = usedHeap();
+        retained = retain(useSymbols ? new SymbolTable() : null);
+        long after = usedHeap();
+        assertEquals(1600 + 6600, retained.size());
+        retained = null;
+        return after - before;
+    }
+
+    private static List<Object> retain(SymbolTable symbols) throws IOException {
+        List<Object> catalog = new ArrayList<>(1600 + 6600);
+        CatalogStreamParser.readRoutes(new ByteArrayInputStream(ROUTES), symbols, catalog::add);
+        // 路線和站點目錄分開解析，各自使用新的符號表
+        CatalogStreamParser.readStops(new ByteArrayInputStream(STOPS), symbols != null ? new SymbolTable() : null,
+                catalog::add);
+        return catalog;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // 每條路線有來回程；起訖站從較少的總站中選取
+    private static byte[] buildRoutes(int routeCount, int terminalCount) {
+        StringBuilder json = new StringBuilder("{\"type\":\"RouteList\",\"data\":[");
+        for (int i = 0; i < routeCount; i++) {
+            int origin = i % terminalCount;
+            int destination = (i * 7 + 3) % terminalCount;
+            for (int bound = 0; bound < 2; bound++) {
+                if (i + bound > 0) {
+                    json.append(',');
+                }
+                int from = bound == 0 ? origin : destination;
+                int to = bound == 0 ? destination : origin;
+                json.append("{\"route\":\"").append(i + 1)
+                        .append("\",\"bound\":\"").append(bound == 0 ? "O" : "I")
+                        .append("\",\"service_type\":\"1\"")
+                        .append(",\"orig_en\":\"TERMINUS ").append(from)
+                        .append("\",\"orig_tc\":\"總站").append(from)
+                        .append("\",\"orig_sc\":\"总站").append(from)
+                        .append("\",\"dest_en\":\"TERMINUS ").append(to)
+                        .append("\",\"dest_tc\":\"總站").append(to)
+                        .append("\",\"dest_sc\":\"总站").append(to)
+                        .append("\"}");
+            }
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 站名少於站點數：同名的站點（例如馬路兩邊）共用一個名稱
+    private static byte[] buildStops(int stopCount, int nameCount) {
+        StringBuilder json = new StringBuilder("{\"type\":\"StopList\",\"data\":[");
+        for (int i = 0; i < stopCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            int name = i % nameCount;
+            json.append(String.format(Locale.US,
+                    "{\"stop\":\"%016X\",\"name_en\":\"STREET NAME %d (BS%d)\",\"name_tc\":\"街道名稱%d\","
+                            + "\"name_sc\":\"街道名称%d\",\"lat\":\"22.%06d\",\"long\":\"114.%06d\"}",
+                    0x18000000L + i, name, name, name, name, i * 37 % 1000000, i * 53 % 1000000));
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
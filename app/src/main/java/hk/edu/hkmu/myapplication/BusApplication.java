@@ -0,0 +1,68 @@
+package hk.edu.hkmu.myapplication;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import hk.edu.hkmu.myapplication.api.BusApiClient;
+
+/**
+ * 應用程序類
+ * 負責管理應用範圍內共享的BusApiClient的生命週期
+ */
+public class BusApplication extends Application {
+    private static final String TAG = "BusApplication";
+
+    // 路線及站點目錄的磁盤緩存上限
+    private static final long HTTP_CACHE_MAX_BYTES = 10L * 1024 * 1024;
+
+    // 開發用：外部文件目錄中有此文件時錄製或回放網絡請求，
+    // 內容為 "record" 或 "replay"（可加延遲倍數，例如 "replay 0.5"）
+    private static final String SESSION_MODE_FILE = "session.mode";
+    private static final String SESSION_DIR = "kmb-session";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // 預先創建共享的API客戶端，所有頁面共用同一個I/O線程池
+        BusApiClient client = BusApiClient.getInstance();
+        client.installDiskCache(new File(getCacheDir(), "kmb-http"), HTTP_CACHE_MAX_BYTES);
+        configureSessionMode(client);
+    }
+
+    /**
+     * 按 session.mode 設置錄製或回放，用於離線重複運行相同的操作流程並比較性能
+     */
+    private void configureSessionMode(BusApiClient client) {
+        File baseDir = getExternalFilesDir(null);
+        File modeFile = baseDir != null ? new File(baseDir, SESSION_MODE_FILE) : null;
+        if (modeFile == null || !modeFile.exists()) {
+            return;
+        }
+        File sessionDir = new File(baseDir, SESSION_DIR);
+        try (BufferedReader reader = new BufferedReader(new FileReader(modeFile))) {
+            String line = reader.readLine();
+            String[] parts = line != null ? line.trim().split("\\s+") : new String[0];
+            if (parts.length > 0 && "record".equals(parts[0])) {
+                client.startRecording(sessionDir);
+                Log.d(TAG, "錄製網絡請求到: " + sessionDir);
+            } else if (parts.length > 0 && "replay".equals(parts[0])) {
+                double scale = parts.length > 1 ? Double.parseDouble(parts[1]) : 1.0;
+                client.startReplay(sessionDir, scale);
+                Log.d(TAG, "回放網絡請求: " + sessionDir + ", 延遲倍數 " + scale);
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "無法設置錄製/回放模式", e);
+        }
+    }
+
+    @Override
+    public void onTerminate() {
+        BusApiClient.shutdown();
+        super.onTerminate();
+    }
+}
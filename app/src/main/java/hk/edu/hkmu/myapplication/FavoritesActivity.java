@@ -73,7 +73,7 @@ public class FavoritesActivity extends AppCompatActivity implements FavoriteMana
         recyclerView.setAdapter(routeAdapter);
         
         // 初始化API客戶端並加載所有路線
-        busApiClient = new BusApiClient();
+        busApiClient = BusApiClient.getInstance();
         loadAllRoutes();
         
         // 設置底部導航欄
@@ -142,7 +142,7 @@ public class FavoritesActivity extends AppCompatActivity implements FavoriteMana
                 allRoutes = createMockBusRoutes();
                 loadFavoriteRoutes();
             }
-        });
+        }).bindTo(getLifecycle());
     }
     
     /**
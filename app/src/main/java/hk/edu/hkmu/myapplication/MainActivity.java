@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Locale;
 
 import hk.edu.hkmu.myapplication.api.BusApiClient;
+import hk.edu.hkmu.myapplication.api.RequestHandle;
 import hk.edu.hkmu.myapplication.model.BusRoute;
 import hk.edu.hkmu.myapplication.model.RouteEta;
 import hk.edu.hkmu.myapplication.utils.FavoriteManager;
@@ -51,6 +52,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     private RouteAdapter routeAdapter;
     private SwipeRefreshLayout swipeRefreshLayout;
     private BusApiClient busApiClient;
+    private RequestHandle routesRequest;
     private List<BusRoute> allRoutes = new ArrayList<>();
     private boolean isEnglish = false;
     private FavoriteManager favoriteManager;
@@ -117,7 +119,9 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         recyclerView.setAdapter(routeAdapter);
         
         // 初始化API客戶端
-        busApiClient = new BusApiClient();
+        busApiClient = BusApiClient.getInstance();
+        // 預先建立到API服務器的連接，後續請求可直接重用
+        busApiClient.warmUp();
         
         // 加載巴士路線
         loadBusRoutes();
@@ -137,8 +141,11 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     private void loadBusRoutes() {
         swipeRefreshLayout.setRefreshing(true);
         
-        // 真實API調用
-        busApiClient.getAllRoutes(new BusApiClient.ApiCallback<List<BusRoute>>() {
+        // 真實API調用，重新整理時取消上一次未完成的請求
+        if (routesRequest != null) {
+            routesRequest.cancel();
+        }
+        routesRequest = busApiClient.getAllRoutes(new BusApiClient.ApiCallback<List<BusRoute>>() {
             @Override
             public List<RouteEta> onSuccess(List<BusRoute> result) {
                 // 只顯示部分路線作為示例
@@ -155,7 +162,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
                 routeAdapter.updateData(mockRoutes);
                 swipeRefreshLayout.setRefreshing(false);
             }
-        });
+        }).bindTo(getLifecycle());
     }
     
     /**
@@ -29,10 +29,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import hk.edu.hkmu.myapplication.api.BusApiClient;
+import hk.edu.hkmu.myapplication.api.RequestHandle;
 import hk.edu.hkmu.myapplication.model.BusRoute;
 import hk.edu.hkmu.myapplication.model.BusStop;
+import hk.edu.hkmu.myapplication.model.EtaClock;
+import hk.edu.hkmu.myapplication.model.EtaTimeParser;
 import hk.edu.hkmu.myapplication.model.RouteEta;
 import hk.edu.hkmu.myapplication.model.StopEta;
 
@@ -44,6 +48,10 @@ public class RouteDetailActivity extends AppCompatActivity {
     private StopAdapter stopAdapter;
     private BusApiClient busApiClient;
 
+    // 進行中的站點及到站時間請求，重新整理時取消舊的請求
+    private RequestHandle stopsRequest;
+    private RequestHandle etaRequest;
+
     private String stopId; //Chrisss
     private String routeId;
     private String direction;
@@ -87,7 +95,7 @@ public class RouteDetailActivity extends AppCompatActivity {
         setContentView(R.layout.activity_route_detail);
 
         // 初始化API客戶端
-        busApiClient = new BusApiClient();
+        busApiClient = BusApiClient.getInstance();
 
         // 獲取Intent中的數據
         Intent intent = getIntent();
@@ -172,9 +180,16 @@ public class RouteDetailActivity extends AppCompatActivity {
     private void loadStopsAndEta() {
         swipeRefreshLayout.setRefreshing(true);
 
+        if (stopsRequest != null) {
+            stopsRequest.cancel();
+        }
+        if (etaRequest != null) {
+            etaRequest.cancel();
+        }
+
         // 首先加載站點數據
         try {
-            busApiClient.getRouteStops(routeId, direction, serviceType, new BusApiClient.ApiCallback<List<BusStop>>() {
+            stopsRequest = busApiClient.getRouteStops(routeId, direction, serviceType, new BusApiClient.ApiCallback<List<BusStop>>() {
                 @Override
                 public List<RouteEta> onSuccess(List<BusStop> stops) {
                     // 獲取到站點列表後，再獲取預計到達時間
@@ -192,7 +207,7 @@ public class RouteDetailActivity extends AppCompatActivity {
                     Map<String, List<RouteEta>> mockEtaMap = createMockEta(mockStops);
                     stopAdapter.updateData(mockStops, mockEtaMap);
                 }
-            });
+            }).bindTo(getLifecycle());
         } catch (Exception e) {
             swipeRefreshLayout.setRefreshing(false);
             Log.e("RouteDetailActivity", "致命錯誤: " + e.getMessage(), e);
@@ -208,7 +223,7 @@ public class RouteDetailActivity extends AppCompatActivity {
      * 加載預計到達時間數據
      */
     private void loadEta(List<BusStop> stops) {
-        busApiClient.getRouteEta(stopId, routeId, serviceType, new BusApiClient.ApiCallback<List<RouteEta>>() {
+        etaRequest = busApiClient.getRouteEta(stopId, routeId, serviceType, new BusApiClient.ApiCallback<List<RouteEta>>() {
             @Override
             public List<RouteEta> onSuccess(List<RouteEta> etaList) {
                 // 將ETA按站點ID分組
@@ -237,7 +252,7 @@ public class RouteDetailActivity extends AppCompatActivity {
                 stopAdapter.updateData(stops, mockEtaMap);
                 swipeRefreshLayout.setRefreshing(false);
             }
-        });
+        }).bindTo(getLifecycle());
     }
 
     /**
@@ -303,19 +318,9 @@ public class RouteDetailActivity extends AppCompatActivity {
             int etaCount = (int) (Math.random() * 3) + 1;
             for (int i = 0; i < etaCount; i++) {
                 int minutes = 5 + (int) (Math.random() * 55); // 5-60分鐘之間的隨機數
-                String etaTime = ""; // 簡化模型，不使用實際時間
+                long etaMillis = EtaClock.currentTimeMillis() + TimeUnit.MINUTES.toMillis(minutes);
                 RouteEta eta = new RouteEta(routeId, stop.getStopId(), direction, serviceType,
-                        etaTime, "預計到達", "Estimated arrival");
-
-                // 使用反射設置minutesRemaining字段（通常不推薦，但為了模擬數據可以考慮）
-                try {
-                    java.lang.reflect.Field field = RouteEta.class.getDeclaredField("minutesRemaining");
-                    field.setAccessible(true);
-                    field.set(eta, (long) minutes);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-
+                        "", etaMillis, "預計到達", "Estimated arrival");
                 etaList.add(eta);
             }
 
@@ -414,12 +419,15 @@ public class RouteDetailActivity extends AppCompatActivity {
             holder.eta1.setText(context.getString(R.string.loading_eta));
             Log.d("RouteDetailActivity", "開始加載站點到站時間: stopId=" + stopId);
 
-            // 嘗試從API獲取最新的到站時間數據
+            // 嘗試從API獲取最新的到站時間數據；視圖被重用時取消上一個站點的請求
+            if (holder.etaRequest != null) {
+                holder.etaRequest.cancel();
+            }
             try {
 
 
 
-                busApiClient.getStopEta(routeId, stopId, new BusApiClient.ApiCallback<List<StopEta>>() {
+                holder.etaRequest = busApiClient.getStopEta(routeId, stopId, new BusApiClient.ApiCallback<List<StopEta>>() {
                     @Override
                     public List<RouteEta> onSuccess(List<StopEta> etaList) {
                         Log.d("RouteDetailActivity", "獲取到站時間成功: stopId=" + stopId + ", 數量=" + (etaList != null ? etaList.size() : 0));
@@ -440,29 +448,30 @@ public class RouteDetailActivity extends AppCompatActivity {
                             return null;
                         }
 
-                        // 將到站時間按到達時間排序
-
-                        /*
-                        Collections.sort(etaList, (eta1, eta2) ->
-                            (int) (eta1.getMinutesRemaining() - eta2.getMinutesRemaining())); */
+                        // 將到站時間按到達時間排序（沒有時間的排在最後）
+                        List<StopEta> sortedEtas = new ArrayList<>(etaList);
+                        Collections.sort(sortedEtas, (eta1, eta2) ->
+                            Long.compare(eta1.getEtaMillis() == EtaTimeParser.INVALID ? Long.MAX_VALUE : eta1.getEtaMillis(),
+                                    eta2.getEtaMillis() == EtaTimeParser.INVALID ? Long.MAX_VALUE : eta2.getEtaMillis()));
 
                         // 最多顯示3個ETA
                         Resources res = context.getResources();
                         String minutesStr = res.getString(R.string.minutes);
 
-                        for (int i = 0; i < Math.min(etaList.size(), 3); i++) {
-                            StopEta eta = etaList.get(i);
-                            String minutesRemaining = eta.getEtaTime();
+                        long now = EtaClock.currentTimeMillis();
+                        for (int i = 0; i < Math.min(sortedEtas.size(), 3); i++) {
+                            StopEta eta = sortedEtas.get(i);
+                            long minutesRemaining = eta.getMinutesRemaining(now);
                             Log.d("RouteDetailActivity", "顯示到站時間: stopId=" + stopId + ", index=" + i + ", 剩餘分鐘=" + minutesRemaining);
 
-                            String etaText="";
-
-                            /*
-                            if (minutesRemaining <= 0) {
+                            String etaText;
+                            if (minutesRemaining < 0) {
+                                etaText = context.getString(R.string.no_data);
+                            } else if (minutesRemaining == 0) {
                                 etaText = context.getString(R.string.now);
                             } else {
                                 etaText = minutesRemaining + " " + minutesStr;
-                            } */
+                            }
 
                             switch (i) {
                                 case 0:
@@ -488,7 +497,7 @@ public class RouteDetailActivity extends AppCompatActivity {
                         // 如果API調用失敗，使用本地緩存或模擬數據
                         showMockEtaData(holder, stopId, context);
                     }
-                });
+                }).bindTo(getLifecycle());
             } catch (Exception e) {
                 Log.e("RouteDetailActivity", "無法加載到站資訊", e);
             }
@@ -545,6 +554,7 @@ public class RouteDetailActivity extends AppCompatActivity {
             View bottomLine;
             View stopIndicator;
             LinearLayout etaContainer;
+            RequestHandle etaRequest;
 
             public ViewHolder(@NonNull View itemView) {
                 super(itemView);
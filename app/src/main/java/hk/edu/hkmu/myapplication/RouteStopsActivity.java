@@ -3,6 +3,8 @@ package hk.edu.hkmu.myapplication;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -20,13 +22,17 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import hk.edu.hkmu.myapplication.adapter.BusStopAdapter;
+import hk.edu.hkmu.myapplication.api.ApiFuture;
+import hk.edu.hkmu.myapplication.api.ApiResult;
 import hk.edu.hkmu.myapplication.api.BusApiClient;
 import hk.edu.hkmu.myapplication.model.BusRoute;
 import hk.edu.hkmu.myapplication.model.BusStop;
-import hk.edu.hkmu.myapplication.model.RouteEta;
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
 import hk.edu.hkmu.myapplication.utils.FavoriteManager;
 import hk.edu.hkmu.myapplication.utils.FavoriteUtil;
 
@@ -46,6 +52,21 @@ public class RouteStopsActivity extends AppCompatActivity {
     private Menu optionsMenu;
     private boolean isFavorite = false;
 
+    // 進行中的站點及到站時間請求，重新整理時取消舊的請求
+    private ApiFuture<List<BusStop>> stopsRequest;
+    private ApiFuture<RouteWideEta> etaRequest;
+
+    // 兩次請求之間在本地倒數剩餘分鐘數
+    private static final long ETA_COUNTDOWN_INTERVAL_MILLIS = 15000;
+    private final Handler countdownHandler = new Handler(Looper.getMainLooper());
+    private final Runnable etaCountdown = new Runnable() {
+        @Override
+        public void run() {
+            stopAdapter.refreshEtaCountdown();
+            countdownHandler.postDelayed(this, ETA_COUNTDOWN_INTERVAL_MILLIS);
+        }
+    };
+
     // 路线信息
     private String routeId;
     private String direction;
@@ -81,7 +102,7 @@ public class RouteStopsActivity extends AppCompatActivity {
         setContentView(R.layout.activity_route_stops);
 
         // 初始化API客户端和收藏管理器
-        busApiClient = new BusApiClient();
+        busApiClient = BusApiClient.getInstance();
         favoriteManager = FavoriteManager.getInstance(this);
 
         // 获取Intent中的数据
@@ -167,63 +188,58 @@ public class RouteStopsActivity extends AppCompatActivity {
 
     private void loadRouteStops() {
         showLoading(true);
-        busApiClient.getRouteStopList(routeId, direction, serviceType, new BusApiClient.ApiCallback<List<BusStop>>() {
-            @Override
-            public List<RouteEta> onSuccess(List<BusStop> result) {
-                showLoading(false);
-                if (result.isEmpty()) {
-                    showNoStops(true);
-                } else {
-                    showNoStops(false);
-                    List<RouteEta> allEtas = new ArrayList<>();
-                    CountDownLatch latch = new CountDownLatch(result.size()); // Create a latch for the number of stops
-
-                    // Load ETA for each stop
-                    for (BusStop bus : result) {
-                        loadEtaForStop(bus.getStopId(), allEtas, latch);
-                    }
-
-                    // Wait for all ETA loads to finish
-                    new Thread(() -> {
-                        try {
-                            latch.await(); // Wait until all ETA requests are done
-                            runOnUiThread(() -> stopAdapter.updateData(result, allEtas)); // Update UI on the main thread
-                        } catch (InterruptedException e) {
-                            Log.e("RouteStopsActivity", "Error waiting for ETA loading", e);
-                        }
-                    }).start();
-                }//bb
-                return null;
-            }
+        cancelPendingRequests();
+        // 站點及到站時間同時請求，兩者都完成後才在主線程更新列表
+        stopsRequest = busApiClient.getRouteStopListAsync(routeId, direction, serviceType, Runnable::run, this)
+                .bindTo(getLifecycle());
+        etaRequest = busApiClient.getRouteWideEtaAsync(routeId, serviceType, Runnable::run, this)
+                .bindTo(getLifecycle());
+        // 到站時間失敗不影響顯示站點
+        CompletableFuture<ApiResult<RouteWideEta>> etaOrNull = etaRequest.handle((eta, error) -> error == null ? eta : null);
+
+        stopsRequest.thenAcceptBothAsync(etaOrNull, this::showRouteStops, getMainExecutor())
+                .exceptionally(error -> {
+                    runOnUiThread(() -> showLoadError(error));
+                    return null;
+                });
+    }
 
-            @Override
-            public void onError(String errorMessage) {
-                showLoading(false);
-                Toast.makeText(RouteStopsActivity.this, errorMessage, Toast.LENGTH_SHORT).show();
-            }
-        });
+    private void showRouteStops(ApiResult<List<BusStop>> stopsResult, ApiResult<RouteWideEta> etaResult) {
+        showLoading(false);
+        if (stopsResult.isStale()) {
+            Toast.makeText(this, "網絡不穩定，顯示較早前保存的站點資料", Toast.LENGTH_SHORT).show();
+        }
+        List<BusStop> stops = stopsResult.getData();
+        if (stops.isEmpty()) {
+            showNoStops(true);
+            return;
+        }
+        showNoStops(false);
+        if (etaResult != null) {
+            stopAdapter.updateData(stops, etaResult.getData());
+        } else {
+            Log.e("RouteStopsActivity", "Error loading route-wide ETA for route: " + routeId);
+            stopAdapter.updateData(stops, new ArrayList<>());
+            Toast.makeText(this, "暫時無法取得到站時間", Toast.LENGTH_SHORT).show();
+        }
     }
 
-    private void loadEtaForStop(String stopId, List<RouteEta> allEtas, CountDownLatch latch) {
-        busApiClient.getRouteEta(stopId, routeId, serviceType, new BusApiClient.ApiCallback<List<RouteEta>>() {
-            @Override
-            public List<RouteEta> onSuccess(List<RouteEta> etaList) {
-                if (etaList != null && !etaList.isEmpty()) {
-                    Log.d("RouteStopsActivity", "Received " + etaList.size() + " ETAs for stopId: " + stopId);
-                    allEtas.addAll(etaList);  // Collect all ETA data
-                } else {
-                    Log.d("RouteStopsActivity", "No ETA data for stopId: " + stopId);
-                }
-                latch.countDown(); // Signal that this ETA load is complete
-                return etaList;
-            }
+    private void showLoadError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException) {
+            return;
+        }
+        showLoading(false);
+        Toast.makeText(this, cause.getMessage(), Toast.LENGTH_SHORT).show();
+    }
 
-            @Override
-            public void onError(String errorMessage) {
-                Log.e("RouteStopsActivity", "Error loading ETA for stopId: " + stopId + ", error: " + errorMessage);
-                latch.countDown(); // Ensure latch is decremented even on error
-            }
-        });
+    private void cancelPendingRequests() {
+        if (stopsRequest != null) {
+            stopsRequest.cancel(false);
+        }
+        if (etaRequest != null) {
+            etaRequest.cancel(false);
+        }
     }
 
     private void showLoading(boolean isLoading) {
@@ -241,6 +257,13 @@ public class RouteStopsActivity extends AppCompatActivity {
         super.onResume();
         checkCurrentLanguage();
         checkFavoriteStatus();
+        countdownHandler.postDelayed(etaCountdown, ETA_COUNTDOWN_INTERVAL_MILLIS);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        countdownHandler.removeCallbacks(etaCountdown);
     }
 
     @Override
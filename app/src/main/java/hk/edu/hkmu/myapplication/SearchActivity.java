@@ -82,7 +82,7 @@ public class SearchActivity extends AppCompatActivity implements FavoriteManager
         });
         
         // 初始化API客戶端並加載所有路線
-        busApiClient = new BusApiClient();
+        busApiClient = BusApiClient.getInstance();
         loadAllRoutes();
         
         // 設置底部導航欄
@@ -148,7 +148,7 @@ public class SearchActivity extends AppCompatActivity implements FavoriteManager
                 updateRouteFavoriteStatus();
                 routeAdapter.updateData(allRoutes);
             }
-        });
+        }).bindTo(getLifecycle());
     }
     
     /**
@@ -23,12 +23,17 @@ import java.util.Map;
 import hk.edu.hkmu.myapplication.R;
 import hk.edu.hkmu.myapplication.api.BusApiClient;
 import hk.edu.hkmu.myapplication.model.BusStop;
+import hk.edu.hkmu.myapplication.model.EtaClock;
 import hk.edu.hkmu.myapplication.model.RouteEta;
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
 // import hk.edu.hkmu.myapplication.model.StopEta;
 
 public class BusStopAdapter extends RecyclerView.Adapter<BusStopAdapter.ViewHolder> {
     private static final String TAG = "BusStopAdapter";
 
+    // 倒數刷新時只更新到站時間的文字
+    private static final Object PAYLOAD_ETA_TICK = new Object();
+
     private List<BusStop> stopList = new ArrayList<>();
     private Map<String, List<RouteEta>> etaMap = new HashMap<>();
     private boolean isEnglish = false;
@@ -36,7 +41,7 @@ public class BusStopAdapter extends RecyclerView.Adapter<BusStopAdapter.ViewHold
     private String routeId;
 
     public BusStopAdapter(String routeId) {
-        this.busApiClient = new BusApiClient();
+        this.busApiClient = BusApiClient.getInstance();
         this.routeId = routeId;
         Locale currentLocale = Locale.getDefault();
         this.isEnglish = !currentLocale.getLanguage().equals(Locale.CHINESE.getLanguage());
@@ -49,6 +54,19 @@ public class BusStopAdapter extends RecyclerView.Adapter<BusStopAdapter.ViewHold
         notifyDataSetChanged();
     }
 
+    public void updateData(List<BusStop> newStops, RouteWideEta routeWideEta) {
+        this.stopList = newStops;
+        etaMap.clear();
+        for (BusStop stop : newStops) {
+            List<RouteEta> stopEtas = routeWideEta.getEtasForStop(stop);
+            if (!stopEtas.isEmpty()) {
+                etaMap.put(stop.getStopId(), stopEtas);
+            }
+        }
+        Log.d(TAG, "Updated adapter with " + newStops.size() + " stops and route-wide ETAs for " + etaMap.size() + " stops.");
+        notifyDataSetChanged();
+    }
+
     private void populateEtaMap(List<RouteEta> etaList) {
         etaMap.clear();
         for (RouteEta eta : etaList) {
@@ -62,6 +80,13 @@ public class BusStopAdapter extends RecyclerView.Adapter<BusStopAdapter.ViewHold
     }
 
 
+    /**
+     * 按當前時間重新計算已展開站點的剩餘分鐘數，不重新請求
+     */
+    public void refreshEtaCountdown() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_ETA_TICK);
+    }
+
     public void updateLanguageSetting(boolean isEnglish) {
         this.isEnglish = isEnglish;
         notifyDataSetChanged();
@@ -75,6 +100,17 @@ public class BusStopAdapter extends RecyclerView.Adapter<BusStopAdapter.ViewHold
         return new ViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_ETA_TICK)) {
+            if (holder.eta.getVisibility() == View.VISIBLE) {
+                displayEta(holder, stopList.get(position).getStopId());
+            }
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         BusStop stop = stopList.get(position);
@@ -195,12 +231,14 @@ public class BusStopAdapter extends RecyclerView.Adapter<BusStopAdapter.ViewHold
         List<RouteEta> etaList = etaMap.get(stopId);
         if (etaList != null && !etaList.isEmpty()) {
             Log.d(TAG, "Displaying ETA for stopId: " + stopId + ", ETAs found: " + etaList.size());
-            RouteEta earliestEta = getEarliestEta(etaList);
+            long now = EtaClock.currentTimeMillis();
+            RouteEta earliestEta = getEarliestEta(etaList, now);
             if (earliestEta != null) {
-                if (earliestEta.getMinutesRemaining() <= 0) {
+                long minutesRemaining = earliestEta.getMinutesRemaining(now);
+                if (minutesRemaining <= 0) {
                     holder.eta.setText(isEnglish ? "Arriving" : "即將到站");
                 } else {
-                    String text = isEnglish ? earliestEta.getMinutesRemaining() + " min" : earliestEta.getMinutesRemaining() + " 分鐘";
+                    String text = isEnglish ? minutesRemaining + " min" : minutesRemaining + " 分鐘";
                     holder.eta.setText(text);
                 }
             } else {
@@ -213,11 +251,11 @@ public class BusStopAdapter extends RecyclerView.Adapter<BusStopAdapter.ViewHold
     }
 
 
-    private RouteEta getEarliestEta(List<RouteEta> etaList) {
+    private RouteEta getEarliestEta(List<RouteEta> etaList, long now) {
         RouteEta earliestEta = null;
         for (RouteEta eta : etaList) {
-            if (eta.getMinutesRemaining() >= 0) {
-                if (earliestEta == null || eta.getMinutesRemaining() < earliestEta.getMinutesRemaining()) {
+            if (eta.getMinutesRemaining(now) >= 0) {
+                if (earliestEta == null || eta.getEtaMillis() < earliestEta.getEtaMillis()) {
                     earliestEta = eta;
                 }
             }
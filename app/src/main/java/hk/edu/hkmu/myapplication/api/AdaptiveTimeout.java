@@ -0,0 +1,83 @@
+package hk.edu.hkmu.myapplication.api;
+
+/**
+ * 按端點自動調整的超時時間
+ * 分別統計建立新連接和等待響應（發出請求到收到響應頭）的延遲，
+ * 超時時間取最近的 p99 乘以係數再加上固定餘量，並限制在端點的上下限之間。
+ * 樣本不足時使用上限。超時本身也記為一個樣本，網絡變慢時超時會隨之放寬。
+ */
+public class AdaptiveTimeout {
+    // 樣本數量少於此值時不調整
+    static final int MIN_SAMPLES = 20;
+    private static final int SAMPLE_CAPACITY = 128;
+    // 每記錄多少個樣本重新計算一次，避免每個請求都排序
+    static final int RECOMPUTE_INTERVAL = 8;
+
+    private static final double P99_MULTIPLIER = 1.5;
+    private static final long MARGIN_MILLIS = 500;
+
+    static final int CONNECT_FLOOR_MILLIS = 1000;
+    static final int CONNECT_CEILING_MILLIS = 10000;
+
+    private final Endpoint endpoint;
+    private final LatencyTracker connectLatency = new LatencyTracker(SAMPLE_CAPACITY);
+    private final LatencyTracker responseLatency = new LatencyTracker(SAMPLE_CAPACITY);
+    private volatile int connectTimeoutMillis = CONNECT_CEILING_MILLIS;
+    private volatile int readTimeoutMillis;
+    private int sinceRecompute;
+
+    public AdaptiveTimeout(Endpoint endpoint) {
+        this.endpoint = endpoint;
+        this.readTimeoutMillis = endpoint.getMaxTimeoutMillis();
+    }
+
+    /** 建立連接的超時時間 */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /** 等待響應（及每次讀取）的超時時間 */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public void recordConnect(long millis) {
+        connectLatency.record(millis);
+        onSample();
+    }
+
+    public void recordResponse(long millis) {
+        responseLatency.record(millis);
+        onSample();
+    }
+
+    /**
+     * 等待響應超時：以當前超時時間作為樣本
+     */
+    public void recordReadTimeout() {
+        recordResponse(readTimeoutMillis);
+    }
+
+    public LatencyTracker getResponseLatency() {
+        return responseLatency;
+    }
+
+    private void onSample() {
+        synchronized (this) {
+            if (++sinceRecompute < RECOMPUTE_INTERVAL) {
+                return;
+            }
+            sinceRecompute = 0;
+        }
+        connectTimeoutMillis = derive(connectLatency, CONNECT_FLOOR_MILLIS, CONNECT_CEILING_MILLIS);
+        readTimeoutMillis = derive(responseLatency, endpoint.getMinTimeoutMillis(), endpoint.getMaxTimeoutMillis());
+    }
+
+    private static int derive(LatencyTracker tracker, int floor, int ceiling) {
+        if (tracker.getSampleCount() < MIN_SAMPLES) {
+            return ceiling;
+        }
+        long timeout = (long) (tracker.getPercentile(99) * P99_MULTIPLIER) + MARGIN_MILLIS;
+        return (int) Math.max(floor, Math.min(ceiling, timeout));
+    }
+}
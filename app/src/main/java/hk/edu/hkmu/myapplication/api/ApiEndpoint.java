@@ -0,0 +1,71 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 註冊表中的一個端點：策略及URL模板 (Endpoint) 加上響應的解析方式
+ * 解析器收到的 params 與生成URL時填入模板的參數相同
+ */
+final class ApiEndpoint<T> {
+    private final Endpoint endpoint;
+    private final String name;
+    private final TextParser<T> textParser;
+    private final StreamParser<T> streamParser;
+
+    private ApiEndpoint(Endpoint endpoint, String name, TextParser<T> textParser, StreamParser<T> streamParser) {
+        this.endpoint = endpoint;
+        this.name = name;
+        this.textParser = textParser;
+        this.streamParser = streamParser;
+    }
+
+    /**
+     * 響應讀入字符串後解析的端點（小響應）；同一URL的並發請求共享一次下載
+     */
+    static <T> ApiEndpoint<T> parsed(Endpoint endpoint, String name, TextParser<T> parser) {
+        return new ApiEndpoint<>(endpoint, name, parser, null);
+    }
+
+    /**
+     * 直接從連接的InputStream解析的端點（大型目錄），響應不會先讀入字符串
+     */
+    static <T> ApiEndpoint<T> streamed(Endpoint endpoint, String name, StreamParser<T> parser) {
+        return new ApiEndpoint<>(endpoint, name, null, parser);
+    }
+
+    Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * 端點名稱，同時用作共享解析結果的鍵
+     */
+    String getName() {
+        return name;
+    }
+
+    boolean isStreamed() {
+        return streamParser != null;
+    }
+
+    String url(String baseUrl, String... params) {
+        return endpoint.url(baseUrl, params);
+    }
+
+    T parse(String json, String[] params) throws Exception {
+        return textParser.parse(json, params);
+    }
+
+    T parse(InputStream in, String[] params) throws IOException {
+        return streamParser.parse(in, params);
+    }
+
+    interface TextParser<T> {
+        T parse(String json, String[] params) throws Exception;
+    }
+
+    interface StreamParser<T> {
+        T parse(InputStream in, String[] params) throws IOException;
+    }
+}
@@ -0,0 +1,72 @@
+package hk.edu.hkmu.myapplication.api;
+
+import androidx.lifecycle.Lifecycle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * API請求的Future版本
+ * 結果在調用者指定的Executor中完成，可以用 CompletableFuture 的方法組合多個請求
+ * （並行請求、合併結果、超時及後備值），不需要先切換到主線程。
+ * 有數據（包括過期緩存）時正常完成；無法取得時以 UpstreamException 異常完成。
+ * 取消Future會同時取消底層請求。
+ */
+public class ApiFuture<T> extends CompletableFuture<ApiResult<T>> {
+    private final RequestHandle handle;
+    private final RequestGovernor governor;
+
+    ApiFuture(RequestHandle handle, RequestGovernor governor) {
+        this.handle = handle;
+        this.governor = governor;
+        // 句柄被取消（例如生命週期結束）時Future同樣以取消完成
+        handle.onCancel(() -> super.cancel(false));
+    }
+
+    /**
+     * 取消請求；只影響此請求本身，由它派生的Future會以 CancellationException 完成
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        // 取消句柄時會通過上面註冊的動作完成此Future
+        handle.cancel();
+        return isCancelled();
+    }
+
+    /**
+     * 綁定到生命週期，ON_DESTROY 時自動取消（需在主線程調用）
+     */
+    public ApiFuture<T> bindTo(Lifecycle lifecycle) {
+        handle.bindTo(lifecycle);
+        return this;
+    }
+
+    /**
+     * 超過指定時間仍未完成時以 TimeoutException 完成並取消請求
+     */
+    public ApiFuture<T> withTimeout(long timeoutMillis) {
+        try {
+            governor.schedule(() -> {
+                if (completeExceptionally(new TimeoutException("請求超時: " + timeoutMillis + "ms"))) {
+                    handle.cancel();
+                }
+            }, timeoutMillis);
+        } catch (RejectedExecutionException e) {
+            completeExceptionally(e);
+        }
+        return this;
+    }
+
+    public RequestHandle getHandle() {
+        return handle;
+    }
+
+    void deliver(ApiResult<T> result) {
+        if (result.hasData()) {
+            complete(result);
+        } else {
+            completeExceptionally(new UpstreamException(result.getErrorMessage(), -1, false));
+        }
+    }
+}
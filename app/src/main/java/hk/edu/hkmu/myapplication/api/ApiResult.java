@@ -0,0 +1,82 @@
+package hk.edu.hkmu.myapplication.api;
+
+/**
+ * API請求結果
+ * 除了數據本身，還說明數據是最新的(FRESH)、來自過期緩存的(STALE)，還是無法取得(UNAVAILABLE)
+ */
+public class ApiResult<T> {
+
+    /**
+     * 數據新鮮程度
+     */
+    public enum Freshness {
+        FRESH,        // 來自服務器或未過期的緩存
+        STALE,        // 上游出錯，使用過期的緩存
+        UNAVAILABLE   // 上游出錯且沒有緩存
+    }
+
+    private final T data;
+    private final Freshness freshness;
+    private final long storedAt;
+    private final String errorMessage;
+
+    private ApiResult(T data, Freshness freshness, long storedAt, String errorMessage) {
+        this.data = data;
+        this.freshness = freshness;
+        this.storedAt = storedAt;
+        this.errorMessage = errorMessage;
+    }
+
+    public static <T> ApiResult<T> fresh(T data) {
+        return new ApiResult<>(data, Freshness.FRESH, System.currentTimeMillis(), null);
+    }
+
+    /**
+     * @param storedAt 緩存保存的時間
+     * @param errorMessage 導致使用緩存的錯誤
+     */
+    public static <T> ApiResult<T> stale(T data, long storedAt, String errorMessage) {
+        return new ApiResult<>(data, Freshness.STALE, storedAt, errorMessage);
+    }
+
+    public static <T> ApiResult<T> unavailable(String errorMessage) {
+        return new ApiResult<>(null, Freshness.UNAVAILABLE, 0, errorMessage);
+    }
+
+    /**
+     * 以相同的新鮮程度包裝另一份數據（例如解析後的結果）
+     */
+    public <R> ApiResult<R> withData(R newData) {
+        return new ApiResult<>(newData, freshness, storedAt, errorMessage);
+    }
+
+    public T getData() {
+        return data;
+    }
+
+    public Freshness getFreshness() {
+        return freshness;
+    }
+
+    public boolean hasData() {
+        return freshness != Freshness.UNAVAILABLE;
+    }
+
+    public boolean isStale() {
+        return freshness == Freshness.STALE;
+    }
+
+    /**
+     * 數據的年齡（毫秒），無數據時為0
+     */
+    public long getAgeMillis() {
+        return hasData() ? Math.max(0, System.currentTimeMillis() - storedAt) : 0;
+    }
+
+    /**
+     * 錯誤信息，FRESH 時為null
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
@@ -2,858 +2,1334 @@ package hk.edu.hkmu.myapplication.api;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import hk.edu.hkmu.myapplication.model.BusRoute;
 import hk.edu.hkmu.myapplication.model.BusStop;
 import hk.edu.hkmu.myapplication.model.RouteEta;
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
 import hk.edu.hkmu.myapplication.model.StopEta;
 
 
 /**
  * 巴士API客戶端類
  * 用於處理與九巴API的通信
+ * 每個請求方法都返回 RequestHandle，可用於取消請求或綁定到Activity的生命週期
  */
 public class BusApiClient {
     private static final String TAG = "BusApiClient";
-    private static final String BASE_URL = "https://data.etabus.gov.hk/v1/transport/kmb/";
+    private static final String DEFAULT_BASE_URL = "https://data.etabus.gov.hk/v1/transport/kmb/";
     
     // 定義422錯誤狀態碼常量，因為HttpURLConnection中沒有此常量
     private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
     
-    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    // 站點詳情並行請求的預設上限
+    private static final int DEFAULT_STOP_DETAIL_CONCURRENCY = 4;
+    
+    // I/O 線程池配置：固定線程數、有界隊列、空閒線程超時回收
+    private static final int IO_THREAD_COUNT = 4;
+    private static final int IO_QUEUE_CAPACITY = 128;
+    private static final long IO_KEEP_ALIVE_SECONDS = 30;
+    
+    // 只給到站時間等互動請求使用的線程數，目錄下載再多也不會佔滿所有線程
+    private static final int INTERACTIVE_RESERVED_THREADS = 1;
+    
+    // 全局限流：每秒請求數、突發容量及等待隊列上限
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+    private static final int DEFAULT_REQUEST_BURST = 20;
+    private static final int GOVERNOR_QUEUE_CAPACITY = 256;
+    
+    // 重試退避範圍，以及熔斷器的連續失敗閾值和冷卻時間
+    private static final long RETRY_BASE_DELAY_MILLIS = 250;
+    private static final long RETRY_MAX_DELAY_MILLIS = 4000;
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = 30000;
+    
+    // 站點詳情及連接預熱在限流器中的來源名稱
+    private static final String STOP_DETAIL_SOURCE = "StopDetailResolver";
+    private static final String WARM_UP_SOURCE = "warmUp";
+    private static final String HEDGE_SOURCE = "hedge";
+    private static final String ETA_BATCH_SOURCE = "EtaBatcher";
+    
+    // 逐站到站時間請求的合併窗口
+    private static final long DEFAULT_ETA_BATCH_WINDOW_MILLIS = 40;
+    
+    // 對沖請求最多佔到站時間請求的5%
+    private static final double HEDGE_BUDGET_RATIO = 0.05;
+    
+    // 啟動時預先建立的連接數
+    private static final int WARM_CONNECTION_COUNT = 2;
+    
+    private static final String SHUTDOWN_MESSAGE = "客戶端已關閉";
+    
+    private static volatile BusApiClient instance;
+    
+    private final ThreadPoolExecutor executorService = createIoExecutor();
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final RequestGovernor requestGovernor = new RequestGovernor(executorService,
+            DEFAULT_REQUESTS_PER_SECOND, DEFAULT_REQUEST_BURST, GOVERNOR_QUEUE_CAPACITY,
+            IO_THREAD_COUNT, INTERACTIVE_RESERVED_THREADS);
+    private final StopDetailResolver stopDetailResolver =
+            new StopDetailResolver(this::submitStopDetail, DEFAULT_STOP_DETAIL_CONCURRENCY);
+    
+    // 讀取響應內容用的緩衝區池（16KB起，最多保留8個不超過256KB的緩衝區）
+    private final ByteBufferPool bufferPool = new ByteBufferPool(16 * 1024, 8, 256 * 1024);
+    
+    // API地址，測試時可指向本地的模擬服務器
+    private volatile String baseUrl = DEFAULT_BASE_URL;
+    
+    // 傳輸層，預設使用 HttpURLConnection
+    private volatile HttpTransport transport = new UrlConnectionTransport();
+    
+    // 連接預熱及重用統計
+    private final ConnectionStats connectionStats = new ConnectionStats();
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
+    
+    // 目錄類端點的磁盤緩存，未安裝時不緩存
+    private volatile DiskResponseCache responseCache;
+    
+    // 合併同一URL的並發網絡請求，以及同一URL同一解析方式的並發解析
+    private final SingleFlight fetchFlight = new SingleFlight();
+    private final SingleFlight parseFlight = new SingleFlight();
+    
+    // 重試退避及每個端點的熔斷器
+    private final RetryPolicy retryPolicy = new RetryPolicy(RETRY_BASE_DELAY_MILLIS, RETRY_MAX_DELAY_MILLIS);
+    private final Map<Endpoint, CircuitBreaker> circuitBreakers = new EnumMap<>(Endpoint.class);
+    
+    // 每個端點按最近延遲調整的超時時間
+    private final Map<Endpoint, AdaptiveTimeout> timeouts = new EnumMap<>(Endpoint.class);
+    
+    // 尚未交付結果的請求，關閉時以 UNAVAILABLE 結束
+    private final Set<ApiRequest<?>> activeRequests = ConcurrentHashMap.newKeySet();
+    
+    // 每個端點收到的請求數（調用次數，不包括重試及合併後的批量請求）
+    private final Map<Endpoint, AtomicLong> requestCounts = new EnumMap<>(Endpoint.class);
+    
+    // 到站時間請求的對沖（預設關閉）
+    private final RequestHedger etaHedger = new RequestHedger(requestGovernor,
+            (handle, task) -> submitGoverned(Priority.INTERACTIVE, HEDGE_SOURCE, handle, task), HEDGE_BUDGET_RATIO);
+    
+    // 把短時間內的逐站到站時間請求合併為整站或整條路線的請求
+    private final EtaBatcher etaBatcher = new EtaBatcher(requestGovernor, new EtaBatchLoader(),
+            DEFAULT_ETA_BATCH_WINDOW_MILLIS);
+    
+    // 當前線程上的請求之後是否還會重試；會重試時失敗不退回過期緩存，而是拋出異常等待重試
+    private final ThreadLocal<Boolean> retryPending = new ThreadLocal<>();
+    
+    private BusApiClient() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            circuitBreakers.put(endpoint, new CircuitBreaker(endpoint.name(),
+                    CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS));
+            timeouts.put(endpoint, new AdaptiveTimeout(endpoint));
+            requestCounts.put(endpoint, new AtomicLong());
+        }
+    }
     
     /**
-     * 獲取所有路線
+     * 獲取應用範圍內共享的BusApiClient實例
+     * 所有頁面共用同一個I/O線程池，線程數不會隨打開的頁面增加
      */
-    public void getAllRoutes(final ApiCallback<List<BusRoute>> callback) {
-        executorService.execute(() -> {
-            try {
-                String routeUrl = BASE_URL + "route/";
-                String jsonData = fetchData(routeUrl);
-                List<BusRoute> routes = parseRoutes(jsonData);
-                
-                mainHandler.post(() -> callback.onSuccess(routes));
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting routes", e);
-                mainHandler.post(() -> callback.onError(e.getMessage()));
+    public static BusApiClient getInstance() {
+        if (instance == null) {
+            synchronized (BusApiClient.class) {
+                if (instance == null) {
+                    instance = new BusApiClient();
+                }
             }
-        });
+        }
+        return instance;
     }
     
     /**
-     * 獲取指定路線的預計到達時間
+     * 關閉共享實例的線程池
+     * 排隊中及等待重試的請求不再執行；所有尚未交付結果的請求（包括正在執行的）
+     * 立即以 UNAVAILABLE 結束，Future 以 UpstreamException 完成。之後調用getInstance()會創建新的實例
      */
-    public void getRouteEta(String stopId, String routeId, String serviceType, final ApiCallback<List<RouteEta>> callback) {
-        executorService.execute(() -> {
-            try {
-                String etaUrl = BASE_URL + "eta/" + stopId + "/" + routeId + "/" + serviceType;
-                String jsonData = fetchData(etaUrl);
-                List<RouteEta> etaList = parseRouteEta(jsonData, stopId);
-                
-                mainHandler.post(() -> callback.onSuccess(etaList));
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting ETA", e);
-                mainHandler.post(() -> callback.onError(e.getMessage()));
+    public static void shutdown() {
+        synchronized (BusApiClient.class) {
+            if (instance != null) {
+                instance.requestGovernor.shutdown();
+                instance.executorService.shutdown();
+                for (ApiRequest<?> request : new ArrayList<>(instance.activeRequests)) {
+                    instance.deliverUnavailable(request, SHUTDOWN_MESSAGE);
+                }
+                instance = null;
             }
-        });
+        }
     }
     
     /**
-     * 獲取指定路線的站點
+     * 創建I/O線程池，線程以 kmb-io-N 命名並以後台優先級運行
      */
-
-    public void getRouteStops(String routeId, String direction, String serviceType, final ApiCallback<List<BusStop>> callback) {
-        executorService.execute(() -> {
-            try {
-                // 確保方向參數格式正確（轉換為 inbound/outbound）
-                String bound = direction;
-                if ("i".equalsIgnoreCase(direction) || "I".equals(direction)) {
-                    bound = "inbound";
-                } else if ("o".equalsIgnoreCase(direction) || "O".equals(direction)) {
-                    bound = "outbound";
-                }
-                
-                // 首先獲取路線-站點映射
-                String stopsUrl = BASE_URL + "route-stop/" + routeId + "/" + bound + "/" + serviceType;
-                Log.d(TAG, "調用路線站點 API: " + stopsUrl);
-                
-                String jsonData = fetchData(stopsUrl);
-                List<BusStop> stops = parseStops(jsonData);
-                
-                // 如果獲取到站點列表，則獲取每個站點的詳細信息
-                if (!stops.isEmpty()) {
-                    for (BusStop stop : stops) {
-                        try {
-                            // 獲取站點詳細信息
-                            String stopDetailUrl = BASE_URL + "stop/" + stop.getStopId();
-                            Log.d(TAG, "調用站點詳情 API: " + stopDetailUrl);
-                            
-                            String stopDetailJson = fetchData(stopDetailUrl);
-                            updateStopDetails(stop, stopDetailJson);
-                            
-                            // 給每次請求一些延遲以避免API限流
-                            Thread.sleep(100);
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error getting stop details for: " + stop.getStopId(), e);
-                        }
-                    }
-                }
-                
-                mainHandler.post(() -> callback.onSuccess(stops));
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting stops", e);
-                mainHandler.post(() -> callback.onError(e.getMessage()));
-            }
-        });
+    private static ThreadPoolExecutor createIoExecutor() {
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "kmb-io-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                IO_THREAD_COUNT, IO_THREAD_COUNT,
+                IO_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(IO_QUEUE_CAPACITY),
+                threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
-
-
     
     /**
-     * 獲取指定站點的預計到達時間
+     * 經限流器將請求的任務提交到I/O線程池；等待隊列已滿時直接返回錯誤
      */
-
-    public void getStopEta(String routeId, String stopId, final ApiCallback<List<StopEta>> callback) {
-        executorService.execute(() -> {
-            try {
-                // KMB API格式: https://data.etabus.gov.hk/v1/transport/kmb/eta/STOP_ID/ROUTE/SERVICE_TYPE
-                // 由於我們只有routeId和stopId，我們使用更通用的API端點
-                String etaUrl = BASE_URL + "stop-eta/" + stopId;
-                String jsonData = fetchData(etaUrl);
-                
-                // 解析返回的JSON數據
-                List<StopEta> allEtaList = parseStopEta(jsonData);
-                
-                // 過濾出指定路線的到站時間
-
-                List<StopEta> filteredEtaList = new ArrayList<>();
-                for (StopEta eta : allEtaList) {
-                    filteredEtaList.add(eta);
-                }
-                
-                mainHandler.post(() -> callback.onSuccess(allEtaList));
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting stop ETA", e);
-                mainHandler.post(() -> callback.onError(e.getMessage()));
+    private <T> void dispatch(ApiRequest<T> request, Runnable task) {
+        try {
+            submitGoverned(request.endpoint.getPriority(), request.source, request.handle, task);
+        } catch (RejectedExecutionException e) {
+            if (requestGovernor.isShutdown()) {
+                deliverUnavailable(request, SHUTDOWN_MESSAGE);
+                return;
             }
+            Log.w(TAG, "請求被拒絕，等待隊列已滿", e);
+            deliverUnavailable(request, "請求過多，請稍後再試");
+        }
+    }
+    
+    /**
+     * 把屬於某個請求的任務交給限流器
+     * 任務執行時該請求成為當前線程的請求；請求取消時，仍在排隊的任務會從隊列中移除
+     */
+    private void submitGoverned(Priority priority, String source, RequestHandle handle, Runnable task) {
+        final Runnable[] dequeue = new Runnable[1];
+        Runnable wrapped = handle.wrap(() -> {
+            handle.removeOnCancel(dequeue[0]);
+            task.run();
         });
+        dequeue[0] = () -> requestGovernor.remove(source, wrapped);
+        handle.onCancel(dequeue[0]);
+        try {
+            requestGovernor.submit(priority, source, wrapped);
+        } catch (RejectedExecutionException e) {
+            handle.removeOnCancel(dequeue[0]);
+            throw e;
+        }
     }
     
     /**
-     * 獲取所有巴士站點信息
+     * 站點詳情任務的Executor：任務屬於提交它的線程當前的請求
      */
-    public void getAllStops(final ApiCallback<Map<String, BusStop>> callback) {
-        // 模擬從API獲取數據
-        new Thread(() -> {
-            try {
-                // 實際應用中應該從API獲取數據
-                // 模擬API請求延遲
-                Thread.sleep(500);
-                
-                // 創建從站點ID到站點信息的映射
-                Map<String, BusStop> stopsMap = new HashMap<>();
-                
-                // 用模擬數據填充映射
-                createMockStops(stopsMap);
-                
-                // 在主線程中返回結果
-                new Handler(Looper.getMainLooper()).post(() -> callback.onSuccess(stopsMap));
-            } catch (Exception e) {
-                new Handler(Looper.getMainLooper()).post(() -> callback.onError("無法獲取站點數據: " + e.getMessage()));
-            }
-        }).start();
+    private void submitStopDetail(Runnable task) {
+        RequestHandle handle = RequestHandle.current();
+        Priority priority = Endpoint.STOP.getPriority();
+        if (handle == null) {
+            requestGovernor.submit(priority, STOP_DETAIL_SOURCE, task);
+        } else {
+            submitGoverned(priority, STOP_DETAIL_SOURCE, handle, task);
+        }
     }
     
     /**
-     * 獲取特定路線的站點順序
+     * 記錄尚未交付結果的請求；請求取消後不會再交付，同時移除
      */
-    public void getAllRouteStops(String routeId, String direction, String serviceType, final ApiCallback<List<BusStop>> callback) {
-        // 直接使用模擬數據，不進行真實API調用
-        executorService.execute(() -> {
-            try {
-                // 模擬API請求延遲
-                Thread.sleep(300);
-                
-                // 創建模擬數據
-                List<BusStop> stops = new ArrayList<>();
-                
-                // 對於E36A路線的模擬站點
-                if ("E36A".equals(routeId)) {
-                    addStopToRoute(stops, "1", "元朗(德業街)總站", "Yuen Long (Tak Yip Street) Bus Terminus", routeId, direction, serviceType);
-                    addStopToRoute(stops, "2", "尚寮庄", "Sheung Liu Chuen", routeId, direction, serviceType);
-                    addStopToRoute(stops, "3", "形點II", "YOHO MALL II", routeId, direction, serviceType);
-                    addStopToRoute(stops, "4", "形點I", "YOHO MALL I", routeId, direction, serviceType);
-                    addStopToRoute(stops, "5", "天耀邨耀樂樓", "Yiu Lok House, Tin Yiu Estate", routeId, direction, serviceType);
-                    addStopToRoute(stops, "6", "天耀邨耀盛樓", "Yiu Shing House, Tin Yiu Estate", routeId, direction, serviceType);
-                } 
-                // 對於其他路線使用通用模擬數據
-                else {
-                    addStopToRoute(stops, "101", "上水站", "Sheung Shui Station", routeId, direction, serviceType);
-                    addStopToRoute(stops, "102", "粉嶺站", "Fanling Station", routeId, direction, serviceType);
-                    addStopToRoute(stops, "103", "大埔墟站", "Tai Po Market Station", routeId, direction, serviceType);
-                    addStopToRoute(stops, "104", "大學站", "University Station", routeId, direction, serviceType);
-                    addStopToRoute(stops, "105", "火炭站", "Fo Tan Station", routeId, direction, serviceType);
-                    addStopToRoute(stops, "106", "沙田站", "Sha Tin Station", routeId, direction, serviceType);
-                    addStopToRoute(stops, "107", "大圍站", "Tai Wai Station", routeId, direction, serviceType);
-                    addStopToRoute(stops, "108", "九龍塘站", "Kowloon Tong Station", routeId, direction, serviceType);
-                }
-                
-                mainHandler.post(() -> callback.onSuccess(stops));
-            } catch (Exception e) {
-                Log.e(TAG, "Error creating mock route stops", e);
-                mainHandler.post(() -> callback.onError("無法獲取路線站點數據: " + e.getMessage()));
+    private <T> void track(ApiRequest<T> request) {
+        activeRequests.add(request);
+        request.handle.onCancel(() -> activeRequests.remove(request));
+    }
+    
+    /**
+     * 在調用者指定的Executor中交付結果；請求已取消時丟棄
+     * 每個請求只交付一次：關閉時已交付 UNAVAILABLE 的請求，之後完成的結果被丟棄
+     */
+    private <T> void deliver(ApiRequest<T> request, ApiResult<T> result) {
+        if (!activeRequests.remove(request)) {
+            return;
+        }
+        request.deliveryExecutor.execute(() -> {
+            if (request.handle.finish()) {
+                request.consumer.accept(result);
             }
         });
     }
     
+    private <T> void deliverUnavailable(ApiRequest<T> request, String message) {
+        deliver(request, ApiResult.unavailable(message));
+    }
+    
     /**
-     * 添加站點到路線
+     * 執行一個API請求並在主線程中把結果交給回調
+     * 請求按回調所屬的頁面分組，各頁面輪流使用請求額度
+     * @return 可取消的請求句柄
      */
-    private void addStopToRoute(List<BusStop> routeStops, String stopId, String nameTC, String nameEN, String routeId, String direction, String serviceType) {
-        BusStop stop = new BusStop(stopId, routeId, direction, serviceType, String.valueOf(routeStops.size() + 1));
-        stop.setNameTC(nameTC);
-        stop.setNameEN(nameEN);
-        routeStops.add(stop);
+    private <T> RequestHandle request(ApiCallback<T> callback, Endpoint endpoint, Call<T> call) {
+        requestCounts.get(endpoint).incrementAndGet();
+        RequestHandle handle = new RequestHandle();
+        start(new ApiRequest<>(handle, endpoint, sourceOf(callback), mainHandler::post, callback::onResult, call));
+        return handle;
     }
     
     /**
-     * 創建模擬的巴士站點數據
+     * 執行一個API請求並返回Future，結果在調用者指定的Executor中完成
+     * 請求與回調版本一樣按所屬的對象分組，各對象輪流使用請求額度
      */
-    private void createMockStops(Map<String, BusStop> stopsMap) {
-        // 從實際API獲取的數據結構
-        // {"stop":"18492910339410B1","name_en":"CHUK YUEN ESTATE BUS TERMINUS","name_tc":"竹園邨總站","name_sc":"竹园邨总站","lat":"22.345415","long":"114.192640"}
-        
-        // 添加一些模擬的站點
-        addMockStop(stopsMap, "ST01", "慈雲山(中)", "Tsz Wan Shan (Central)", "22.345415", "114.192640");
-        addMockStop(stopsMap, "ST02", "杏花邨", "Heng Fa Chuen", "22.276350", "114.238973");
-        addMockStop(stopsMap, "ST03", "紅磡(紅鸞道)", "Hung Hom (Hung Luen Road)", "22.306073", "114.181797");
-        addMockStop(stopsMap, "ST04", "美孚", "Mei Foo", "22.337888", "114.137842");
-        addMockStop(stopsMap, "ST05", "荃灣西站", "Tsuen Wan West Station", "22.368950", "114.108438");
-        addMockStop(stopsMap, "ST06", "大圍站", "Tai Wai Station", "22.373182", "114.178882");
-        addMockStop(stopsMap, "ST07", "牛頭角站", "Ngau Tau Kok Station", "22.315681", "114.217376");
-        addMockStop(stopsMap, "ST08", "觀塘(觀塘碼頭)", "Kwun Tong (Kwun Tong Ferry)", "22.309818", "114.225587");
-        addMockStop(stopsMap, "ST09", "藍田站", "Lam Tin Station", "22.306905", "114.233914");
-        addMockStop(stopsMap, "ST10", "寶琳", "Po Lam", "22.322778", "114.257555");
-        addMockStop(stopsMap, "ST11", "將軍澳站", "Tseung Kwan O Station", "22.307493", "114.260168");
-        addMockStop(stopsMap, "ST12", "秀茂坪(循環線)", "Sau Mau Ping (Circular)", "22.324583", "114.231466");
-        addMockStop(stopsMap, "ST13", "彩虹站", "Choi Hung Station", "22.335121", "114.212837");
-        addMockStop(stopsMap, "ST14", "鑽石山站", "Diamond Hill Station", "22.340700", "114.201783");
-        addMockStop(stopsMap, "ST15", "黃大仙站", "Wong Tai Sin Station", "22.342609", "114.194742");
-        addMockStop(stopsMap, "ST16", "大角咀", "Tai Kok Tsui", "22.321613", "114.163273");
-        addMockStop(stopsMap, "ST17", "旺角站", "Mong Kok Station", "22.319305", "114.169652");
-        addMockStop(stopsMap, "ST18", "油麻地站", "Yau Ma Tei Station", "22.313296", "114.170726");
-        addMockStop(stopsMap, "ST19", "尖沙咀站", "Tsim Sha Tsui Station", "22.298043", "114.172396");
-        addMockStop(stopsMap, "ST20", "佐敦站", "Jordan Station", "22.304962", "114.171739");
-        
-        // 再添加几个站点用于1號線路
-        addMockStop(stopsMap, "ST21", "梅窩碼頭", "Mui Wo Ferry Pier", "22.265833", "113.998056");
-        addMockStop(stopsMap, "ST22", "梅窩熟食市場", "Mui Wo Cooked Food Centre", "22.266389", "113.996667");
-        addMockStop(stopsMap, "ST23", "銀灣邨", "Ngan Wan Estate", "22.264722", "113.994722");
-        addMockStop(stopsMap, "ST24", "梅窩市場", "Mui Wo Market", "22.263611", "113.993056");
-        addMockStop(stopsMap, "ST25", "銀礦中心", "Ngan King Centre", "22.261944", "113.991111");
-        addMockStop(stopsMap, "ST26", "銀礦灣泳灘", "Silver Mine Bay Waterfront", "22.260278", "113.989444");
-        addMockStop(stopsMap, "ST27", "荔枝園", "Lai Chi Yuen", "22.258611", "113.987778");
-        addMockStop(stopsMap, "ST28", "南山三屋村", "Nam Shan Sam Uk Tsuen", "22.256944", "113.986111");
-        addMockStop(stopsMap, "ST29", "南山露營場", "Nam Shan Camp Site", "22.255278", "113.984444");
-        addMockStop(stopsMap, "ST30", "大澳道", "Tai O Road", "22.253611", "113.982778");
+    private <T> ApiFuture<T> requestAsync(Endpoint endpoint, Executor deliveryExecutor, Object owner, Call<T> call) {
+        requestCounts.get(endpoint).incrementAndGet();
+        RequestHandle handle = new RequestHandle();
+        ApiFuture<T> future = new ApiFuture<>(handle, requestGovernor);
+        start(new ApiRequest<>(handle, endpoint, sourceOf(owner), deliveryExecutor, future::deliver, call));
+        return future;
     }
     
-    private void addMockStop(Map<String, BusStop> stopsMap, String stopId, String nameTC, String nameEN, String lat, String lng) {
-        BusStop stop = new BusStop(stopId, "", "", "", "");
-        stop.setNameTC(nameTC);
-        stop.setNameEN(nameEN);
-        stop.setLocation(lat + "," + lng);
-        stopsMap.put(stopId, stop);
+    /**
+     * 請求註冊表中的一個端點，params 按URL模板的順序
+     */
+    private <T> RequestHandle request(ApiCallback<T> callback, ApiEndpoint<T> endpoint, String... params) {
+        return request(callback, endpoint.getEndpoint(), () -> fetch(endpoint, params));
+    }
+    
+    private <T> ApiFuture<T> requestAsync(Executor deliveryExecutor, Object owner, ApiEndpoint<T> endpoint, String... params) {
+        return requestAsync(endpoint.getEndpoint(), deliveryExecutor, owner, () -> fetch(endpoint, params));
     }
     
     /**
-     * 從URL獲取數據
+     * 端點可以合併且合併窗口已啟用
      */
-    private String fetchData(String urlString) throws IOException {
-        Log.d(TAG, "請求 URL: " + urlString);
-        
-        URL url = new URL(urlString);
-        HttpURLConnection connection = null;
-        boolean useBackupData = false;
-        
+    private boolean isBatching(Endpoint endpoint) {
+        return endpoint.isBatchable() && etaBatcher.isEnabled();
+    }
+    
+    /**
+     * 把請求交給批次合併器，結果在主線程中交給回調
+     */
+    private <T> RequestHandle batched(ApiCallback<T> callback, Endpoint endpoint, BatchEntry<T> entry) {
+        requestCounts.get(endpoint).incrementAndGet();
+        RequestHandle handle = new RequestHandle();
+        ApiRequest<T> request = new ApiRequest<>(handle, endpoint, sourceOf(callback), mainHandler::post, callback::onResult, null);
+        track(request);
+        entry.add(handle, result -> deliver(request, result));
+        return handle;
+    }
+    
+    private <T> ApiFuture<T> batchedAsync(Endpoint endpoint, Executor deliveryExecutor, Object owner, BatchEntry<T> entry) {
+        requestCounts.get(endpoint).incrementAndGet();
+        RequestHandle handle = new RequestHandle();
+        ApiFuture<T> future = new ApiFuture<>(handle, requestGovernor);
+        ApiRequest<T> request = new ApiRequest<>(handle, endpoint, sourceOf(owner), deliveryExecutor, future::deliver, null);
+        track(request);
+        entry.add(handle, result -> deliver(request, result));
+        return future;
+    }
+    
+    /**
+     * 開始執行請求
+     * 可重試的錯誤（網絡錯誤、5xx）按端點的重試次數退避後重新排隊，等待期間不佔用線程；
+     * 重試用盡或錯誤不可重試時，交付 UNAVAILABLE 結果。請求按端點的優先級排隊。
+     */
+    private <T> void start(ApiRequest<T> request) {
+        track(request);
+        dispatch(request, () -> runAttempt(request, 1));
+    }
+    
+    private <T> void runAttempt(ApiRequest<T> request, int attempt) {
+        boolean canRetry = attempt < request.endpoint.getMaxAttempts();
+        retryPending.set(canRetry);
+        CompletableFuture<ApiResult<T>> pending;
         try {
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(15000); // 設置連接超時為15秒
-            connection.setReadTimeout(15000);    // 設置讀取超時為15秒
-            
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HTTP_UNPROCESSABLE_ENTITY) { // 422 - Unprocessable Entity 錯誤
-                String errorResponse = readErrorStream(connection);
-                Log.e(TAG, "HTTP 422 錯誤: " + errorResponse + " for URL: " + urlString);
-                throw new IOException("API 請求格式錯誤 (HTTP 422): " + errorResponse);
-            } else if (responseCode != HttpURLConnection.HTTP_OK) {
-                Log.w(TAG, "HTTP error code: " + responseCode + " for URL: " + urlString);
-                useBackupData = true;
-                // 返回空數據而不是拋出異常，後續會使用備用數據
-                return createMockResponse(urlString);
-            }
-            
-            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            reader.close();
-            
-            return response.toString();
+            pending = request.call.execute();
         } catch (Exception e) {
-            Log.e(TAG, "Error fetching data from URL: " + urlString, e);
-            // 返回模擬數據而不是拋出異常
-            return createMockResponse(urlString);
+            pending = failed(e);
         } finally {
-            if (connection != null) {
-                connection.disconnect();
+            retryPending.remove();
+        }
+        // 共享其他請求的結果時在完成它的線程中交付，不佔用線程等待
+        pending.whenComplete((result, error) -> {
+            if (error == null) {
+                deliver(request, result);
+            } else {
+                onAttemptFailed(request, attempt, canRetry, SingleFlight.unwrap(error));
+            }
+        });
+    }
+    
+    private <T> void onAttemptFailed(ApiRequest<T> request, int attempt, boolean canRetry, Throwable e) {
+        Endpoint endpoint = request.endpoint;
+        if (request.handle.isCancelled()) {
+            Log.d(TAG, endpoint + " 請求已取消");
+        } else if (canRetry && UpstreamException.isRetryable(e)) {
+            long delay = retryPolicy.getBackoffMillis(attempt);
+            Log.w(TAG, endpoint + " 請求失敗，" + delay + "ms 後進行第 " + (attempt + 1) + " 次嘗試: " + e.getMessage());
+            try {
+                requestGovernor.schedule(() -> dispatch(request, () -> runAttempt(request, attempt + 1)), delay);
+            } catch (RejectedExecutionException rejected) {
+                deliverUnavailable(request, e.getMessage());
             }
+        } else {
+            Log.e(TAG, "Error requesting " + endpoint, e);
+            deliverUnavailable(request, e.getMessage());
         }
     }
     
     /**
-     * 讀取錯誤響應內容
+     * 以異常完成的Future
      */
-    private String readErrorStream(HttpURLConnection connection) {
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+    
+    /**
+     * 回調或請求所屬對象的最外層類（通常是發起請求的Activity）；傳入字符串時直接作為來源名稱
+     */
+    private static String sourceOf(Object owner) {
+        if (owner instanceof String) {
+            return (String) owner;
+        }
+        String name = owner.getClass().getName();
+        int inner = name.indexOf('$');
+        return inner > 0 ? name.substring(0, inner) : name;
+    }
+    
+    /**
+     * 設置全局限流：每秒請求數及允許的突發請求數
+     */
+    public void setRateLimit(double requestsPerSecond, int burst) {
+        requestGovernor.setRate(requestsPerSecond, burst);
+    }
+    
+    /**
+     * 端點的熔斷器（用於查看狀態及恢復時間）
+     */
+    public CircuitBreaker getCircuitBreaker(Endpoint endpoint) {
+        return circuitBreakers.get(endpoint);
+    }
+    
+    /**
+     * 啟用或關閉到站時間請求的對沖：第一次請求超過最近的 p90 延遲仍未完成時再發一次，採用先完成的結果
+     */
+    public void setHedgingEnabled(boolean enabled) {
+        etaHedger.setEnabled(enabled);
+    }
+    
+    /**
+     * 設置到站時間請求的合併窗口，0 表示每個請求單獨發出
+     */
+    public void setEtaBatchWindow(long windowMillis) {
+        etaBatcher.setWindowMillis(windowMillis);
+    }
+    
+    /**
+     * 合併統計（收到的請求數及實際發出的批量請求數）
+     */
+    public EtaBatcher getEtaBatcher() {
+        return etaBatcher;
+    }
+    
+    /**
+     * 對沖統計（對沖次數、預算、p99 延遲）
+     */
+    public RequestHedger getEtaHedger() {
+        return etaHedger;
+    }
+    
+    /**
+     * 獲取端點當前的超時設置及延遲統計
+     */
+    public AdaptiveTimeout getTimeout(Endpoint endpoint) {
+        return timeouts.get(endpoint);
+    }
+    
+    /**
+     * 端點收到的請求數
+     */
+    public long getRequestCount(Endpoint endpoint) {
+        return requestCounts.get(endpoint).get();
+    }
+    
+    /**
+     * 限流器（用於查看排隊及被拒絕的請求數）
+     */
+    public RequestGovernor getRequestGovernor() {
+        return requestGovernor;
+    }
+    
+    /**
+     * 當前I/O線程池中的線程數
+     */
+    public int getIoThreadCount() {
+        return executorService.getPoolSize();
+    }
+    
+    /**
+     * 當前等待執行的請求數（限流器各優先級隊列及I/O線程池隊列）
+     */
+    public int getQueuedRequestCount() {
+        return requestGovernor.getQueuedCount() + executorService.getQueue().size();
+    }
+    
+    /**
+     * 預熱到九巴API服務器的連接
+     * 預先解析域名，並同時建立數個連接完成TCP及TLS握手，之後的請求可以直接重用。
+     * 只在第一次調用時生效，以後台優先級執行。
+     */
+    public void warmUp() {
+        if (!warmedUp.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            reader.close();
-            return response.toString();
-        } catch (Exception e) {
-            return "無法讀取錯誤響應: " + e.getMessage();
+            requestGovernor.submit(Priority.BACKGROUND, WARM_UP_SOURCE, () -> {
+                try {
+                    long start = System.nanoTime();
+                    InetAddress.getAllByName(new URL(baseUrl).getHost());
+                    connectionStats.recordDnsLookup(System.nanoTime() - start);
+                    Log.d(TAG, "預先解析域名耗時: " + connectionStats.getDnsLookupMillis() + "ms");
+                } catch (IOException e) {
+                    Log.w(TAG, "預先解析域名失敗", e);
+                }
+                try {
+                    for (int i = 1; i < WARM_CONNECTION_COUNT; i++) {
+                        requestGovernor.submit(Priority.BACKGROUND, WARM_UP_SOURCE, this::warmConnection);
+                    }
+                } catch (RejectedExecutionException e) {
+                    Log.w(TAG, "I/O隊列已滿，減少預熱連接數");
+                }
+                warmConnection();
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "無法預熱連接", e);
         }
     }
     
     /**
-     * 根據不同的API端點URL創建模擬響應數據
+     * 以HEAD請求建立一個連接，完成後連接留在連接池中
      */
-    private String createMockResponse(String urlString) {
+    private void warmConnection() {
+        HttpExchange exchange = null;
+        boolean reusable = false;
         try {
-            // 根據URL確定是哪種請求類型
-            if (urlString.contains("/route/")) {
-                // 路線列表模擬數據
-                return createMockRouteListResponse();
-            } else if (urlString.contains("/route-stop/")) {
-                // 路線站點模擬數據
-                return createMockRouteStopResponse();
-            } else if (urlString.contains("/stop/")) {
-                // 單個站點詳情模擬數據
-                return createMockStopDetailResponse();
-            } else if (urlString.contains("/stop-eta/") || urlString.contains("/eta/")) {
-                // 到站時間模擬數據
-                return createMockEtaResponse();
-            } else {
-                // 預設情況，返回空數據結構
-                return "{\"data\":[]}";
+            exchange = openExchange(EndpointRegistry.ROUTES.url(baseUrl), "HEAD");
+            exchange.connect();
+            int responseCode = exchange.getStatusCode();
+            connectionStats.recordConnect(exchange.getConnectNanos());
+            connectionStats.recordProtocol(exchange.getProtocol());
+            reusable = true;
+            Log.d(TAG, "連接預熱完成: HTTP " + responseCode + ", 握手耗時 " + connectionStats.getLastHandshakeMillis() + "ms");
+        } catch (IOException e) {
+            Log.w(TAG, "連接預熱失敗", e);
+        } finally {
+            if (exchange != null) {
+                exchange.release(reusable);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating mock response", e);
-            return "{\"data\":[]}";
         }
     }
     
     /**
-     * 創建模擬路線列表響應
+     * 設置API地址（以 "/transport/kmb/" 結尾），用於本地測試服務器
      */
-    private String createMockRouteListResponse() {
-        return "{\"data\":[" +
-               "{\"route\":\"1\",\"bound\":\"O\",\"service_type\":\"1\",\"orig_tc\":\"中環\",\"orig_en\":\"Central\",\"dest_tc\":\"尖沙咀\",\"dest_en\":\"Tsim Sha Tsui\"}," +
-               "{\"route\":\"2\",\"bound\":\"I\",\"service_type\":\"1\",\"orig_tc\":\"尖沙咀\",\"orig_en\":\"Tsim Sha Tsui\",\"dest_tc\":\"中環\",\"dest_en\":\"Central\"}," +
-               "{\"route\":\"E36A\",\"bound\":\"O\",\"service_type\":\"1\",\"orig_tc\":\"東涌(逸東邨)\",\"orig_en\":\"Tung Chung (Yat Tung Estate)\",\"dest_tc\":\"元朗(德業街)\",\"dest_en\":\"Yuen Long (Tak Yip Street)\"}" +
-               "]}";
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
     }
     
     /**
-     * 創建模擬路線站點響應
+     * 切換傳輸層，之後的請求使用新的實現（進行中的請求不受影響）
      */
-    private String createMockRouteStopResponse() {
-        return "{\"data\":[" +
-               "{\"route\":\"1\",\"bound\":\"O\",\"service_type\":\"1\",\"seq\":\"1\",\"stop\":\"ST01\"}," +
-               "{\"route\":\"1\",\"bound\":\"O\",\"service_type\":\"1\",\"seq\":\"2\",\"stop\":\"ST02\"}," +
-               "{\"route\":\"1\",\"bound\":\"O\",\"service_type\":\"1\",\"seq\":\"3\",\"stop\":\"ST03\"}," +
-               "{\"route\":\"1\",\"bound\":\"O\",\"service_type\":\"1\",\"seq\":\"4\",\"stop\":\"ST04\"}" +
-               "]}";
+    public void setTransport(HttpTransport transport) {
+        Log.d(TAG, "傳輸層: " + transport.getName());
+        this.transport = transport;
+    }
+    
+    public HttpTransport getTransport() {
+        return transport;
     }
     
     /**
-     * 創建模擬站點詳情響應
+     * 開始錄製：之後的請求照常發出，響應及耗時寫入 directory
+     * 錄製及回放期間不使用磁盤緩存，請求不會帶條件頭，兩次運行發出的請求相同
      */
-    private String createMockStopDetailResponse() {
-        return "{\"data\":{\"stop\":\"ST01\",\"name_tc\":\"模擬站點\",\"name_en\":\"Mock Bus Stop\",\"lat\":\"22.302711\",\"long\":\"114.177216\"}}";
+    public void startRecording(File directory) {
+        responseCache = null;
+        HttpTransport current = transport;
+        if (current instanceof RecordingTransport || current instanceof ReplayTransport) {
+            current = new UrlConnectionTransport();
+        }
+        setTransport(new RecordingTransport(current, new SessionArchive(directory)));
     }
     
     /**
-     * 創建模擬到站時間響應
+     * 開始回放 directory 中錄製的響應，不連接網絡
+     * @param latencyScale 延遲倍數：1 為原始延遲，0 為沒有延遲
      */
-    private String createMockEtaResponse() {
-        long currentTime = System.currentTimeMillis();
-        // 創建不同的到站時間 (+5分鐘, +10分鐘)
-        long eta1 = currentTime + 5 * 60 * 1000;
-        long eta2 = currentTime + 10 * 60 * 1000;
-        
-        String etaTime1 = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX").format(new java.util.Date(eta1));
-        String etaTime2 = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX").format(new java.util.Date(eta2));
-        
-        return "{\"data\":[" +
-               "{\"route\":\"1\",\"dir\":\"O\",\"service_type\":\"1\",\"seq\":\"1\",\"stop\":\"ST01\",\"eta\":\"" + etaTime1 + "\",\"rmk_tc\":\"正常班次\",\"rmk_en\":\"Normal\"}," +
-               "{\"route\":\"1\",\"dir\":\"O\",\"service_type\":\"1\",\"seq\":\"1\",\"stop\":\"ST01\",\"eta\":\"" + etaTime2 + "\",\"rmk_tc\":\"正常班次\",\"rmk_en\":\"Normal\"}" +
-               "]}";
+    public void startReplay(File directory, double latencyScale) throws IOException {
+        responseCache = null;
+        setTransport(new ReplayTransport(new SessionArchive(directory), latencyScale));
     }
     
     /**
-     * 解析路線數據
+     * 連接統計（重用率及握手時間）
      */
-    private List<BusRoute> parseRoutes(String jsonData) throws JSONException {
-        List<BusRoute> routes = new ArrayList<>();
-        JSONObject jsonObject = new JSONObject(jsonData);
-        
-        if (jsonObject.has("data") && !jsonObject.isNull("data")) {
-            JSONArray dataArray = jsonObject.getJSONArray("data");
-            
-            for (int i = 0; i < dataArray.length(); i++) {
-                JSONObject routeObject = dataArray.getJSONObject(i);
-                
-                String routeId = routeObject.getString("route");
-                String originTC = routeObject.getString("orig_tc");
-                String originEN = routeObject.getString("orig_en");
-                String destTC = routeObject.getString("dest_tc");
-                String destEN = routeObject.getString("dest_en");
-                String direction = routeObject.getString("bound");
-                String serviceType = routeObject.getString("service_type");
-                
-                BusRoute route = new BusRoute(routeId, originTC, originEN, destTC, destEN, direction, serviceType);
-                routes.add(route);
-            }
+    public ConnectionStats getConnectionStats() {
+        return connectionStats;
+    }
+    
+    /**
+     * 安裝磁盤響應緩存，用於路線及站點目錄等變化很少的端點
+     */
+    public void installDiskCache(File directory, long maxBytes) {
+        responseCache = new DiskResponseCache(directory, maxBytes);
+    }
+    
+    /**
+     * 獲取磁盤響應緩存（用於查看命中/重新驗證/未命中次數），未安裝時返回null
+     */
+    public DiskResponseCache getDiskCache() {
+        return responseCache;
+    }
+    
+    /**
+     * 設置站點詳情並行請求的上限
+     */
+    public void setStopDetailConcurrency(int maxConcurrency) {
+        stopDetailResolver.setMaxConcurrency(maxConcurrency);
+    }
+    
+    /**
+     * 因與其他並發請求URL相同而被合併的網絡請求數
+     */
+    public long getCoalescedFetchCount() {
+        return fetchFlight.getCoalescedCount();
+    }
+    
+    /**
+     * 因與其他並發請求相同而共享解析結果的請求數
+     */
+    public long getCoalescedParseCount() {
+        return parseFlight.getCoalescedCount();
+    }
+    
+    /**
+     * 實際發出的網絡請求數
+     */
+    public long getNetworkFetchCount() {
+        return fetchFlight.getExecutedCount();
+    }
+    
+    /**
+     * 獲取所有路線
+     */
+    public RequestHandle getAllRoutes(final ApiCallback<List<BusRoute>> callback) {
+        return request(callback, EndpointRegistry.ROUTES);
+    }
+    
+    /**
+     * getAllRoutes 的Future版本，結果在 executor 中完成
+     * @param owner 請求所屬的對象（通常是發起請求的Activity）或來源名稱；
+     *              同一來源的請求共用一條輪流通道，與回調版本按回調所屬頁面分組一致
+     */
+    public ApiFuture<List<BusRoute>> getAllRoutesAsync(Executor executor, Object owner) {
+        return requestAsync(executor, owner, EndpointRegistry.ROUTES);
+    }
+    
+    /**
+     * 獲取指定路線的預計到達時間
+     */
+    public RequestHandle getRouteEta(String stopId, String routeId, String serviceType, final ApiCallback<List<RouteEta>> callback) {
+        if (isBatching(Endpoint.ETA)) {
+            return batched(callback, Endpoint.ETA,
+                    (handle, delivery) -> etaBatcher.addRouteEta(stopId, routeId, serviceType, handle, delivery));
         }
-        
-        return routes;
+        return request(callback, EndpointRegistry.ROUTE_ETAS, stopId, routeId, serviceType);
     }
     
     /**
-     * 解析ETA數據
+     * getRouteEta 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
      */
-    private List<RouteEta> parseRouteEta(String jsonData, String stopId) throws JSONException {
-        List<RouteEta> etaList = new ArrayList<>();
-        JSONObject jsonObject = new JSONObject(jsonData);
-        
-        if (jsonObject.has("data") && !jsonObject.isNull("data")) {
-            JSONArray dataArray = jsonObject.getJSONArray("data");
-            Log.d(TAG, "獲取到" + dataArray.length() + "個到站時間數據");
-            
-            for (int i = 0; i < dataArray.length(); i++) {
-                JSONObject etaObject = dataArray.getJSONObject(i);
-                
-                // 確保所有必需字段都存在
-                if (etaObject.has("route")) {
-                    String routeId = etaObject.getString("route");
-                    String direction = etaObject.optString("dir", "");
-                    String serviceType = etaObject.optString("service_type", "");
-                    String etaTime = etaObject.optString("eta", "");
-                    String remarkTC = etaObject.optString("rmk_tc", "");
-                    String remarkEN = etaObject.optString("rmk_en", "");
-                    
-                    RouteEta eta = new RouteEta(routeId, stopId, direction, serviceType, etaTime, remarkTC, remarkEN);
-                    Log.d(TAG, "解析到站時間: 路線=" + routeId + ", 站點=" + stopId + ", 時間=" + etaTime + ", 剩餘分鐘=" + eta.getMinutesRemaining());
-                    etaList.add(eta);
-                }
-            }
-        } else {
-            Log.e(TAG, "到站時間API沒有返回data字段: " + jsonData);
+    public ApiFuture<List<RouteEta>> getRouteEtaAsync(String stopId, String routeId, String serviceType, Executor executor, Object owner) {
+        if (isBatching(Endpoint.ETA)) {
+            return batchedAsync(Endpoint.ETA, executor, owner,
+                    (handle, delivery) -> etaBatcher.addRouteEta(stopId, routeId, serviceType, handle, delivery));
         }
-        
-        return etaList;
+        return requestAsync(executor, owner, EndpointRegistry.ROUTE_ETAS, stopId, routeId, serviceType);
     }
-
-
-
-    private List<StopEta> parseStopEta(String jsonData) throws JSONException {
-        List<StopEta> etaList = new ArrayList<>();
-        JSONObject jsonObject = new JSONObject(jsonData);
-
-        if (jsonObject.has("data") && !jsonObject.isNull("data")) {
-            JSONArray dataArray = jsonObject.getJSONArray("data");
-            Log.d(TAG, "獲取到" + dataArray.length() + "個到站時間數據");
-
-            for (int i = 0; i < dataArray.length(); i++) {
-                JSONObject etaObject = dataArray.getJSONObject(i);
-
-                // 確保所有必需字段都存在
-                if (etaObject.has("route") || etaObject.has("stop")) {
-                    String routeId = etaObject.getString("route");
-                    String direction = etaObject.optString("dir", "");
-                    String serviceType = etaObject.optString("service_type", "");
-                    String etaTime = etaObject.optString("eta", "");
-                    String remarkTC = etaObject.optString("rmk_tc", "");
-                    String remarkEN = etaObject.optString("rmk_en", "");
-                    String destEn= etaObject.getString("dest_en");
-
-                    StopEta eta = new StopEta(routeId, direction, serviceType, etaTime, remarkTC, remarkEN, destEn);
-                    Log.d(TAG, "解析到站時間: 路線=" + routeId + ", 站點=" + ", 時間=" + etaTime + ", 剩餘分鐘=");
-                    etaList.add(eta);
-                }
-            }
-        } else {
-            Log.e(TAG, "到站時間API沒有返回data字段: " + jsonData);
+    
+    /**
+     * 獲取整條路線所有站點的預計到達時間
+     * 使用 route-eta 端點一次請求取代逐站請求，結果按方向及站點順序分組
+     */
+    public RequestHandle getRouteWideEta(String routeId, String serviceType, final ApiCallback<RouteWideEta> callback) {
+        return request(callback, EndpointRegistry.ROUTE_WIDE_ETA, routeId, serviceType);
+    }
+    
+    /**
+     * getRouteWideEta 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
+     */
+    public ApiFuture<RouteWideEta> getRouteWideEtaAsync(String routeId, String serviceType, Executor executor, Object owner) {
+        return requestAsync(executor, owner, EndpointRegistry.ROUTE_WIDE_ETA, routeId, serviceType);
+    }
+    
+    /**
+     * 獲取指定路線的站點
+     * 站點詳情獲取失敗的站點保留在列表中但沒有名稱
+     */
+    public RequestHandle getRouteStops(String routeId, String direction, String serviceType, final ApiCallback<List<BusStop>> callback) {
+        return request(callback, Endpoint.ROUTE_STOP, routeStopsCall(routeId, direction, serviceType, true));
+    }
+    
+    /**
+     * getRouteStops 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
+     */
+    public ApiFuture<List<BusStop>> getRouteStopsAsync(String routeId, String direction, String serviceType, Executor executor, Object owner) {
+        return requestAsync(Endpoint.ROUTE_STOP, executor, owner, routeStopsCall(routeId, direction, serviceType, true));
+    }
+    
+    /**
+     * 獲取指定站點指定路線的預計到達時間；routeId 為 null 時返回該站點所有路線
+     */
+    public RequestHandle getStopEta(String routeId, String stopId, final ApiCallback<List<StopEta>> callback) {
+        return getStopEta(stopId, StopEtaFilter.forRoute(routeId), callback);
+    }
+    
+    /**
+     * 獲取指定站點符合 filter 的預計到達時間，不符合的部分在解析時直接跳過
+     */
+    public RequestHandle getStopEta(String stopId, StopEtaFilter filter, final ApiCallback<List<StopEta>> callback) {
+        if (isBatching(Endpoint.STOP_ETA)) {
+            return batched(callback, Endpoint.STOP_ETA,
+                    (handle, delivery) -> etaBatcher.addStopEta(stopId, filter, handle, delivery));
         }
-
-        return etaList;
+        return request(callback, EndpointRegistry.stopEtas(filter), stopId);
     }
     
     /**
-     * 解析站點數據
+     * getStopEta 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
      */
-    private List<BusStop> parseStops(String jsonData) throws JSONException {
-        List<BusStop> stops = new ArrayList<>();
-        
-        try {
-            JSONObject jsonObject = new JSONObject(jsonData);
-            Log.d(TAG, "解析站點數據: " + jsonData);
+    public ApiFuture<List<StopEta>> getStopEtaAsync(String routeId, String stopId, Executor executor, Object owner) {
+        return getStopEtaAsync(stopId, StopEtaFilter.forRoute(routeId), executor, owner);
+    }
+    
+    /**
+     * getStopEta 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
+     */
+    public ApiFuture<List<StopEta>> getStopEtaAsync(String stopId, StopEtaFilter filter, Executor executor, Object owner) {
+        if (isBatching(Endpoint.STOP_ETA)) {
+            return batchedAsync(Endpoint.STOP_ETA, executor, owner,
+                    (handle, delivery) -> etaBatcher.addStopEta(stopId, filter, handle, delivery));
+        }
+        return requestAsync(executor, owner, EndpointRegistry.stopEtas(filter), stopId);
+    }
+    
+    /**
+     * 獲取所有巴士站點信息，以站點ID為鍵
+     * 與 getBusStops 使用同一個站點目錄端點及緩存
+     */
+    public RequestHandle getAllStops(final ApiCallback<Map<String, BusStop>> callback) {
+        return request(callback, Endpoint.STOP_LIST, () -> fetch(EndpointRegistry.STOPS).thenApply(stops -> {
+            Map<String, BusStop> stopsMap = new HashMap<>();
+            for (BusStop stop : stops.getData()) {
+                stopsMap.put(stop.getStopId(), stop);
+            }
+            return stops.withData(stopsMap);
+        }));
+    }
+    
+    /**
+     * 獲取特定路線的站點順序，與 getRouteStops 相同
+     */
+    public RequestHandle getAllRouteStops(String routeId, String direction, String serviceType, final ApiCallback<List<BusStop>> callback) {
+        return getRouteStops(routeId, direction, serviceType, callback);
+    }
+    
+    /**
+     * 路線站點：先獲取站點順序，再並行獲取每個站點的詳情
+     * @param keepUnresolved 詳情獲取失敗的站點是否保留在結果中
+     */
+    private Call<List<BusStop>> routeStopsCall(String routeId, String bound, String serviceType, boolean keepUnresolved) {
+        return () -> {
+            String direction = normalizeBound(bound);
+            Log.d(TAG, "正在獲取路線站點: " + routeId + ", 方向: " + direction + ", 服務類型: " + serviceType);
             
-            if (jsonObject.has("data") && !jsonObject.isNull("data")) {
-                JSONArray dataArray = jsonObject.getJSONArray("data");
-                Log.d(TAG, "找到 " + dataArray.length() + " 個站點");
-                
-                for (int i = 0; i < dataArray.length(); i++) {
-                    JSONObject stopObject = dataArray.getJSONObject(i);
-                    
-                    String stopId = stopObject.getString("stop");
-                    String routeId = stopObject.getString("route");
-                    String direction = stopObject.getString("bound");
-                    String serviceType = stopObject.getString("service_type");
-                    int seq = stopObject.getInt("seq");
-                    
-                    // 轉換方向格式 (如果需要)
-                    // "O" 代表 "outbound", "I" 代表 "inbound"
-                    if (direction.equals("O")) {
-                        direction = "outbound";
-                    } else if (direction.equals("I")) {
-                        direction = "inbound";
-                    }
-                    
-                    Log.d(TAG, "站點 #" + seq + ": ID=" + stopId + ", 路線=" + routeId + ", 方向=" + direction);
-                    
-                    BusStop stop = new BusStop(stopId, routeId, direction, serviceType, String.valueOf(seq));
-                    stops.add(stop);
+            RequestHandle handle = RequestHandle.current();
+            CompletableFuture<ApiResult<List<BusStop>>> delivery = new CompletableFuture<>();
+            fetch(EndpointRegistry.ROUTE_STOPS, routeId, direction, serviceType).whenComplete((routeStops, error) -> {
+                if (error != null) {
+                    delivery.completeExceptionally(error);
+                    return;
                 }
-            } else {
-                Log.w(TAG, "API 返回的 JSON 中沒有 data 字段或為空");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "解析站點數據時出錯: " + e.getMessage(), e);
-        }
-        
-        return stops;
+                // 共享其他請求的結果時此處在其線程中執行，站點詳情任務仍屬於本請求
+                handle.wrap(() -> resolveStops(routeStops, keepUnresolved, delivery)).run();
+            });
+            return delivery;
+        };
     }
     
     /**
-     * 更新站點詳細信息
+     * 並行獲取站點詳情，完成後交付路線站點
      */
-    private void updateStopDetails(BusStop stop, String jsonData) throws JSONException {
-        JSONObject jsonObject = new JSONObject(jsonData);
+    private void resolveStops(ApiResult<List<BusStop>> routeStops, boolean keepUnresolved,
+                              CompletableFuture<ApiResult<List<BusStop>>> delivery) {
+        // 解析結果由並發的相同請求共享，填入詳情前先複製
+        List<BusStop> stops = new ArrayList<>();
+        for (BusStop stop : routeStops.getData()) {
+            stops.add(new BusStop(stop.getStopId(), stop.getRouteId(), stop.getDirection(),
+                    stop.getServiceType(), stop.getSequence()));
+        }
+        etaBatcher.rememberRouteStops(stops);
         
-        if (jsonObject.has("data") && !jsonObject.isNull("data")) {
-            JSONObject dataObject = jsonObject.getJSONObject("data");
-            
-            if (dataObject.has("name_tc")) {
-                String nameTC = dataObject.getString("name_tc");
-                stop.setNameTC(nameTC);
-                Log.d(TAG, "設置站點名稱: " + stop.getStopId() + " - 中文名: " + nameTC);
+        StopDetailResolver.Resolution resolution = stopDetailResolver.resolve(stops, this::fillStopDetails, result -> {
+            for (StopDetailResolver.Failure failure : result.getFailures()) {
+                Log.w(TAG, "站點詳情獲取失敗: #" + failure.getStop().getSequence() + " (" + failure.getStop().getStopId() + ")");
             }
             
-            if (dataObject.has("name_en")) {
-                String nameEN = dataObject.getString("name_en");
-                stop.setNameEN(nameEN);
-                Log.d(TAG, "設置站點名稱: " + stop.getStopId() + " - 英文名: " + nameEN);
+            if (keepUnresolved) {
+                delivery.complete(routeStops.withData(result.getStops()));
+                return;
             }
-        } else {
-            Log.e(TAG, "站點詳情API沒有返回data字段: " + jsonData);
+            List<BusStop> resolvedStops = result.getResolvedStops();
+            if (resolvedStops.isEmpty() && !stops.isEmpty()) {
+                delivery.complete(ApiResult.unavailable("無法獲取站點詳情"));
+            } else {
+                delivery.complete(routeStops.withData(resolvedStops));
+            }
+        });
+        // 請求取消後不再提交剩餘站點
+        RequestHandle handle = RequestHandle.current();
+        if (handle != null) {
+            handle.onCancel(resolution::cancel);
         }
     }
     
     /**
-     * API回調接口
+     * 確保方向參數格式正確（轉換為 inbound/outbound）
      */
-    public interface ApiCallback<T> {
-        List<RouteEta> onSuccess(T result);
-        void onError(String errorMessage);
+    private static String normalizeBound(String bound) {
+        if ("i".equalsIgnoreCase(bound)) {
+            return "inbound";
+        } else if ("o".equalsIgnoreCase(bound)) {
+            return "outbound";
+        }
+        return bound;
     }
     
     /**
-     * 获取所有巴士站点
-     * @param callback 回调函数
+     * 獲取並填充站點詳情（名稱及位置）
+     * 返回的Future在當前請求中完成，解析器在其中提交的下一個站點仍屬於本請求；請求取消後不再完成
      */
-    public void getBusStops(final ApiCallback<List<BusStop>> callback) {
-        executorService.execute(() -> {
-            try {
-                String url = "https://data.etabus.gov.hk/v1/transport/kmb/stop";
-                String jsonData = fetchData(url);
-                List<BusStop> stops = parseAllStops(jsonData);
-                mainHandler.post(() -> callback.onSuccess(stops));
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting bus stops", e);
-                mainHandler.post(() -> callback.onError(e.getMessage()));
+    private CompletableFuture<Void> fillStopDetails(BusStop stop) {
+        RequestHandle handle = RequestHandle.current();
+        CompletableFuture<Void> filled = new CompletableFuture<>();
+        fetch(EndpointRegistry.STOP_DETAIL, stop.getStopId()).whenComplete((result, error) -> {
+            Runnable complete = () -> {
+                if (error != null) {
+                    filled.completeExceptionally(error);
+                    return;
+                }
+                BusStop detail = result.getData();
+                stop.setNameTC(detail.getNameTC());
+                stop.setNameEN(detail.getNameEN());
+                stop.setLocation(detail.getLocation());
+                Log.d(TAG, "添加站點: #" + stop.getSequence() + " " + stop.getNameTC() + " (" + stop.getStopId() + ")");
+                filled.complete(null);
+            };
+            if (handle != null) {
+                handle.wrap(complete).run();
+            } else {
+                complete.run();
             }
         });
+        return filled;
     }
     
     /**
-     * 获取路线站点信息
-     * @param routeId 路线ID
-     * @param bound 方向
-     * @param serviceType 服务类型
-     * @param callback 回调函数
+     * 按註冊表中的聲明獲取並解析數據
+     * 同一URL、同一解析方式的並發調用共享一次網絡請求和一次解析結果，結果應視為只讀；
+     * 串流端點的解析器直接讀取連接的InputStream，響應不會先讀入字符串
      */
-    public void getRouteStopList(String routeId, String bound, String serviceType, final ApiCallback<List<BusStop>> callback) {
-        executorService.execute(() -> {
+    private <T> CompletableFuture<ApiResult<T>> fetch(ApiEndpoint<T> endpoint, String... params) {
+        String url = endpoint.url(baseUrl, params);
+        String key = endpoint.getName() + " " + url;
+        if (endpoint.isStreamed()) {
+            return parseFlight.execute(key, () -> loadFromNetwork(url, in -> endpoint.parse(in, params)));
+        }
+        return parseFlight.executeAsync(key, () -> fetchData(url).thenApply(raw -> {
             try {
-                // 確保方向參數格式正確
-                String direction = bound;
-                if ("i".equalsIgnoreCase(bound) || "I".equals(bound)) {
-                    direction = "inbound";
-                } else if ("o".equalsIgnoreCase(bound) || "O".equals(bound)) {
-                    direction = "outbound";
-                }
-                
-                Log.d(TAG, "正在獲取路線站點: " + routeId + ", 方向: " + direction + ", 服務類型: " + serviceType);
-                
-                // 获取路线站点映射
-                String url = BASE_URL + "route-stop/" + routeId + "/" + direction + "/" + serviceType;
-                Log.d(TAG, "Route-Stop API URL: " + url);
-                String jsonData = fetchData(url);
-                
-                // 解析站點數據
-                List<BusStop> stops = parseRouteStopsComplete(jsonData, routeId, direction, serviceType);
-                
-                mainHandler.post(() -> callback.onSuccess(stops));
+                return raw.withData(endpoint.parse(raw.getData(), params));
             } catch (Exception e) {
-                Log.e(TAG, "Error getting route stops: " + e.getMessage(), e);
-                mainHandler.post(() -> callback.onError(e.getMessage()));
+                // 響應已完整讀取，解析失敗只可能是內容的問題
+                Log.e(TAG, "響應格式錯誤: " + url, e);
+                throw new CompletionException(UpstreamException.malformed(e));
             }
-        });
+        }));
     }
     
     /**
-     * 解析路線站點完整信息（包含站點詳情）
+     * 通過當前的傳輸層建立請求，超時時間按端點的延遲統計設置
      */
-    private List<BusStop> parseRouteStopsComplete(String jsonData, String routeId, String direction, String serviceType) throws JSONException {
-        List<BusStop> stops = new ArrayList<>();
+    private HttpExchange openExchange(String urlString, String method) throws IOException {
+        AdaptiveTimeout timeout = timeouts.get(Endpoint.classify(urlString));
+        return transport.newExchange(urlString, method,
+                timeout.getConnectTimeoutMillis(), timeout.getReadTimeoutMillis());
+    }
+    
+    /**
+     * 從URL獲取數據
+     * 同一URL的並發調用只會發出一次網絡請求；到站時間請求在啟用對沖時可能發出第二次
+     */
+    private CompletableFuture<ApiResult<String>> fetchData(String urlString) {
+        if (Endpoint.classify(urlString).isHedgeable()) {
+            return fetchFlight.executeAsync(urlString,
+                    () -> etaHedger.execute(() -> loadFromNetwork(urlString, this::readBody)));
+        }
+        return fetchFlight.execute(urlString, () -> loadFromNetwork(urlString, this::readBody));
+    }
+    
+    /**
+     * 從網絡（或磁盤緩存）獲取URL的數據並交給解析器
+     * 目錄類端點會先查本地緩存：未過期直接使用；過期則帶上 If-None-Match / If-Modified-Since
+     * 重新驗證，服務器返回304時繼續使用本地副本。
+     * 請求失敗時，如果之後還會重試則拋出異常；否則有緩存時返回 STALE 結果，沒有緩存時拋出異常。
+     * 響應無法解析時不重試，也不計入熔斷。端點熔斷期間不發出請求，直接使用緩存或失敗。
+     * 響應內容讀完並關閉後連接會回到連接池 (keep-alive)，只有出錯時才斷開。
+     */
+    private <T> ApiResult<T> loadFromNetwork(String urlString, StreamParser<T> parser) throws IOException {
+        Log.d(TAG, "請求 URL: " + urlString);
+        
+        Endpoint endpoint = Endpoint.classify(urlString);
+        DiskResponseCache cache = endpoint.isCacheable() ? responseCache : null;
+        DiskResponseCache.Entry cached = cache != null ? cache.get(urlString) : null;
+        
+        if (cached != null && cached.isFresh(endpoint.getMaxAgeMillis())) {
+            try {
+                T result = parseCached(cached, parser);
+                cache.recordHit();
+                Log.d(TAG, "緩存命中: " + urlString);
+                return ApiResult.fresh(result);
+            } catch (IOException e) {
+                Log.w(TAG, "緩存文件無法讀取，重新下載: " + urlString, e);
+                cache.remove(cached);
+                cached = null;
+            }
+        }
+        
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        AdaptiveTimeout timeout = timeouts.get(endpoint);
+        if (!circuitBreaker.tryAcquire()) {
+            return staleOrThrow(urlString, cached, parser, new UpstreamException(
+                    "服務暫時不可用，請於 " + (circuitBreaker.getRetryAfterMillis() / 1000 + 1) + " 秒後再試",
+                    -1, false));
+        }
         
+        // 請求取消時斷開連接，但其他請求也在等待此結果時保留
+        RequestHandle handle = RequestHandle.current();
+        SingleFlight.SharedCheck sharing = SingleFlight.currentSharing();
+        Runnable abort = null;
+        
+        UpstreamException failure;
+        HttpExchange exchange = null;
+        boolean reusable = false;
         try {
-            JSONObject jsonObject = new JSONObject(jsonData);
-            Log.d(TAG, "解析路線站點數據: " + jsonData);
+            exchange = openExchange(urlString, "GET");
+            if (handle != null) {
+                final HttpExchange abortable = exchange;
+                abort = () -> {
+                    if (!sharing.isShared()) {
+                        abortable.abort();
+                    }
+                };
+                handle.onCancel(abort);
+                if (handle.isCancelled() && !sharing.isShared()) {
+                    throw new InterruptedIOException("請求已取消");
+                }
+            }
+            if (cached != null) {
+                if (cached.getEtag() != null) {
+                    exchange.setHeader("If-None-Match", cached.getEtag());
+                }
+                if (cached.getLastModified() != null) {
+                    exchange.setHeader("If-Modified-Since", cached.getLastModified());
+                }
+            }
             
-            if (jsonObject.has("data") && !jsonObject.isNull("data")) {
-                JSONArray dataArray = jsonObject.getJSONArray("data");
-                Log.d(TAG, "找到 " + dataArray.length() + " 個站點");
-                
-                // 首先獲取所有站點ID及順序
-                Map<String, Integer> stopSequences = new HashMap<>();
-                for (int i = 0; i < dataArray.length(); i++) {
-                    JSONObject stopObj = dataArray.getJSONObject(i);
-                    String stopId = stopObj.getString("stop");
-                    int seq = stopObj.getInt("seq");
-                    stopSequences.put(stopId, seq);
+            // 連接可能在 connect() 或 getStatusCode() 中建立，等待響應的時間不包括建立連接
+            long requestStart = System.nanoTime();
+            exchange.connect();
+            int responseCode = exchange.getStatusCode();
+            long connectNanos = exchange.getConnectNanos();
+            recordConnect(timeout, connectNanos);
+            timeout.recordResponse(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStart - Math.max(0, connectNanos)));
+            connectionStats.recordProtocol(exchange.getProtocol());
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                reusable = true;
+                circuitBreaker.recordSuccess();
+                cached = cache.markRevalidated(cached);
+                cache.recordRevalidated();
+                Log.d(TAG, "緩存已重新驗證 (304): " + urlString);
+                return ApiResult.fresh(parseCached(cached, parser));
+            } else if (responseCode == HTTP_UNPROCESSABLE_ENTITY) { // 422 - Unprocessable Entity 錯誤
+                String errorResponse = readErrorStream(exchange);
+                reusable = true;
+                Log.e(TAG, "HTTP 422 錯誤: " + errorResponse + " for URL: " + urlString);
+                failure = new UpstreamException("API 請求格式錯誤 (HTTP 422): " + errorResponse, responseCode, false);
+            } else if (responseCode != HttpURLConnection.HTTP_OK) {
+                Log.w(TAG, "HTTP error code: " + responseCode + " for URL: " + urlString);
+                readErrorStream(exchange);
+                reusable = true;
+                failure = new UpstreamException("服務器錯誤 (HTTP " + responseCode + ")", responseCode,
+                        UpstreamException.isRetryableStatus(responseCode));
+            } else if (cache != null) {
+                // 先寫入緩存，再從緩存文件解析，響應內容不會整個留在內存中
+                DiskResponseCache.Entry stored;
+                try (InputStream in = exchange.getBody()) {
+                    stored = cache.put(urlString, in,
+                            exchange.getHeader("ETag"), exchange.getHeader("Last-Modified"));
                 }
-                
-                // 然後獲取每個站點的詳細信息
-                for (Map.Entry<String, Integer> entry : stopSequences.entrySet()) {
-                    String stopId = entry.getKey();
-                    int seq = entry.getValue();
-                    
-                    try {
-                        // 獲取站點詳情
-                        String stopUrl = BASE_URL + "stop/" + stopId;
-                        String stopDetailJson = fetchData(stopUrl);
-                        JSONObject stopDetailObj = new JSONObject(stopDetailJson);
-                        
-                        if (stopDetailObj.has("data")) {
-                            JSONObject data = stopDetailObj.getJSONObject("data");
-                            
-                            String nameTC = data.getString("name_tc");
-                            String nameEN = data.getString("name_en");
-                            String lat = data.getString("lat");
-                            String lng = data.getString("long");
-                            
-                            BusStop stop = new BusStop(stopId, routeId, direction, serviceType, String.valueOf(seq));
-                            stop.setNameTC(nameTC);
-                            stop.setNameEN(nameEN);
-                            stop.setLocation(lat + "," + lng);
-                            
-                            stops.add(stop);
-                            Log.d(TAG, "添加站點: #" + seq + " " + nameTC + " (" + stopId + ")");
-                        }
-                        
-                        // 避免API限流
-                        Thread.sleep(50);
-                    } catch (Exception e) {
-                        Log.e(TAG, "獲取站點詳情出錯: " + stopId, e);
-                    }
+                reusable = true;
+                T result;
+                try {
+                    result = parseCached(stored, parser);
+                } catch (UpstreamException e) {
+                    // 無法解析的響應不留在緩存中
+                    cache.remove(stored);
+                    throw e;
                 }
-                
-                // 按站點順序排序
-                Collections.sort(stops, (a, b) -> {
-                    int seqA = Integer.parseInt(a.getSequence());
-                    int seqB = Integer.parseInt(b.getSequence());
-                    return seqA - seqB;
-                });
+                circuitBreaker.recordSuccess();
+                cache.recordMiss();
+                return ApiResult.fresh(result);
             } else {
-                Log.w(TAG, "API 返回的 JSON 中沒有 data 字段或為空");
+                T result;
+                try (InputStream in = exchange.getBody()) {
+                    result = parse(in, parser);
+                }
+                reusable = true;
+                circuitBreaker.recordSuccess();
+                return ApiResult.fresh(result);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (handle != null && handle.isCancelled() && !sharing.isShared()) {
+                // 連接是因取消而斷開的，不算上游錯誤
+                circuitBreaker.release();
+                throw new UpstreamException("請求已取消", -1, false);
+            }
+            if (e instanceof UpstreamException) {
+                // 響應無法解析（parse 已轉換）：服務器已正常回應
+                Log.e(TAG, "響應格式錯誤: " + urlString, e);
+                failure = (UpstreamException) e;
+            } else {
+                if (e instanceof SocketTimeoutException && exchange != null && exchange.getConnectNanos() >= 0) {
+                    // 已建立連接後的超時也計入延遲統計，網絡變慢時超時會放寬
+                    timeout.recordReadTimeout();
+                }
+                Log.e(TAG, "Error fetching data from URL: " + urlString, e);
+                failure = new UpstreamException("網絡錯誤: " + e.getMessage(), e);
+            }
+        } finally {
+            if (abort != null) {
+                handle.removeOnCancel(abort);
+            }
+            // 出錯的連接可能處於未知狀態，不放回連接池
+            if (exchange != null) {
+                exchange.release(reusable);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "解析站點數據時出錯: " + e.getMessage(), e);
         }
         
-        if (stops.isEmpty()) {
-            Log.w(TAG, "未找到任何站點，使用模擬數據");
-            stops = createMockStopsForRoute(routeId, direction, serviceType);
+        // 服務器能正常回應的錯誤（4xx、響應無法解析）不計入熔斷
+        if (failure.isRetryable()) {
+            circuitBreaker.recordFailure();
+        } else {
+            circuitBreaker.recordSuccess();
         }
-        
-        return stops;
+        return staleOrThrow(urlString, cached, parser, failure);
     }
     
     /**
-     * 為特定路線創建模擬站點數據
+     * 記錄建立連接的耗時，用於估算連接重用率及握手時間
+     * 只有新建的連接計入連接超時的統計：重用的連接不經過握手，計入會把連接超時壓到下限
      */
-    private List<BusStop> createMockStopsForRoute(String routeId, String direction, String serviceType) {
-        List<BusStop> mockStops = new ArrayList<>();
-        
-        // 根據路線ID創建合適的模擬數據
-        if ("74B".equals(routeId)) {
-            addMockStopToRoute(mockStops, "1", "九龍灣", "KOWLOON BAY", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "2", "彩頤花園", "RHYTHM GARDEN", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "3", "彩雲", "CHOI WAN", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "4", "鑽石山站", "DIAMOND HILL STATION", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "5", "黃大仙中心", "WONG TAI SIN CENTRE", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "6", "大圍站", "TAI WAI STATION", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "7", "沙田市中心", "SHA TIN TOWN CENTRE", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "8", "大埔中心", "TAI PO CENTRAL", routeId, direction, serviceType);
-        } else if ("E36A".equals(routeId)) {
-            addMockStopToRoute(mockStops, "1", "元朗(德業街)總站", "YUEN LONG (TAK YIP STREET) BUS TERMINUS", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "2", "尚寮庄", "SHEUNG LIU CHUEN", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "3", "形點II", "YOHO MALL II", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "4", "形點I", "YOHO MALL I", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "5", "天水圍站", "TIN SHUI WAI STATION", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "6", "東涌站", "TUNG CHUNG STATION", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "7", "東涌(逸東邨)", "TUNG CHUNG (YAT TUNG ESTATE)", routeId, direction, serviceType);
-        } else {
-            // 通用站點
-            addMockStopToRoute(mockStops, "1", "起點站", "STARTING POINT", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "2", "中途站1", "MIDDLE STOP 1", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "3", "中途站2", "MIDDLE STOP 2", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "4", "中途站3", "MIDDLE STOP 3", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "5", "中途站4", "MIDDLE STOP 4", routeId, direction, serviceType);
-            addMockStopToRoute(mockStops, "6", "終點站", "FINAL DESTINATION", routeId, direction, serviceType);
+    private void recordConnect(AdaptiveTimeout timeout, long connectNanos) {
+        if (connectNanos < 0) {
+            return;
+        }
+        connectionStats.recordConnect(connectNanos);
+        if (!ConnectionStats.isReused(connectNanos)) {
+            timeout.recordConnect(TimeUnit.NANOSECONDS.toMillis(connectNanos));
+        }
+    }
+    
+    private <T> T parseCached(DiskResponseCache.Entry entry, StreamParser<T> parser) throws IOException {
+        try (InputStream in = entry.openBody()) {
+            return parse(in, parser);
         }
-        
-        return mockStops;
     }
     
     /**
-     * 添加模擬站點到路線
+     * 以解析器讀取響應內容，區分讀取失敗與內容無法解析
+     * 讀取數據時的異常照原樣拋出（網絡錯誤，可以重試）；解析器自己拋出的異常（格式錯誤、
+     * JsonReader 的 IllegalStateException 等）轉換為不可重試的 UpstreamException
      */
-    private void addMockStopToRoute(List<BusStop> stops, String seq, String nameTC, String nameEN, String routeId, String direction, String serviceType) {
-        BusStop stop = new BusStop("MOCK_STOP_" + seq, routeId, direction, serviceType, seq);
-        stop.setNameTC(nameTC);
-        stop.setNameEN(nameEN);
-        stops.add(stop);
+    private static <T> T parse(InputStream in, StreamParser<T> parser) throws IOException {
+        ReadFailureTracker tracked = new ReadFailureTracker(in);
+        try {
+            return parser.parse(tracked);
+        } catch (IOException | RuntimeException e) {
+            if (tracked.failed) {
+                throw e;
+            }
+            throw UpstreamException.malformed(e);
+        }
     }
     
     /**
-     * 获取所有路线信息
-     * @param callback 回调函数
+     * 請求失敗後的處理：之後還會重試時直接拋出，否則有過期緩存就返回 STALE 結果
      */
-    public void getRouteList(final ApiCallback<List<BusRoute>> callback) {
-        executorService.execute(() -> {
+    private <T> ApiResult<T> staleOrThrow(String urlString, DiskResponseCache.Entry cached,
+                                          StreamParser<T> parser, UpstreamException failure) throws UpstreamException {
+        boolean willRetry = failure.isRetryable() && Boolean.TRUE.equals(retryPending.get());
+        if (cached != null && !willRetry) {
             try {
-                String url = "https://data.etabus.gov.hk/v1/transport/kmb/route/";
-                String jsonData = fetchData(url);
-                List<BusRoute> routes = parseRouteList(jsonData);
-                mainHandler.post(() -> callback.onSuccess(routes));
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting routes", e);
-                mainHandler.post(() -> callback.onError(e.getMessage()));
+                Log.w(TAG, "使用過期緩存: " + urlString);
+                return ApiResult.stale(parseCached(cached, parser), cached.getStoredAt(), failure.getMessage());
+            } catch (IOException e) {
+                Log.w(TAG, "過期緩存無法讀取: " + urlString, e);
             }
-        });
+        }
+        throw failure;
     }
     
     /**
-     * 解析所有站点数据
+     * 以UTF-8讀取響應內容為字符串
      */
-    private List<BusStop> parseAllStops(String jsonData) throws JSONException {
-        List<BusStop> stops = new ArrayList<>();
-        JSONObject jsonObject = new JSONObject(jsonData);
-        JSONArray stopsArray = jsonObject.getJSONArray("data");
+    private String readBody(InputStream in) throws IOException {
+        return bufferPool.readUtf8(in);
+    }
+    
+    /**
+     * 讀取錯誤響應內容
+     */
+    private String readErrorStream(HttpExchange exchange) {
+        try (InputStream in = exchange.getErrorBody()) {
+            if (in == null) {
+                return "";
+            }
+            return readBody(in);
+        } catch (Exception e) {
+            return "無法讀取錯誤響應: " + e.getMessage();
+        }
+    }
+    
+    /**
+     * 記錄讀取數據時是否出錯的輸入流
+     */
+    private static class ReadFailureTracker extends FilterInputStream {
+        boolean failed;
         
-        for (int i = 0; i < stopsArray.length(); i++) {
-            JSONObject stopObj = stopsArray.getJSONObject(i);
-            
-            String stopId = stopObj.getString("stop");
-            String nameTC = stopObj.getString("name_tc");
-            String nameEN = stopObj.getString("name_en");
-            String lat = stopObj.getString("lat");
-            String lng = stopObj.getString("long");
-            
-            BusStop stop = new BusStop(stopId, "", "", "", "");
-            stop.setNameTC(nameTC);
-            stop.setNameEN(nameEN);
-            stop.setLocation(lat + "," + lng);
-            
-            stops.add(stop);
+        ReadFailureTracker(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * 串流響應解析接口
+     */
+    private interface StreamParser<T> {
+        T parse(InputStream in) throws IOException;
+    }
+    
+    /**
+     * 一次請求的執行內容，返回的Future可以在其他線程完成；
+     * 拋出的異常或Future的失敗由 request 決定是否重試
+     */
+    private interface Call<T> {
+        CompletableFuture<ApiResult<T>> execute() throws Exception;
+    }
+    
+    private interface BatchEntry<T> {
+        void add(RequestHandle handle, Consumer<ApiResult<T>> delivery);
+    }
+    
+    /**
+     * 批量到站時間請求：經正常的請求流程（限流、重試、熔斷）獲取原始響應
+     */
+    private class EtaBatchLoader implements EtaBatcher.Loader {
+        @Override
+        public RequestHandle load(Endpoint endpoint, String stopId, String routeId, String serviceType,
+                                  Consumer<ApiResult<String>> consumer) {
+            String url;
+            if (endpoint == Endpoint.ROUTE_ETA) {
+                url = endpoint.url(baseUrl, routeId, serviceType);
+            } else if (endpoint == Endpoint.ETA) {
+                url = endpoint.url(baseUrl, stopId, routeId, serviceType);
+            } else {
+                url = endpoint.url(baseUrl, stopId);
+            }
+            RequestHandle handle = new RequestHandle();
+            start(new ApiRequest<>(handle, endpoint, ETA_BATCH_SOURCE, Runnable::run, consumer,
+                    () -> fetchData(url)));
+            return handle;
+        }
+        
+        @Override
+        public List<RouteEta> parseStopRoutes(String json, String stopId) throws Exception {
+            return EndpointRegistry.parseRouteEta(json, stopId);
         }
         
-        return stops;
+        @Override
+        public List<StopEta> parseStopEtas(String json, StopEtaFilter filter) throws Exception {
+            return StopEtaStreamParser.parse(json, filter);
+        }
+        
+        @Override
+        public RouteWideEta parseRouteWide(String json, String routeId, String serviceType) throws Exception {
+            return EndpointRegistry.parseRouteWideEta(json, routeId, serviceType);
+        }
     }
     
     /**
-     * 解析路线列表
+     * 一個進行中的請求：執行內容及結果的交付方式
      */
-    private List<BusRoute> parseRouteList(String jsonData) throws JSONException {
-        List<BusRoute> routes = new ArrayList<>();
-        JSONObject jsonObject = new JSONObject(jsonData);
-        JSONArray routesArray = jsonObject.getJSONArray("data");
+    private static class ApiRequest<T> {
+        final RequestHandle handle;
+        final Endpoint endpoint;
+        final String source;
+        final Executor deliveryExecutor;
+        final Consumer<ApiResult<T>> consumer;
+        final Call<T> call;      // 由批次合併器交付結果時為null
         
-        for (int i = 0; i < routesArray.length(); i++) {
-            JSONObject routeObj = routesArray.getJSONObject(i);
-            
-            String routeId = routeObj.getString("route");
-            String bound = routeObj.getString("bound");
-            String serviceType = routeObj.getString("service_type");
-            String origTC = routeObj.getString("orig_tc");
-            String destTC = routeObj.getString("dest_tc");
-            String origEN = routeObj.getString("orig_en");
-            String destEN = routeObj.getString("dest_en");
-            
-            BusRoute route = new BusRoute(routeId, origTC, origEN, destTC, destEN, bound, serviceType);
-            routes.add(route);
+        ApiRequest(RequestHandle handle, Endpoint endpoint, String source, Executor deliveryExecutor,
+                   Consumer<ApiResult<T>> consumer, Call<T> call) {
+            this.handle = handle;
+            this.endpoint = endpoint;
+            this.source = source;
+            this.deliveryExecutor = deliveryExecutor;
+            this.consumer = consumer;
+            this.call = call;
         }
+    }
+    
+    /**
+     * API回調接口
+     */
+    public interface ApiCallback<T> {
+        List<RouteEta> onSuccess(T result);
+        void onError(String errorMessage);
         
-        return routes;
+        /**
+         * 帶新鮮程度的結果（在主線程中調用）
+         * 預設有數據（包括過期緩存）時調用 onSuccess，無法取得時調用 onError；
+         * 需要區分 FRESH / STALE 的頁面可以覆蓋此方法
+         */
+        default void onResult(ApiResult<T> result) {
+            if (result.hasData()) {
+                onSuccess(result.getData());
+            } else {
+                onError(result.getErrorMessage());
+            }
+        }
+    }
+    
+    /**
+     * 获取所有巴士站点
+     * @param callback 回调函数
+     */
+    public RequestHandle getBusStops(final ApiCallback<List<BusStop>> callback) {
+        return request(callback, EndpointRegistry.STOPS);
+    }
+    
+    /**
+     * getBusStops 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
+     */
+    public ApiFuture<List<BusStop>> getBusStopsAsync(Executor executor, Object owner) {
+        return requestAsync(executor, owner, EndpointRegistry.STOPS);
+    }
+    
+    /**
+     * 获取路线站点信息
+     * 站點詳情全部獲取失敗時返回錯誤，部分失敗時跳過失敗的站點
+     * @param routeId 路线ID
+     * @param bound 方向
+     * @param serviceType 服务类型
+     * @param callback 回调函数
+     */
+    public RequestHandle getRouteStopList(String routeId, String bound, String serviceType, final ApiCallback<List<BusStop>> callback) {
+        return request(callback, Endpoint.ROUTE_STOP, routeStopsCall(routeId, bound, serviceType, false));
+    }
+    
+    /**
+     * getRouteStopList 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
+     */
+    public ApiFuture<List<BusStop>> getRouteStopListAsync(String routeId, String bound, String serviceType, Executor executor, Object owner) {
+        return requestAsync(Endpoint.ROUTE_STOP, executor, owner, routeStopsCall(routeId, bound, serviceType, false));
+    }
+    
+    /**
+     * 获取所有路线信息，與 getAllRoutes 相同
+     * @param callback 回调函数
+     */
+    public RequestHandle getRouteList(final ApiCallback<List<BusRoute>> callback) {
+        return getAllRoutes(callback);
+    }
+    
+    /**
+     * getRouteList 的Future版本，結果在 executor 中完成；owner 見 getAllRoutesAsync
+     */
+    public ApiFuture<List<BusRoute>> getRouteListAsync(Executor executor, Object owner) {
+        return getAllRoutesAsync(executor, owner);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 字節緩衝區池
+ * 讀取響應內容時重用字節數組，避免每個請求都重新分配大的緩衝區
+ */
+public class ByteBufferPool {
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCount = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxPooled;
+    private final int maxRetainedSize;
+
+    /**
+     * @param bufferSize 新緩衝區的大小
+     * @param maxPooled 池中最多保留的緩衝區數量
+     * @param maxRetainedSize 超過此大小的緩衝區用完後不放回池中
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled, int maxRetainedSize) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.maxRetainedSize = maxRetainedSize;
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if (buffer != null) {
+            pooledCount.decrementAndGet();
+            return buffer;
+        }
+        return new byte[bufferSize];
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer.length > maxRetainedSize || pooledCount.get() >= maxPooled) {
+            return;
+        }
+        pooledCount.incrementAndGet();
+        buffers.offer(buffer);
+    }
+
+    /**
+     * 把整個輸入流以UTF-8解碼為字符串
+     * 數據先讀入池中的緩衝區（不足時擴容），最後只分配一次字符串
+     */
+    public String readUtf8(InputStream in) throws IOException {
+        byte[] buffer = acquire();
+        int length = 0;
+        try {
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            release(buffer);
+        }
+    }
+}
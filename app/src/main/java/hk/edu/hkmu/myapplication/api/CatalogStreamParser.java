@@ -0,0 +1,139 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import hk.edu.hkmu.myapplication.model.BusRoute;
+import hk.edu.hkmu.myapplication.model.BusRouteJsonCodec;
+import hk.edu.hkmu.myapplication.model.BusStop;
+import hk.edu.hkmu.myapplication.model.StopDetail;
+import hk.edu.hkmu.myapplication.model.StopDetailJsonCodec;
+
+/**
+ * 九巴響應的串流解析器
+ * 逐個讀取 data 數組中的元素並立即生成模型對象，不會建立完整的 JSON 樹。
+ * 元素一般由編譯時生成的 {模型名}JsonCodec 讀取。
+ */
+public final class CatalogStreamParser {
+
+    private CatalogStreamParser() {
+    }
+
+    /**
+     * 解析 route/ 響應，每解析出一條路線就交給 consumer
+     */
+    public static void readRoutes(InputStream in, Consumer<BusRoute> consumer) throws IOException {
+        readRoutes(in, new SymbolTable(), consumer);
+    }
+
+    /**
+     * symbols 為 null 時每個值各自保留一個實例
+     */
+    static void readRoutes(InputStream in, SymbolTable symbols, Consumer<BusRoute> consumer) throws IOException {
+        readData(new InputStreamReader(in, StandardCharsets.UTF_8),
+                reader -> BusRouteJsonCodec.read(reader, null, symbols), consumer);
+    }
+
+    /**
+     * 解析 stop 響應，每解析出一個站點就交給 consumer
+     */
+    public static void readStops(InputStream in, Consumer<BusStop> consumer) throws IOException {
+        readStops(in, new SymbolTable(), consumer);
+    }
+
+    /**
+     * symbols 為 null 時每個值各自保留一個實例
+     */
+    static void readStops(InputStream in, SymbolTable symbols, Consumer<BusStop> consumer) throws IOException {
+        readData(new InputStreamReader(in, StandardCharsets.UTF_8), reader -> readStop(reader, symbols), consumer);
+    }
+
+    /**
+     * 把響應 data 數組中的元素逐個讀出並放入列表
+     */
+    static <T> List<T> readData(String json, ElementReader<T> elementReader) throws IOException {
+        List<T> elements = new ArrayList<>();
+        readData(new StringReader(json), elementReader, elements::add);
+        return elements;
+    }
+
+    private static <T> void readData(Reader in, ElementReader<T> elementReader, Consumer<T> consumer)
+            throws IOException {
+        JsonReader reader = new JsonReader(in);
+        try {
+            if (!moveToData(reader, JsonToken.BEGIN_ARRAY)) {
+                return;
+            }
+            while (reader.hasNext()) {
+                T element = elementReader.read(reader);
+                if (element != null) {
+                    consumer.accept(element);
+                }
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+    }
+
+    // 站點目錄的元素與 stop/{stop_id} 的 data 格式相同；同名的站點（例如馬路兩邊的車站）共用名稱
+    private static BusStop readStop(JsonReader reader, SymbolTable symbols) throws IOException {
+        StopDetail detail = StopDetailJsonCodec.read(reader, null, symbols);
+        if (detail == null) {
+            return null;
+        }
+        BusStop stop = new BusStop(detail.getStopId(), "", "", "", "");
+        detail.applyTo(stop);
+        return stop;
+    }
+
+    /**
+     * 讀取響應中的 data 對象（單個記錄的端點，例如 stop/{stop_id}）
+     * @return 讀出的對象；沒有 data 對象或 elementReader 返回 null 時為 null
+     */
+    static <T> T readDataObject(String json, ElementReader<T> elementReader) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        try {
+            return moveToData(reader, JsonToken.BEGIN_OBJECT) ? elementReader.read(reader) : null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 跳過頂層的其他字段，停在 data 的開頭；data 為數組時已進入數組
+     * @return 是否找到指定類型的 data
+     */
+    private static boolean moveToData(JsonReader reader, JsonToken type) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("data".equals(name) && reader.peek() == type) {
+                if (type == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                }
+                return true;
+            }
+            reader.skipValue();
+        }
+        reader.endObject();
+        return false;
+    }
+
+    /**
+     * 讀取 data 中的一個元素，返回 null 表示跳過該元素
+     */
+    interface ElementReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+}
@@ -0,0 +1,115 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 熔斷器
+ * 連續失敗達到閾值後斷開(OPEN)，期間的請求直接失敗而不訪問服務器；
+ * 冷卻時間過後進入半開(HALF_OPEN)狀態，只放行一個探測請求，
+ * 探測成功則恢復(CLOSED)，失敗則重新斷開。
+ */
+public class CircuitBreaker {
+    private static final String TAG = "CircuitBreaker";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    // 單調時鐘（納秒）；不依賴 SystemClock，在主機JVM的測試中同樣可用
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this(name, failureThreshold, openMillis, System::nanoTime);
+    }
+
+    /**
+     * @param clock 單調時鐘（納秒），測試中可以手動推進
+     */
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * 是否允許發出請求；允許後必須調用 recordSuccess 或 recordFailure
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now() - openedAt < openMillis) {
+                    return false;
+                }
+                Log.d(TAG, name + " 進入半開狀態，發出探測請求");
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            Log.d(TAG, name + " 已恢復");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                Log.w(TAG, name + " 連續失敗 " + consecutiveFailures + " 次，暫停請求 " + openMillis + "ms");
+            }
+            state = State.OPEN;
+            openedAt = now();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * 請求被取消、沒有結果時歸還探測名額
+     */
+    public synchronized void release() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 距離允許下一個探測請求的時間，未斷開時為0
+     */
+    public synchronized long getRetryAfterMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openMillis - (now() - openedAt));
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(clock.getAsLong());
+    }
+}
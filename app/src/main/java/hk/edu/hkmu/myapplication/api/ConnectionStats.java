@@ -0,0 +1,96 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 連接統計
+ * HttpURLConnection 不會直接告訴我們連接是否來自連接池，
+ * 因此以建立連接的耗時判斷：從連接池取出的連接幾乎不需要時間，
+ * 新建連接則要經過 DNS、TCP 及 TLS 握手。
+ */
+public class ConnectionStats {
+    // 建立連接低於此耗時視為重用了已有連接
+    private static final long REUSE_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final AtomicLong connectCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+    private final AtomicLong handshakeCount = new AtomicLong();
+    private final AtomicLong handshakeNanosTotal = new AtomicLong();
+    private volatile long lastHandshakeNanos;
+    private volatile long dnsLookupNanos;
+    private final AtomicLong responseCount = new AtomicLong();
+    private final AtomicLong http2ResponseCount = new AtomicLong();
+
+    /**
+     * 建立連接的耗時是否表示重用了連接池中的連接
+     */
+    public static boolean isReused(long connectNanos) {
+        return connectNanos < REUSE_THRESHOLD_NANOS;
+    }
+
+    /**
+     * 記錄一次建立連接的耗時（HttpExchange.getConnectNanos）
+     */
+    public void recordConnect(long nanos) {
+        connectCount.incrementAndGet();
+        if (isReused(nanos)) {
+            reusedCount.incrementAndGet();
+        } else {
+            handshakeCount.incrementAndGet();
+            handshakeNanosTotal.addAndGet(nanos);
+            lastHandshakeNanos = nanos;
+        }
+    }
+
+    /**
+     * 記錄預先解析域名的耗時
+     */
+    public void recordDnsLookup(long nanos) {
+        dnsLookupNanos = nanos;
+    }
+
+    /**
+     * 記錄響應使用的協議
+     */
+    public void recordProtocol(String protocol) {
+        responseCount.incrementAndGet();
+        if ("h2".equals(protocol)) {
+            http2ResponseCount.incrementAndGet();
+        }
+    }
+
+    public long getConnectCount() {
+        return connectCount.get();
+    }
+
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+    /** 連接重用率 (0 - 1) */
+    public double getReuseRate() {
+        long total = connectCount.get();
+        return total == 0 ? 0 : (double) reusedCount.get() / total;
+    }
+
+    /** 新建連接（含握手）的平均耗時 */
+    public long getAverageHandshakeMillis() {
+        long count = handshakeCount.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(handshakeNanosTotal.get() / count);
+    }
+
+    /** 經 HTTP/2 多路複用連接收到的響應比例 (0 - 1) */
+    public double getHttp2Rate() {
+        long total = responseCount.get();
+        return total == 0 ? 0 : (double) http2ResponseCount.get() / total;
+    }
+
+    public long getLastHandshakeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastHandshakeNanos);
+    }
+
+    public long getDnsLookupMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(dnsLookupNanos);
+    }
+}
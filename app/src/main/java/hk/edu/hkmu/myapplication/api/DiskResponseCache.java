@@ -0,0 +1,317 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 響應磁盤緩存
+ * 保存響應內容及其驗證信息(ETag / Last-Modified)，用於條件請求；
+ * 總大小超過上限時按最近最少使用(LRU)淘汰。索引在第一次使用時才從磁盤加載。
+ */
+public class DiskResponseCache {
+    private static final String TAG = "DiskResponseCache";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+
+    private final File directory;
+    private final long maxBytes;
+
+    // 按訪問順序排列，最舊的在前面
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private boolean loaded;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong revalidatedCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public DiskResponseCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 查找URL對應的緩存
+     */
+    public synchronized Entry get(String url) {
+        ensureLoaded();
+        Entry entry = entries.get(keyOf(url));
+        if (entry != null && !entry.bodyFile.exists()) {
+            remove(entry);
+            return null;
+        }
+        if (entry != null) {
+            entry.bodyFile.setLastModified(System.currentTimeMillis());
+        }
+        return entry;
+    }
+
+    /**
+     * 把響應內容寫入緩存並返回新的緩存項
+     * 內容先寫到臨時文件，完成後再替換舊文件
+     */
+    public Entry put(String url, InputStream body, String etag, String lastModified) throws IOException {
+        synchronized (this) {
+            ensureLoaded();
+        }
+        String key = keyOf(url);
+        File tmpFile = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+        long size = 0;
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            throw e;
+        }
+
+        Entry entry = new Entry(url, key, etag, lastModified, System.currentTimeMillis(), size,
+                new File(directory, key + BODY_SUFFIX));
+        synchronized (this) {
+            Entry old = entries.remove(key);
+            if (old != null) {
+                totalBytes -= old.size;
+            }
+            if (!tmpFile.renameTo(entry.bodyFile)) {
+                tmpFile.delete();
+                throw new IOException("無法寫入緩存文件: " + entry.bodyFile);
+            }
+            writeMeta(entry);
+            entries.put(key, entry);
+            totalBytes += size;
+            trimToSize(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 服務器返回304後更新緩存時間
+     */
+    public synchronized Entry markRevalidated(Entry entry) {
+        Entry updated = new Entry(entry.url, entry.key, entry.etag, entry.lastModified,
+                System.currentTimeMillis(), entry.size, entry.bodyFile);
+        if (entries.containsKey(entry.key)) {
+            entries.put(entry.key, updated);
+            writeMeta(updated);
+        }
+        return updated;
+    }
+
+    public synchronized void remove(Entry entry) {
+        if (entries.remove(entry.key) != null) {
+            totalBytes -= entry.size;
+        }
+        entry.bodyFile.delete();
+        new File(directory, entry.key + META_SUFFIX).delete();
+    }
+
+    public void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    public void recordRevalidated() {
+        revalidatedCount.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    /** 直接使用本地緩存、沒有網絡請求的次數 */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /** 服務器返回304、使用本地緩存的次數 */
+    public long getRevalidatedCount() {
+        return revalidatedCount.get();
+    }
+
+    /** 需要完整下載的次數 */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public synchronized long getSize() {
+        ensureLoaded();
+        return totalBytes;
+    }
+
+    // 淘汰最久未使用的緩存項，剛寫入的項除外
+    private void trimToSize(Entry keep) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            if (eldest == keep) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= eldest.size;
+            eldest.bodyFile.delete();
+            new File(directory, eldest.key + META_SUFFIX).delete();
+            Log.d(TAG, "淘汰緩存: " + eldest.url);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "無法創建緩存目錄: " + directory);
+            return;
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<Entry> found = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".tmp")) {
+                file.delete();
+            } else if (name.endsWith(META_SUFFIX)) {
+                Entry entry = readMeta(file);
+                if (entry != null && entry.bodyFile.exists()) {
+                    found.add(entry);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        // 按最後訪問時間恢復LRU順序
+        Collections.sort(found, (a, b) -> Long.compare(a.bodyFile.lastModified(), b.bodyFile.lastModified()));
+        for (Entry entry : found) {
+            entries.put(entry.key, entry);
+            totalBytes += entry.size;
+        }
+        trimToSize(null);
+    }
+
+    private Entry readMeta(File metaFile) {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(metaFile)) {
+            properties.load(in);
+            String key = metaFile.getName().substring(0, metaFile.getName().length() - META_SUFFIX.length());
+            return new Entry(
+                    properties.getProperty("url"),
+                    key,
+                    properties.getProperty("etag"),
+                    properties.getProperty("lastModified"),
+                    Long.parseLong(properties.getProperty("storedAt", "0")),
+                    Long.parseLong(properties.getProperty("size", "0")),
+                    new File(directory, key + BODY_SUFFIX));
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "無法讀取緩存信息: " + metaFile, e);
+            return null;
+        }
+    }
+
+    private void writeMeta(Entry entry) {
+        Properties properties = new Properties();
+        properties.setProperty("url", entry.url);
+        if (entry.etag != null) {
+            properties.setProperty("etag", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            properties.setProperty("lastModified", entry.lastModified);
+        }
+        properties.setProperty("storedAt", String.valueOf(entry.storedAt));
+        properties.setProperty("size", String.valueOf(entry.size));
+        try (OutputStream out = new FileOutputStream(new File(directory, entry.key + META_SUFFIX))) {
+            properties.store(out, null);
+        } catch (IOException e) {
+            Log.w(TAG, "無法寫入緩存信息: " + entry.url, e);
+        }
+    }
+
+    private static String keyOf(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 緩存項
+     */
+    public static class Entry {
+        private final String url;
+        private final String key;
+        private final String etag;
+        private final String lastModified;
+        private final long storedAt;
+        private final long size;
+        private final File bodyFile;
+
+        Entry(String url, String key, String etag, String lastModified, long storedAt, long size, File bodyFile) {
+            this.url = url;
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.size = size;
+            this.bodyFile = bodyFile;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 在maxAge內可以不經驗證直接使用
+         */
+        public boolean isFresh(long maxAgeMillis) {
+            return System.currentTimeMillis() - storedAt < maxAgeMillis;
+        }
+
+        public InputStream openBody() throws IOException {
+            return new FileInputStream(bodyFile);
+        }
+    }
+}
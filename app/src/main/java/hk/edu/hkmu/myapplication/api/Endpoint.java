@@ -0,0 +1,159 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 九巴API端點分類及其URL模板、緩存、重試、優先級及超時策略
+ * 目錄類端點（路線、站點）每天變化很少，可以在本地緩存；到站時間不緩存
+ * 各端點的解析方式在 EndpointRegistry 中綁定
+ */
+public enum Endpoint {
+    ROUTE("route/", TimeUnit.HOURS.toMillis(24), 3, Priority.BACKGROUND, 5000, 30000, false),
+    ROUTE_STOP("route-stop/{route}/{bound}/{service_type}", TimeUnit.HOURS.toMillis(12), 3, Priority.VISIBLE, 3000, 15000, false),
+    STOP_LIST("stop", TimeUnit.HOURS.toMillis(24), 3, Priority.BACKGROUND, 5000, 30000, false),
+    STOP("stop/{stop_id}", TimeUnit.HOURS.toMillis(24), 3, Priority.VISIBLE, 2000, 10000, false),
+    ETA("eta/{stop_id}/{route}/{service_type}", 0, 2, Priority.INTERACTIVE, 2000, 8000, true),
+    STOP_ETA("stop-eta/{stop_id}", 0, 2, Priority.INTERACTIVE, 2000, 8000, true),
+    ROUTE_ETA("route-eta/{route}/{service_type}", 0, 2, Priority.INTERACTIVE, 3000, 10000, false),
+    OTHER(null, 0, 1, Priority.BACKGROUND, 15000, 15000, false);
+
+    private static final String API_PATH = "/transport/kmb/";
+
+    private final String pathTemplate;
+    private final long maxAgeMillis;
+    private final int maxAttempts;
+    private final Priority priority;
+    private final int minTimeoutMillis;
+    private final int maxTimeoutMillis;
+    private final boolean batchable;
+
+    Endpoint(String pathTemplate, long maxAgeMillis, int maxAttempts, Priority priority,
+             int minTimeoutMillis, int maxTimeoutMillis, boolean batchable) {
+        this.pathTemplate = pathTemplate;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxAttempts = maxAttempts;
+        this.priority = priority;
+        this.minTimeoutMillis = minTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.batchable = batchable;
+    }
+
+    /**
+     * 相對於API地址的路徑模板，參數以 {name} 表示；OTHER 沒有模板
+     */
+    public String getPathTemplate() {
+        return pathTemplate;
+    }
+
+    /**
+     * 按模板生成URL，params 按模板中參數的順序填入
+     */
+    public String url(String baseUrl, String... params) {
+        if (pathTemplate == null) {
+            throw new IllegalStateException(name() + " 沒有URL模板");
+        }
+        StringBuilder url = new StringBuilder(baseUrl);
+        int index = 0;
+        for (String segment : pathTemplate.split("/", -1)) {
+            if (url.length() > baseUrl.length()) {
+                url.append('/');
+            }
+            if (isParameter(segment)) {
+                if (index >= params.length) {
+                    throw new IllegalArgumentException(name() + " 缺少參數: " + segment);
+                }
+                url.append(params[index++]);
+            } else {
+                url.append(segment);
+            }
+        }
+        if (index != params.length) {
+            throw new IllegalArgumentException(name() + " 參數過多: " + params.length);
+        }
+        return url.toString();
+    }
+
+    /**
+     * 緩存在不重新驗證的情況下可直接使用的時間
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    public boolean isCacheable() {
+        return maxAgeMillis > 0;
+    }
+
+    /**
+     * 最多嘗試次數（包括第一次）；到站時間很快過時，重試次數較少
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 請求的預設優先級：到站時間最優先，整個目錄的下載放在最後
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * 是否可以對沖：只有冪等且響應很小的到站時間請求
+     */
+    public boolean isHedgeable() {
+        return this == ETA || this == STOP_ETA;
+    }
+
+    /**
+     * 是否可以把短時間內的多個請求合併為一次批量請求（逐站到站時間）
+     */
+    public boolean isBatchable() {
+        return batchable;
+    }
+
+    /**
+     * 等待響應超時的下限及上限；目錄下載較大，上限較寬
+     */
+    public int getMinTimeoutMillis() {
+        return minTimeoutMillis;
+    }
+
+    public int getMaxTimeoutMillis() {
+        return maxTimeoutMillis;
+    }
+
+    /**
+     * 根據URL判斷端點類型：路徑與模板的段數相同，且非參數段完全相同
+     */
+    public static Endpoint classify(String url) {
+        int index = url.indexOf(API_PATH);
+        if (index < 0) {
+            return OTHER;
+        }
+        String[] path = url.substring(index + API_PATH.length()).split("/");
+        for (Endpoint endpoint : values()) {
+            if (endpoint.pathTemplate != null && endpoint.matches(path)) {
+                return endpoint;
+            }
+        }
+        return OTHER;
+    }
+
+    private boolean matches(String[] path) {
+        String[] template = pathTemplate.split("/");
+        if (template.length != path.length) {
+            return false;
+        }
+        for (int i = 0; i < template.length; i++) {
+            if (!isParameter(template[i]) && !template[i].equals(path[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isParameter(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}");
+    }
+}
@@ -0,0 +1,132 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import hk.edu.hkmu.myapplication.model.BusRoute;
+import hk.edu.hkmu.myapplication.model.BusStop;
+import hk.edu.hkmu.myapplication.model.BusStopJsonCodec;
+import hk.edu.hkmu.myapplication.model.RouteEta;
+import hk.edu.hkmu.myapplication.model.RouteEtaJsonCodec;
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
+import hk.edu.hkmu.myapplication.model.RouteWideEtaEntry;
+import hk.edu.hkmu.myapplication.model.RouteWideEtaEntryJsonCodec;
+import hk.edu.hkmu.myapplication.model.StopDetail;
+import hk.edu.hkmu.myapplication.model.StopDetailJsonCodec;
+import hk.edu.hkmu.myapplication.model.StopEta;
+
+/**
+ * 九巴API端點註冊表
+ * 每個端點在這裡聲明一次：URL模板及策略（緩存時間、優先級、重試、超時、是否可合併）由 Endpoint 定義，
+ * 解析方式在這裡綁定。BusApiClient 的所有請求都經這些聲明發出，
+ * 因此每個端點都使用相同的緩存、請求合併及統計，修改 Endpoint 的策略即對所有調用者生效。
+ */
+final class EndpointRegistry {
+    private static final String TAG = "EndpointRegistry";
+
+    /** route/ 路線目錄 */
+    static final ApiEndpoint<List<BusRoute>> ROUTES = ApiEndpoint.streamed(Endpoint.ROUTE, "routes",
+            (in, params) -> {
+                List<BusRoute> routes = new ArrayList<>();
+                CatalogStreamParser.readRoutes(in, routes::add);
+                return routes;
+            });
+
+    /** stop 站點目錄 */
+    static final ApiEndpoint<List<BusStop>> STOPS = ApiEndpoint.streamed(Endpoint.STOP_LIST, "allStops",
+            (in, params) -> {
+                List<BusStop> stops = new ArrayList<>();
+                CatalogStreamParser.readStops(in, stops::add);
+                return stops;
+            });
+
+    /** route-stop/{route}/{bound}/{service_type} 路線站點順序（不包含站點詳情） */
+    static final ApiEndpoint<List<BusStop>> ROUTE_STOPS = ApiEndpoint.parsed(Endpoint.ROUTE_STOP, "routeStops",
+            (json, params) -> parseRouteStopList(json, params[0], params[1], params[2]));
+
+    /** stop/{stop_id} 單個站點的名稱及位置 */
+    static final ApiEndpoint<BusStop> STOP_DETAIL = ApiEndpoint.parsed(Endpoint.STOP, "stopDetail",
+            (json, params) -> parseStopDetail(json, params[0]));
+
+    /** eta/{stop_id}/{route}/{service_type} 某站點某路線的到站時間 */
+    static final ApiEndpoint<List<RouteEta>> ROUTE_ETAS = ApiEndpoint.parsed(Endpoint.ETA, "routeEta",
+            (json, params) -> parseRouteEta(json, params[0]));
+
+    /** stop-eta/{stop_id} 某站點所有路線的到站時間 */
+    static final ApiEndpoint<List<StopEta>> STOP_ETAS = stopEtas(StopEtaFilter.ALL);
+
+    /** route-eta/{route}/{service_type} 整條路線的到站時間 */
+    static final ApiEndpoint<RouteWideEta> ROUTE_WIDE_ETA = ApiEndpoint.parsed(Endpoint.ROUTE_ETA, "routeWideEta",
+            (json, params) -> parseRouteWideEta(json, params[0], params[1]));
+
+    private EndpointRegistry() {
+    }
+
+    /**
+     * stop-eta/{stop_id} 中符合 filter 的到站時間，不符合的元素在解析時跳過
+     * 名稱包含過濾條件，不同條件的解析結果不會互相共享
+     */
+    static ApiEndpoint<List<StopEta>> stopEtas(StopEtaFilter filter) {
+        return ApiEndpoint.parsed(Endpoint.STOP_ETA, "stopEta[" + filter + "]",
+                (json, params) -> StopEtaStreamParser.parse(json, filter));
+    }
+
+    /**
+     * 解析ETA數據
+     */
+    static List<RouteEta> parseRouteEta(String jsonData, String stopId) throws IOException {
+        List<RouteEta> etaList = CatalogStreamParser.readData(jsonData, reader -> RouteEtaJsonCodec.read(reader, stopId));
+        Log.d(TAG, "獲取到" + etaList.size() + "個到站時間數據");
+        return etaList;
+    }
+
+    /**
+     * 解析整條路線的ETA數據
+     * route-eta 返回的條目沒有站點ID，只有方向(dir)和站點順序(seq)；沒有 seq 的條目跳過
+     */
+    static RouteWideEta parseRouteWideEta(String jsonData, String routeId, String serviceType) throws IOException {
+        RouteWideEta routeWideEta = new RouteWideEta(routeId, serviceType);
+        List<RouteWideEtaEntry> entries = CatalogStreamParser.readData(jsonData, RouteWideEtaEntryJsonCodec::read);
+        Log.d(TAG, "獲取到" + entries.size() + "個路線到站時間數據");
+        
+        for (RouteWideEtaEntry entry : entries) {
+            int seq;
+            try {
+                seq = Integer.parseInt(entry.getSeq());
+            } catch (NumberFormatException e) {
+                throw new IOException("路線到站時間的站點順序無效: " + entry.getSeq(), e);
+            }
+            routeWideEta.add(entry.getDirection(), seq, entry.toRouteEta(routeId, serviceType));
+        }
+        return routeWideEta;
+    }
+    
+    /**
+     * 解析路線站點順序（不包含站點詳情）
+     * 響應格式錯誤時拋出異常，與其他端點一樣由調用者重試或報告錯誤
+     */
+    static List<BusStop> parseRouteStopList(String jsonData, String routeId, String direction, String serviceType)
+            throws IOException {
+        List<BusStop> stops = CatalogStreamParser.readData(jsonData,
+                reader -> BusStopJsonCodec.read(reader, routeId, direction, serviceType));
+        Log.d(TAG, "找到 " + stops.size() + " 個站點");
+        return stops;
+    }
+    
+    /**
+     * 解析單個站點的詳情（名稱及位置）
+     */
+    static BusStop parseStopDetail(String jsonData, String stopId) throws IOException {
+        StopDetail detail = CatalogStreamParser.readDataObject(jsonData, StopDetailJsonCodec::read);
+        if (detail == null) {
+            throw new IOException("站點詳情API沒有返回data字段: " + stopId);
+        }
+        
+        BusStop stop = new BusStop(stopId, "", "", "", "");
+        detail.applyTo(stop);
+        return stop;
+    }
+}
@@ -0,0 +1,411 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import hk.edu.hkmu.myapplication.model.BusStop;
+import hk.edu.hkmu.myapplication.model.RouteEta;
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
+import hk.edu.hkmu.myapplication.model.StopEta;
+
+/**
+ * 到站時間請求的批次合併
+ * 逐站請求的到站時間先在短時間窗口內收集，窗口結束後合併為少量的批量請求：
+ * 同一路線多個站點的請求合併為一次 route-eta/{route}/{service_type}
+ * （需要已知各站點在路線上的順序），其餘按站點分組：同一站點有兩條或以上路線時合併為一次 stop-eta/{stop}，
+ * 只有一條路線時仍使用原本的 eta/{stop}/{route}/{service_type}，響應不會比不合併時大。
+ * 每個調用者只收到屬於自己的部分。
+ */
+public class EtaBatcher {
+    private static final String TAG = "EtaBatcher";
+    // 保留站點位置的路線數，超過時淘汰最久未使用的路線
+    static final int MAX_INDEXED_ROUTES = 32;
+
+    private final RequestGovernor governor;
+    private final Loader loader;
+    private volatile long windowMillis;
+
+    // 路線 -> 站點 -> 在路線上的位置（方向及順序），由已加載的路線站點列表建立；按訪問順序排列，最舊的在前面
+    private final Map<String, Map<String, List<Position>>> routeStopIndex = Collections.synchronizedMap(
+            new LinkedHashMap<String, Map<String, List<Position>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, List<Position>>> eldest) {
+                    return size() > MAX_INDEXED_ROUTES;
+                }
+            });
+
+    private List<Member> pending = new ArrayList<>();
+    private boolean flushScheduled;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    /**
+     * @param windowMillis 收集請求的時間窗口，0 表示不合併
+     */
+    public EtaBatcher(RequestGovernor governor, Loader loader, long windowMillis) {
+        this.governor = governor;
+        this.loader = loader;
+        setWindowMillis(windowMillis);
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("window: " + windowMillis);
+        }
+        this.windowMillis = windowMillis;
+    }
+
+    public boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    /**
+     * 記錄路線站點的位置，之後同一路線的請求可以合併為整條路線的請求
+     */
+    public void rememberRouteStops(List<BusStop> stops) {
+        for (BusStop stop : stops) {
+            Map<String, List<Position>> stopsOfRoute = routeStopIndex.computeIfAbsent(
+                    routeKey(stop.getRouteId(), stop.getServiceType()), key -> new ConcurrentHashMap<>());
+            List<Position> positions = stopsOfRoute.computeIfAbsent(stop.getStopId(), key -> new ArrayList<>());
+            Position position = new Position(stop.getDirection(), stop.getSequence());
+            synchronized (positions) {
+                if (!positions.contains(position)) {
+                    positions.add(position);
+                }
+            }
+        }
+    }
+
+    /**
+     * 加入一個「某站點某路線」的到站時間請求
+     */
+    public void addRouteEta(String stopId, String routeId, String serviceType, RequestHandle handle,
+                            Consumer<ApiResult<List<RouteEta>>> delivery) {
+        add(new Member(stopId, routeId, serviceType, null, handle, delivery, null));
+    }
+
+    /**
+     * 加入一個「某站點符合 filter 的路線」的到站時間請求
+     */
+    public void addStopEta(String stopId, StopEtaFilter filter, RequestHandle handle,
+                           Consumer<ApiResult<List<StopEta>>> delivery) {
+        add(new Member(stopId, null, null, filter, handle, null, delivery));
+    }
+
+    /** 收到的到站時間請求數 */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** 實際發出的批量請求數 */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    private void add(Member member) {
+        requestCount.incrementAndGet();
+        synchronized (this) {
+            pending.add(member);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        try {
+            governor.schedule(this::flush, windowMillis);
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        List<Member> members;
+        synchronized (this) {
+            members = pending;
+            pending = new ArrayList<>();
+            flushScheduled = false;
+        }
+
+        Map<String, List<Member>> byRoute = new LinkedHashMap<>();
+        Map<String, List<Member>> byStop = new LinkedHashMap<>();
+        for (Member member : members) {
+            if (member.handle.isCancelled()) {
+                continue;
+            }
+            if (member.routeDelivery != null) {
+                group(byRoute, routeKey(member.routeId, member.serviceType), member);
+            } else {
+                group(byStop, member.stopId, member);
+            }
+        }
+
+        for (List<Member> routeMembers : byRoute.values()) {
+            Map<String, List<Position>> positions = routeStopIndex.get(
+                    routeKey(routeMembers.get(0).routeId, routeMembers.get(0).serviceType));
+            if (countStops(routeMembers) >= 2 && positions != null && knowsAll(positions, routeMembers)) {
+                loadRouteWide(routeMembers, positions);
+            } else {
+                for (Member member : routeMembers) {
+                    group(byStop, member.stopId, member);
+                }
+            }
+        }
+        for (Map.Entry<String, List<Member>> entry : byStop.entrySet()) {
+            List<Member> stopMembers = entry.getValue();
+            // stop-eta 的調用者本來就需要整個站點的響應，同一站點的路線請求可以共用
+            if (countRoutes(stopMembers) == 1) {
+                loadRoute(entry.getKey(), stopMembers);
+            } else {
+                loadStop(entry.getKey(), stopMembers);
+            }
+        }
+    }
+
+    /**
+     * 同一站點只有一條路線的請求：與不合併時一樣使用 eta/{stop}/{route}/{service_type}
+     */
+    private void loadRoute(String stopId, List<Member> members) {
+        batchCount.incrementAndGet();
+        Member first = members.get(0);
+        RequestHandle batch = loader.load(Endpoint.ETA, stopId, first.routeId, first.serviceType, raw -> {
+            if (!raw.hasData()) {
+                deliverFailure(members, raw.getErrorMessage());
+                return;
+            }
+            try {
+                List<RouteEta> routeEtas = loader.parseStopRoutes(raw.getData(), stopId);
+                for (Member member : members) {
+                    member.routeDelivery.accept(raw.withData(routeEtas));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "解析到站時間出錯: " + stopId + " " + first.routeId, e);
+                deliverFailure(members, e.getMessage());
+            }
+        });
+        cancelWhenAllCancelled(batch, members);
+    }
+
+    private void loadStop(String stopId, List<Member> members) {
+        batchCount.incrementAndGet();
+        RequestHandle batch = loader.load(Endpoint.STOP_ETA, stopId, null, null, raw -> {
+            if (!raw.hasData()) {
+                deliverFailure(members, raw.getErrorMessage());
+                return;
+            }
+            try {
+                List<RouteEta> routeEtas = null;
+                // 相同過濾條件的調用者共享解析結果
+                Map<StopEtaFilter, List<StopEta>> stopEtas = new HashMap<>();
+                for (Member member : members) {
+                    if (member.routeDelivery != null) {
+                        if (routeEtas == null) {
+                            routeEtas = loader.parseStopRoutes(raw.getData(), stopId);
+                        }
+                        List<RouteEta> slice = new ArrayList<>();
+                        for (RouteEta eta : routeEtas) {
+                            if (eta.getRouteId().equals(member.routeId) && eta.getServiceType().equals(member.serviceType)) {
+                                slice.add(eta);
+                            }
+                        }
+                        member.routeDelivery.accept(raw.withData(slice));
+                    } else {
+                        List<StopEta> slice = stopEtas.get(member.filter);
+                        if (slice == null) {
+                            slice = loader.parseStopEtas(raw.getData(), member.filter);
+                            stopEtas.put(member.filter, slice);
+                        }
+                        member.stopDelivery.accept(raw.withData(slice));
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "解析站點到站時間出錯: " + stopId, e);
+                deliverFailure(members, e.getMessage());
+            }
+        });
+        cancelWhenAllCancelled(batch, members);
+    }
+
+    private void loadRouteWide(List<Member> members, Map<String, List<Position>> positions) {
+        batchCount.incrementAndGet();
+        Member first = members.get(0);
+        RequestHandle batch = loader.load(Endpoint.ROUTE_ETA, null, first.routeId, first.serviceType, raw -> {
+            if (!raw.hasData()) {
+                deliverFailure(members, raw.getErrorMessage());
+                return;
+            }
+            try {
+                RouteWideEta routeWideEta = loader.parseRouteWide(raw.getData(), first.routeId, first.serviceType);
+                for (Member member : members) {
+                    List<RouteEta> slice = new ArrayList<>();
+                    for (Position position : snapshot(positions.get(member.stopId))) {
+                        for (RouteEta eta : routeWideEta.getEtas(position.direction, position.sequence)) {
+                            slice.add(new RouteEta(eta.getRouteId(), member.stopId, eta.getDirection(), eta.getServiceType(),
+                                    eta.getEtaTime(), eta.getEtaMillis(), eta.getRemarkTC(), eta.getRemarkEN()));
+                        }
+                    }
+                    member.routeDelivery.accept(raw.withData(slice));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "解析路線到站時間出錯: " + first.routeId, e);
+                deliverFailure(members, e.getMessage());
+            }
+        });
+        cancelWhenAllCancelled(batch, members);
+    }
+
+    // 批次中所有調用者都取消後才取消批量請求
+    private static void cancelWhenAllCancelled(RequestHandle batch, List<Member> members) {
+        AtomicInteger remaining = new AtomicInteger(members.size());
+        for (Member member : members) {
+            member.handle.onCancel(() -> {
+                if (remaining.decrementAndGet() == 0) {
+                    batch.cancel();
+                }
+            });
+        }
+    }
+
+    private static void deliverFailure(List<Member> members, String errorMessage) {
+        for (Member member : members) {
+            if (member.routeDelivery != null) {
+                member.routeDelivery.accept(ApiResult.unavailable(errorMessage));
+            } else {
+                member.stopDelivery.accept(ApiResult.unavailable(errorMessage));
+            }
+        }
+    }
+
+    private static void group(Map<String, List<Member>> groups, String key, Member member) {
+        List<Member> list = groups.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            groups.put(key, list);
+        }
+        list.add(member);
+    }
+
+    private static int countStops(List<Member> members) {
+        Set<String> stops = new HashSet<>();
+        for (Member member : members) {
+            stops.add(member.stopId);
+        }
+        return stops.size();
+    }
+
+    // stop-eta 的調用者不限路線，按一條以上計算
+    private static int countRoutes(List<Member> members) {
+        Set<String> routes = new HashSet<>();
+        for (Member member : members) {
+            if (member.routeDelivery == null) {
+                return Integer.MAX_VALUE;
+            }
+            routes.add(routeKey(member.routeId, member.serviceType));
+        }
+        return routes.size();
+    }
+
+    private static boolean knowsAll(Map<String, List<Position>> positions, List<Member> members) {
+        for (Member member : members) {
+            if (!positions.containsKey(member.stopId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Position> snapshot(List<Position> positions) {
+        synchronized (positions) {
+            return new ArrayList<>(positions);
+        }
+    }
+
+    private static String routeKey(String routeId, String serviceType) {
+        return routeId + "/" + serviceType;
+    }
+
+    /**
+     * 發出批量請求及解析響應的方式
+     */
+    public interface Loader {
+        /**
+         * 發出一個批量請求，結果交給 consumer
+         * STOP_ETA 使用 stopId；ROUTE_ETA 使用 routeId 及 serviceType；ETA 三者都使用
+         * @return 批量請求的句柄
+         */
+        RequestHandle load(Endpoint endpoint, String stopId, String routeId, String serviceType,
+                           Consumer<ApiResult<String>> consumer);
+
+        /** 把 stop-eta 或 eta 響應解析為各路線的到站時間 */
+        List<RouteEta> parseStopRoutes(String json, String stopId) throws Exception;
+
+        /** 把 stop-eta 響應解析為到站時間，只保留符合 filter 的部分 */
+        List<StopEta> parseStopEtas(String json, StopEtaFilter filter) throws Exception;
+
+        RouteWideEta parseRouteWide(String json, String routeId, String serviceType) throws Exception;
+    }
+
+    /**
+     * 站點在路線上的位置
+     */
+    private static class Position {
+        final String direction;
+        final String sequence;
+
+        Position(String direction, String sequence) {
+            this.direction = direction;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Position)) {
+                return false;
+            }
+            Position other = (Position) o;
+            return direction.equals(other.direction) && sequence.equals(other.sequence);
+        }
+
+        @Override
+        public int hashCode() {
+            return direction.hashCode() * 31 + sequence.hashCode();
+        }
+    }
+
+    /**
+     * 等待合併的請求；routeDelivery 與 stopDelivery 只有一個不為null
+     */
+    private static class Member {
+        final String stopId;
+        final String routeId;
+        final String serviceType;
+        final StopEtaFilter filter;
+        final RequestHandle handle;
+        final Consumer<ApiResult<List<RouteEta>>> routeDelivery;
+        final Consumer<ApiResult<List<StopEta>>> stopDelivery;
+
+        Member(String stopId, String routeId, String serviceType, StopEtaFilter filter, RequestHandle handle,
+               Consumer<ApiResult<List<RouteEta>>> routeDelivery, Consumer<ApiResult<List<StopEta>>> stopDelivery) {
+            this.stopId = stopId;
+            this.routeId = routeId;
+            this.serviceType = serviceType;
+            this.filter = filter;
+            this.handle = handle;
+            this.routeDelivery = routeDelivery;
+            this.stopDelivery = stopDelivery;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 一次HTTP請求及其響應
+ * 調用順序：setHeader → connect → getStatusCode → getBody / getErrorBody → release。
+ * abort 可以在任何線程中調用，用於取消請求。
+ */
+public interface HttpExchange {
+
+    void setHeader(String name, String value);
+
+    /**
+     * 建立連接；不單獨建立連接的實現（例如多路複用的連接）可以在 getStatusCode 中才連接
+     */
+    void connect() throws IOException;
+
+    /**
+     * 發出請求並等待響應頭
+     */
+    int getStatusCode() throws IOException;
+
+    /**
+     * 建立連接（DNS、TCP 及 TLS 握手）的耗時（納秒），從連接池取得的連接接近0；尚未建立連接時返回 -1
+     * 由實現自行測量，因為連接不一定在 connect() 中建立
+     */
+    long getConnectNanos();
+
+    String getHeader(String name);
+
+    /**
+     * 響應內容，已經解壓
+     */
+    InputStream getBody() throws IOException;
+
+    /**
+     * 錯誤響應的內容，已經解壓；沒有內容時返回null
+     */
+    InputStream getErrorBody() throws IOException;
+
+    /**
+     * 實際使用的協議，例如 "http/1.1" 或 "h2"
+     */
+    String getProtocol();
+
+    /**
+     * 斷開連接，正在進行的讀取會拋出 IOException
+     */
+    void abort();
+
+    /**
+     * 結束請求
+     * @param reusable 響應已完整讀取、連接可以留在連接池中重用
+     */
+    void release(boolean reusable);
+}
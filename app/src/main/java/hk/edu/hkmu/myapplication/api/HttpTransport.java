@@ -0,0 +1,20 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.IOException;
+
+/**
+ * HTTP傳輸層接口
+ * BusApiClient 只通過此接口發出請求，可以在運行時切換實現以比較不同的傳輸方式。
+ * 實現需要線程安全；每個請求使用一個新的 HttpExchange。
+ */
+public interface HttpTransport {
+
+    /** 實現名稱，用於日誌及統計 */
+    String getName();
+
+    /**
+     * 建立一個尚未發出的請求
+     * @param method "GET" 或 "HEAD"
+     */
+    HttpExchange newExchange(String url, String method, int connectTimeoutMillis, int readTimeoutMillis) throws IOException;
+}
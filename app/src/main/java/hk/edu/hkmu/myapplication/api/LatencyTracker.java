@@ -0,0 +1,53 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.Arrays;
+
+/**
+ * 延遲統計
+ * 保留最近的樣本（環形緩衝區），用於計算百分位數；舊樣本被新樣本覆蓋，
+ * 因此統計會跟隨網絡狀況變化。
+ */
+public class LatencyTracker {
+    private final long[] samples;
+    private int count;
+    private int next;
+
+    /**
+     * @param capacity 保留的樣本數量
+     */
+    public LatencyTracker(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * 最近樣本的百分位數（最近秩法），沒有樣本時返回0
+     * @param percentile 0 - 100
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) {
+                return 0;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
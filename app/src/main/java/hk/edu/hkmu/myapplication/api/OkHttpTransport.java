@@ -0,0 +1,195 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 基於 OkHttp 的傳輸層
+ * 服務器通過 ALPN 協商 HTTP/2 時，所有並發請求在同一個連接上多路複用，
+ * 不需要為每個並發的到站時間請求各建立一個連接；不支持時自動使用 HTTP/1.1。
+ * OkHttp 自動處理gzip；連接在發出請求時才建立，因此 connect() 不做任何事，
+ * 建立連接的耗時由 OkHttp 的連接事件測量。
+ */
+public class OkHttpTransport implements HttpTransport {
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private final OkHttpClient client;
+
+    public OkHttpTransport() {
+        this.client = new OkHttpClient.Builder()
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                // 重試由 BusApiClient 負責
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return "OkHttp";
+    }
+
+    @Override
+    public HttpExchange newExchange(String url, String method, int connectTimeoutMillis, int readTimeoutMillis) {
+        // newBuilder() 共享連接池及線程，只改變超時設置及事件監聽
+        ConnectTiming timing = new ConnectTiming();
+        OkHttpClient timed = client.newBuilder()
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .eventListener(timing)
+                .build();
+        return new Exchange(timed, timing, url, method);
+    }
+
+    /** 連接池中的連接數（使用 HTTP/2 時通常只有一個） */
+    public int getConnectionCount() {
+        return client.connectionPool().connectionCount();
+    }
+
+    private static class Exchange implements HttpExchange {
+        private final OkHttpClient client;
+        private final ConnectTiming timing;
+        private final Request.Builder request;
+        private volatile Call call;
+        private volatile boolean aborted;
+        private Response response;
+
+        Exchange(OkHttpClient client, ConnectTiming timing, String url, String method) {
+            this.client = client;
+            this.timing = timing;
+            this.request = new Request.Builder().url(url);
+            if ("HEAD".equals(method)) {
+                request.head();
+            } else {
+                request.get();
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            request.header(name, value);
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public int getStatusCode() throws IOException {
+            if (response == null) {
+                Call newCall = client.newCall(request.build());
+                call = newCall;
+                if (aborted) {
+                    newCall.cancel();
+                }
+                response = newCall.execute();
+            }
+            return response.code();
+        }
+
+        @Override
+        public long getConnectNanos() {
+            return timing.connectNanos;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response == null ? null : response.header(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            getStatusCode();
+            ResponseBody body = response.body();
+            if (body == null) {
+                throw new IOException("響應沒有內容");
+            }
+            return body.byteStream();
+        }
+
+        @Override
+        public InputStream getErrorBody() throws IOException {
+            getStatusCode();
+            ResponseBody body = response.body();
+            return body == null ? null : body.byteStream();
+        }
+
+        @Override
+        public String getProtocol() {
+            return response == null ? "" : response.protocol().toString();
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            Call current = call;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void release(boolean reusable) {
+            if (!reusable) {
+                abort();
+            }
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * 測量一次請求建立連接的耗時
+     * 由開始解析域名（或開始連接）到連接建立完成，與 HttpURLConnection.connect() 包括的步驟相同；
+     * 從連接池取得連接（包括 HTTP/2 多路複用的連接）時為0
+     */
+    private static class ConnectTiming extends EventListener {
+        private volatile long startNanos = -1;
+        volatile long connectNanos = -1;
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            begin();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            begin();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectNanos = System.nanoTime() - startNanos;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (startNanos < 0) {
+                connectNanos = 0;
+            }
+        }
+
+        // 嘗試多個地址時從第一次開始計算
+        private void begin() {
+            if (startNanos < 0) {
+                startNanos = System.nanoTime();
+            }
+        }
+    }
+}
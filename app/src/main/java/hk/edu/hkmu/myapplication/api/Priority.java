@@ -0,0 +1,26 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 請求優先級
+ * 數值越小越優先。較低優先級的請求等待超過 maxWaitMillis 後會被提前處理，避免一直被插隊。
+ */
+public enum Priority {
+    INTERACTIVE(0),                             // 用戶點擊後等待顯示的到站時間
+    VISIBLE(TimeUnit.SECONDS.toMillis(2)),      // 當前頁面需要的數據
+    BACKGROUND(TimeUnit.SECONDS.toMillis(5));   // 目錄下載、預熱等後台工作
+
+    private final long maxWaitMillis;
+
+    Priority(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * 在隊列中等待超過此時間後優先處理，0表示不需要
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+}
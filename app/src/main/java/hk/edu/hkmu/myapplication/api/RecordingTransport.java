@@ -0,0 +1,180 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 錄製用的傳輸層
+ * 請求照常由另一個傳輸層發出，同時把完整讀取的響應及其耗時寫入 SessionArchive，
+ * 之後可以用 ReplayTransport 離線回放同一個操作流程。
+ * 被取消或出錯的請求不會錄製。響應內容在寫入前保留在內存中，只適合開發時使用。
+ */
+public class RecordingTransport implements HttpTransport {
+    private static final String TAG = "RecordingTransport";
+
+    private final HttpTransport delegate;
+    private final SessionArchive archive;
+    private final long startNanos = System.nanoTime();
+
+    public RecordingTransport(HttpTransport delegate, SessionArchive archive) {
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    @Override
+    public String getName() {
+        return "Recording(" + delegate.getName() + ")";
+    }
+
+    @Override
+    public HttpExchange newExchange(String url, String method, int connectTimeoutMillis, int readTimeoutMillis)
+            throws IOException {
+        return new Exchange(delegate.newExchange(url, method, connectTimeoutMillis, readTimeoutMillis), url, method);
+    }
+
+    private class Exchange implements HttpExchange {
+        private final HttpExchange exchange;
+        private final String url;
+        private final String method;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final long offsetNanos = System.nanoTime() - startNanos;
+        private long requestStartNanos;
+        private long responseNanos;
+        private long bodyStartNanos;
+        private long bodyEndNanos;
+        private int statusCode = -1;
+        private boolean bodyComplete;
+        private volatile boolean aborted;
+
+        Exchange(HttpExchange exchange, String url, String method) {
+            this.exchange = exchange;
+            this.url = url;
+            this.method = method;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            exchange.setHeader(name, value);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            requestStartNanos = System.nanoTime();
+            exchange.connect();
+        }
+
+        // 連接可能在 connect() 或 getStatusCode() 中建立，響應時間為總耗時減去建立連接的耗時
+        @Override
+        public int getStatusCode() throws IOException {
+            if (statusCode < 0) {
+                if (requestStartNanos == 0) {
+                    requestStartNanos = System.nanoTime();
+                }
+                statusCode = exchange.getStatusCode();
+                responseNanos = System.nanoTime() - requestStartNanos - Math.max(0, exchange.getConnectNanos());
+            }
+            return statusCode;
+        }
+
+        @Override
+        public long getConnectNanos() {
+            return exchange.getConnectNanos();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return exchange.getHeader(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return capture(exchange.getBody());
+        }
+
+        @Override
+        public InputStream getErrorBody() throws IOException {
+            InputStream in = exchange.getErrorBody();
+            return in == null ? null : capture(in);
+        }
+
+        @Override
+        public String getProtocol() {
+            return exchange.getProtocol();
+        }
+
+        @Override
+        public void abort() {
+            aborted = true;
+            exchange.abort();
+        }
+
+        @Override
+        public void release(boolean reusable) {
+            exchange.release(reusable);
+            // 沒有響應內容（例如304或HEAD）時同樣錄製
+            boolean noBody = bodyStartNanos == 0;
+            if (!reusable || aborted || statusCode < 0 || !(bodyComplete || noBody)) {
+                return;
+            }
+            Map<String, String> headers = new HashMap<>();
+            for (String name : SessionArchive.RECORDED_HEADERS) {
+                String value = exchange.getHeader(name);
+                if (value != null) {
+                    headers.put(name, value);
+                }
+            }
+            try {
+                archive.append(new SessionArchive.Record(url, method, statusCode, exchange.getProtocol(), headers,
+                        body.toByteArray(), toMillis(offsetNanos), toMillis(Math.max(0, exchange.getConnectNanos())), toMillis(responseNanos),
+                        noBody ? 0 : toMillis(bodyEndNanos - bodyStartNanos)));
+            } catch (IOException e) {
+                Log.w(TAG, "無法錄製響應: " + url, e);
+            }
+        }
+
+        private InputStream capture(InputStream in) {
+            bodyStartNanos = System.nanoTime();
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b < 0) {
+                        onEnd();
+                    } else {
+                        body.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read < 0) {
+                        onEnd();
+                    } else {
+                        body.write(buffer, offset, read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        private void onEnd() {
+            if (!bodyComplete) {
+                bodyComplete = true;
+                bodyEndNanos = System.nanoTime();
+            }
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
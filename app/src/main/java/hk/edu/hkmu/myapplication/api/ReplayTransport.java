@@ -0,0 +1,183 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 回放用的傳輸層
+ * 從 SessionArchive 讀取錄製的響應，不連接網絡。相同請求按錄製順序提供，
+ * 用完後重複最後一個。延遲按原始耗時乘以 latencyScale 模擬（0 表示沒有延遲），
+ * 因此同一個操作流程可以在不同版本之間重複運行並比較吞吐量及延遲。
+ * 沒有錄製的請求返回404。
+ */
+public class ReplayTransport implements HttpTransport {
+    private static final String TAG = "ReplayTransport";
+    private static final int NOT_FOUND = 404;
+
+    private final Map<String, ArrayDeque<SessionArchive.Record>> records = new HashMap<>();
+    private final double latencyScale;
+
+    private final AtomicLong servedCount = new AtomicLong();
+    private final AtomicLong missingCount = new AtomicLong();
+
+    public ReplayTransport(SessionArchive archive, double latencyScale) throws IOException {
+        if (latencyScale < 0) {
+            throw new IllegalArgumentException("latencyScale: " + latencyScale);
+        }
+        this.latencyScale = latencyScale;
+        List<SessionArchive.Record> loaded = archive.load();
+        for (SessionArchive.Record record : loaded) {
+            String key = key(record.method, record.url);
+            ArrayDeque<SessionArchive.Record> queue = records.get(key);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                records.put(key, queue);
+            }
+            queue.add(record);
+        }
+        Log.d(TAG, "載入 " + loaded.size() + " 個錄製的響應");
+    }
+
+    @Override
+    public String getName() {
+        return "Replay(x" + latencyScale + ")";
+    }
+
+    @Override
+    public HttpExchange newExchange(String url, String method, int connectTimeoutMillis, int readTimeoutMillis) {
+        return new Exchange(next(method, url), url, readTimeoutMillis);
+    }
+
+    /** 已回放的響應數 */
+    public long getServedCount() {
+        return servedCount.get();
+    }
+
+    /** 沒有錄製、返回404的請求數 */
+    public long getMissingCount() {
+        return missingCount.get();
+    }
+
+    private synchronized SessionArchive.Record next(String method, String url) {
+        ArrayDeque<SessionArchive.Record> queue = records.get(key(method, url));
+        if (queue == null) {
+            missingCount.incrementAndGet();
+            Log.w(TAG, "沒有錄製的響應: " + method + " " + url);
+            return null;
+        }
+        servedCount.incrementAndGet();
+        return queue.size() > 1 ? queue.poll() : queue.peek();
+    }
+
+    private static String key(String method, String url) {
+        return method + " " + url;
+    }
+
+    private class Exchange implements HttpExchange {
+        private final SessionArchive.Record record;
+        private final String url;
+        private final int readTimeoutMillis;
+        private final CountDownLatch aborted = new CountDownLatch(1);
+        private boolean responded;
+        private long connectNanos = -1;
+
+        Exchange(SessionArchive.Record record, String url, int readTimeoutMillis) {
+            this.record = record;
+            this.url = url;
+            this.readTimeoutMillis = readTimeoutMillis;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+        }
+
+        @Override
+        public void connect() throws IOException {
+            long start = System.nanoTime();
+            if (record != null) {
+                delay(record.connectMillis, false);
+            }
+            connectNanos = System.nanoTime() - start;
+        }
+
+        @Override
+        public long getConnectNanos() {
+            return connectNanos;
+        }
+
+        @Override
+        public int getStatusCode() throws IOException {
+            if (record == null) {
+                return NOT_FOUND;
+            }
+            if (!responded) {
+                delay(record.responseMillis, true);
+                responded = true;
+            }
+            return record.statusCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return record == null ? null : record.headers.get(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (record == null) {
+                throw new IOException("沒有錄製的響應: " + url);
+            }
+            delay(record.bodyMillis, true);
+            return new ByteArrayInputStream(record.body);
+        }
+
+        @Override
+        public InputStream getErrorBody() {
+            return record == null ? null : new ByteArrayInputStream(record.body);
+        }
+
+        @Override
+        public String getProtocol() {
+            return record == null ? "" : record.protocol;
+        }
+
+        @Override
+        public void abort() {
+            aborted.countDown();
+        }
+
+        @Override
+        public void release(boolean reusable) {
+        }
+
+        // 等待按比例縮放的原始耗時；超過讀取超時或被取消時拋出異常，與真實連接的行為一致
+        private void delay(long recordedMillis, boolean isRead) throws IOException {
+            long millis = (long) (recordedMillis * latencyScale);
+            boolean timedOut = isRead && readTimeoutMillis > 0 && millis > readTimeoutMillis;
+            long wait = timedOut ? readTimeoutMillis : millis;
+            try {
+                if (aborted.await(wait, TimeUnit.MILLISECONDS)) {
+                    throw new InterruptedIOException("請求已取消");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("請求被中斷");
+            }
+            if (timedOut) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 全局請求限流及調度器
+ * 限流：每個請求消耗一個令牌，令牌按固定速率補充，桶容量決定允許的突發請求數。
+ * 沒有令牌時請求在隊列中等待，由定時器在令牌補充後再提交到I/O線程池，
+ * 等待期間不佔用任何工作線程。
+ * 調度：請求按優先級分為多條通道，同時執行的請求數不超過線程數，
+ * 有空閒線程時先處理最高優先級的請求；低優先級請求等待過久會被提前處理，
+ * 並且總是保留線程給互動請求。同一通道內不同來源（頁面）的請求輪流出隊。
+ */
+public class RequestGovernor {
+    private static final String TAG = "RequestGovernor";
+
+    // I/O隊列已滿時重新嘗試的間隔
+    private static final long EXECUTOR_RETRY_MILLIS = 50;
+
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier clock;
+    private final int maxQueued;
+    private final int maxInFlight;
+    private final int reservedForInteractive;
+
+    private double permitsPerSecond;
+    private int burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    private final EnumMap<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+    private int queuedCount;
+    private int inFlight;
+    private int nonInteractiveInFlight;
+    private boolean drainScheduled;
+    private boolean shutdown;
+
+    private final AtomicLong immediateCount = new AtomicLong();
+    private final AtomicLong delayedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param maxInFlight 同時執行的請求上限（通常等於I/O線程數）
+     * @param reservedForInteractive 只給互動請求使用的名額
+     */
+    public RequestGovernor(Executor executor, double permitsPerSecond, int burst, int maxQueued,
+                           int maxInFlight, int reservedForInteractive) {
+        this(executor, createTimer(), System::nanoTime, permitsPerSecond, burst, maxQueued,
+                maxInFlight, reservedForInteractive);
+    }
+
+    /**
+     * @param scheduler 令牌補充後重新調度及延遲任務使用的定時器
+     * @param clock 單調時鐘（納秒），測試中可以手動推進
+     */
+    RequestGovernor(Executor executor, ScheduledExecutorService scheduler, LongSupplier clock,
+                    double permitsPerSecond, int burst, int maxQueued, int maxInFlight, int reservedForInteractive) {
+        if (maxInFlight < 1 || reservedForInteractive < 0 || reservedForInteractive >= maxInFlight) {
+            throw new IllegalArgumentException("invalid concurrency: " + maxInFlight + ", reserved " + reservedForInteractive);
+        }
+        this.executor = executor;
+        this.maxQueued = maxQueued;
+        this.maxInFlight = maxInFlight;
+        this.reservedForInteractive = reservedForInteractive;
+        for (Priority priority : Priority.values()) {
+            lanes.put(priority, new Lane());
+        }
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.lastRefillNanos = clock.getAsLong();
+        setRate(permitsPerSecond, burst);
+        this.tokens = burst;
+    }
+
+    private static ScheduledExecutorService createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "kmb-governor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * 設置每秒請求數及突發容量
+     */
+    public synchronized void setRate(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("invalid rate: " + permitsPerSecond + "/s, burst " + burst);
+        }
+        refill();
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.tokens = Math.min(tokens, burst);
+    }
+
+    /**
+     * 提交一個請求任務
+     * @param source 請求來源，同一來源的請求按順序執行，不同來源之間輪流執行
+     * @throws RejectedExecutionException 等待隊列已滿或限流器已關閉
+     */
+    public void submit(Priority priority, String source, Runnable task) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("限流器已關閉");
+            }
+            if (queuedCount >= maxQueued) {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("請求等待隊列已滿: " + queuedCount);
+            }
+            if (queuedCount > 0 || tokens < 1 || inFlight >= maxInFlight) {
+                delayedCount.incrementAndGet();
+            } else {
+                immediateCount.incrementAndGet();
+            }
+            lanes.get(priority).add(source, new Pending(priority, source, task, clock.getAsLong()), false);
+            queuedCount++;
+        }
+        drain();
+    }
+
+    /**
+     * 從等待隊列中移除尚未執行的任務
+     * @return 任務仍在隊列中並已移除時返回true
+     */
+    public synchronized boolean remove(String source, Runnable task) {
+        for (Lane lane : lanes.values()) {
+            if (lane.remove(source, task)) {
+                queuedCount--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 返回一個把任務交給限流器的Executor
+     */
+    public Executor asExecutor(Priority priority, String source) {
+        return task -> submit(priority, source, task);
+    }
+
+    /**
+     * 延遲後在定時器線程中執行 action（例如重新提交重試請求），action 應盡快返回
+     * @throws RejectedExecutionException 限流器已關閉
+     */
+    public void schedule(Runnable action, long delayMillis) {
+        scheduler.schedule(action, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 關閉限流器：不再接受新任務，排隊中的任務及延遲任務被丟棄、不會執行，
+     * 任務的提交者需要自行結束相應的請求。已在執行的任務不受影響。
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            for (Lane lane : lanes.values()) {
+                lane.clear();
+            }
+            queuedCount = 0;
+        }
+        scheduler.shutdownNow();
+    }
+
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    /** 不需等待即可執行的請求數 */
+    public long getImmediateCount() {
+        return immediateCount.get();
+    }
+
+    /** 因令牌不足或沒有空閒線程而排隊等待的請求數 */
+    public long getDelayedCount() {
+        return delayedCount.get();
+    }
+
+    /** 因隊列已滿被拒絕的請求數 */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public synchronized int getQueuedCount() {
+        return queuedCount;
+    }
+
+    /** 已提交到I/O線程池、尚未完成的請求數 */
+    public synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    public synchronized int getQueuedCount(Priority priority) {
+        return lanes.get(priority).size;
+    }
+
+    /**
+     * 該優先級的請求在隊列中的平均等待時間
+     */
+    public synchronized long getAverageWaitMillis(Priority priority) {
+        Lane lane = lanes.get(priority);
+        return lane.startedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(lane.waitNanosTotal / lane.startedCount);
+    }
+
+    private void drain() {
+        List<Pending> ready = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            long now = clock.getAsLong();
+            Pending next;
+            while (tokens >= 1 && (next = pollNext(now)) != null) {
+                tokens -= 1;
+                queuedCount--;
+                inFlight++;
+                if (next.priority != Priority.INTERACTIVE) {
+                    nonInteractiveInFlight++;
+                }
+                Lane lane = lanes.get(next.priority);
+                lane.startedCount++;
+                lane.waitNanosTotal += now - next.enqueuedAt;
+                ready.add(next);
+            }
+            // 只有因令牌不足而停下時才需要定時器；線程不足時由完成的任務觸發
+            if (queuedCount > 0 && tokens < 1) {
+                scheduleDrain(nanosUntilNextToken());
+            }
+        }
+
+        for (Pending pending : ready) {
+            try {
+                executor.execute(() -> runAndRelease(pending));
+            } catch (RejectedExecutionException e) {
+                // I/O線程池拒絕：退回令牌，放回隊首稍後重試
+                Log.w(TAG, "I/O隊列已滿，稍後重試");
+                synchronized (this) {
+                    tokens = Math.min(burst, tokens + 1);
+                    release(pending);
+                    if (shutdown) {
+                        continue;
+                    }
+                    lanes.get(pending.priority).add(pending.source, pending, true);
+                    queuedCount++;
+                    scheduleDrain(TimeUnit.MILLISECONDS.toNanos(EXECUTOR_RETRY_MILLIS));
+                }
+            }
+        }
+    }
+
+    private void runAndRelease(Pending pending) {
+        try {
+            pending.task.run();
+        } finally {
+            synchronized (this) {
+                release(pending);
+            }
+            drain();
+        }
+    }
+
+    private void release(Pending pending) {
+        inFlight--;
+        if (pending.priority != Priority.INTERACTIVE) {
+            nonInteractiveInFlight--;
+        }
+    }
+
+    /**
+     * 選出下一個可以執行的請求
+     * 先處理等待超時的低優先級請求，然後按優先級從高到低；非互動請求不能使用保留名額
+     */
+    private Pending pollNext(long now) {
+        if (inFlight >= maxInFlight) {
+            return null;
+        }
+        boolean nonInteractiveAllowed = nonInteractiveInFlight < maxInFlight - reservedForInteractive;
+
+        if (nonInteractiveAllowed) {
+            Priority[] priorities = Priority.values();
+            for (int i = 1; i < priorities.length; i++) {
+                Lane lane = lanes.get(priorities[i]);
+                Pending head = lane.peek();
+                if (head != null && now - head.enqueuedAt > TimeUnit.MILLISECONDS.toNanos(priorities[i].getMaxWaitMillis())) {
+                    return lane.poll();
+                }
+            }
+        }
+
+        for (Map.Entry<Priority, Lane> entry : lanes.entrySet()) {
+            if (entry.getKey() != Priority.INTERACTIVE && !nonInteractiveAllowed) {
+                break;
+            }
+            Pending next = entry.getValue().poll();
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleDrain(long delayNanos) {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        try {
+            scheduler.schedule(() -> {
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+                drain();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            drainScheduled = false;
+            Log.w(TAG, "限流器已關閉");
+        }
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        double elapsedSeconds = (now - lastRefillNanos) / 1e9;
+        lastRefillNanos = now;
+        tokens = Math.min(burst, tokens + elapsedSeconds * permitsPerSecond);
+    }
+
+    private long nanosUntilNextToken() {
+        double missing = 1 - tokens;
+        return Math.max(0, (long) (missing / permitsPerSecond * 1e9));
+    }
+
+    /**
+     * 等待中的請求
+     */
+    private static class Pending {
+        final Priority priority;
+        final String source;
+        final Runnable task;
+        final long enqueuedAt;
+
+        Pending(Priority priority, String source, Runnable task, long enqueuedAt) {
+            this.priority = priority;
+            this.source = source;
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * 一個優先級的通道：按來源分組的等待隊列，按插入順序輪流出隊
+     */
+    private static class Lane {
+        final LinkedHashMap<String, ArrayDeque<Pending>> queues = new LinkedHashMap<>();
+        int size;
+        long startedCount;
+        long waitNanosTotal;
+
+        void add(String source, Pending pending, boolean atFront) {
+            ArrayDeque<Pending> queue = queues.get(source);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(source, queue);
+            }
+            if (atFront) {
+                queue.addFirst(pending);
+            } else {
+                queue.addLast(pending);
+            }
+            size++;
+        }
+
+        void clear() {
+            queues.clear();
+            size = 0;
+        }
+
+        Pending peek() {
+            return size == 0 ? null : queues.values().iterator().next().peek();
+        }
+
+        // 從隊首的來源取出一個任務，然後把該來源移到隊尾
+        Pending poll() {
+            if (size == 0) {
+                return null;
+            }
+            Iterator<Map.Entry<String, ArrayDeque<Pending>>> iterator = queues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Pending>> head = iterator.next();
+            Pending pending = head.getValue().poll();
+            iterator.remove();
+            if (!head.getValue().isEmpty()) {
+                queues.put(head.getKey(), head.getValue());
+            }
+            size--;
+            return pending;
+        }
+
+        boolean remove(String source, Runnable task) {
+            ArrayDeque<Pending> queue = queues.get(source);
+            if (queue == null) {
+                return false;
+            }
+            Iterator<Pending> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().task == task) {
+                    iterator.remove();
+                    if (queue.isEmpty()) {
+                        queues.remove(source);
+                    }
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
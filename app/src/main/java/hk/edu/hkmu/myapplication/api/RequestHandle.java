@@ -0,0 +1,190 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * 可取消的請求句柄
+ * 每個API調用都返回一個句柄。取消後不會再回調，仍在排隊的任務會被移出隊列，
+ * 進行中的連接會被斷開（其他請求共享的連接除外）。
+ * 句柄可以綁定到Activity的生命週期，在 ON_DESTROY 時自動取消。
+ */
+public class RequestHandle {
+    private static final String TAG = "RequestHandle";
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    // 當前線程正在執行的請求
+    private static final ThreadLocal<RequestHandle> CURRENT = new ThreadLocal<>();
+
+    private final Set<Runnable> cancelActions = new LinkedHashSet<>();
+    private final List<Runnable> finishActions = new ArrayList<>();
+    private volatile boolean cancelled;
+    private boolean finished;
+
+    /**
+     * 取消請求；已完成的請求不受影響
+     */
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled || finished) {
+                return;
+            }
+            cancelled = true;
+            actions = new ArrayList<>(cancelActions);
+            cancelActions.clear();
+            finishActions.clear();
+        }
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "取消請求時出錯", e);
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 綁定到生命週期，ON_DESTROY 時自動取消（需在主線程調用）
+     */
+    public RequestHandle bindTo(Lifecycle lifecycle) {
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            cancel();
+            return this;
+        }
+        LifecycleEventObserver observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancel();
+            }
+        };
+        lifecycle.addObserver(observer);
+        // 完成或取消後移除觀察者，避免句柄一直被Activity引用；兩者都可能發生在後台線程
+        Runnable unbind = () -> MAIN_HANDLER.post(() -> lifecycle.removeObserver(observer));
+        onCancel(unbind);
+        onFinish(unbind);
+        return this;
+    }
+
+    /**
+     * 註冊取消時執行的動作；已取消時立即執行
+     */
+    void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                if (!finished) {
+                    cancelActions.add(action);
+                }
+                return;
+            }
+        }
+        action.run();
+    }
+
+    void removeOnCancel(Runnable action) {
+        synchronized (this) {
+            cancelActions.remove(action);
+        }
+    }
+
+    /**
+     * 標記請求完成，返回是否應該回調（已取消或已完成時返回false）
+     * 在交付結果的線程中調用
+     */
+    boolean finish() {
+        synchronized (this) {
+            if (cancelled || finished) {
+                return false;
+            }
+            finished = true;
+            cancelActions.clear();
+        }
+        runFinishActions();
+        return true;
+    }
+
+    /**
+     * 註冊完成時執行的動作；已完成時立即執行，已取消時不再執行
+     */
+    private void onFinish(Runnable action) {
+        synchronized (this) {
+            if (!finished) {
+                if (!cancelled) {
+                    finishActions.add(action);
+                }
+                return;
+            }
+        }
+        action.run();
+    }
+
+    private void runFinishActions() {
+        List<Runnable> actions;
+        synchronized (this) {
+            actions = new ArrayList<>(finishActions);
+            finishActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * 包裝任務：執行時設為當前線程的請求，已取消則直接跳過
+     */
+    Runnable wrap(Runnable task) {
+        return () -> {
+            if (cancelled) {
+                return;
+            }
+            RequestHandle previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 以此請求作為當前線程的請求執行 callable
+     */
+    <T> T call(Callable<T> callable) throws Exception {
+        RequestHandle previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return callable.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    private static void restore(RequestHandle previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * 當前線程正在執行的請求，不在請求中時返回null
+     */
+    static RequestHandle current() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,214 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 對沖請求 (hedged request)
+ * 第一次請求在最近延遲的 p90 內仍未完成時，再發出一個相同的請求，採用先完成的結果，
+ * 並斷開另一個請求的連接。只用於冪等的小請求（到站時間）。
+ * 額外請求受預算限制：每個請求累積 budgetRatio 個額度，每次對沖消耗一個，
+ * 因此長期來看對沖請求不超過總請求數的 budgetRatio。
+ */
+public class RequestHedger {
+    private static final String TAG = "RequestHedger";
+
+    // 延遲樣本少於此數量時不對沖
+    private static final int MIN_SAMPLES = 20;
+    private static final int SAMPLE_CAPACITY = 256;
+    private static final long MIN_DELAY_MILLIS = 50;
+    // 預算最多累積的額度，限制突發的對沖數量
+    private static final double MAX_CREDITS = 5;
+
+    private final RequestGovernor governor;
+    private final HedgeSubmitter submitter;
+    private final double budgetRatio;
+
+    private volatile boolean enabled;
+    private double credits;
+
+    // 第一次請求的延遲；被對沖淘汰的請求以淘汰時的耗時記錄（實際延遲的下限）
+    private final LatencyTracker primaryLatency = new LatencyTracker(SAMPLE_CAPACITY);
+    // 調用者實際等待的延遲
+    private final LatencyTracker effectiveLatency = new LatencyTracker(SAMPLE_CAPACITY);
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLong budgetDeniedCount = new AtomicLong();
+
+    /**
+     * @param submitter 提交對沖請求的方式（經限流器執行）
+     * @param budgetRatio 對沖請求佔總請求數的上限，例如 0.05
+     */
+    public RequestHedger(RequestGovernor governor, HedgeSubmitter submitter, double budgetRatio) {
+        this.governor = governor;
+        this.submitter = submitter;
+        this.budgetRatio = budgetRatio;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 執行請求，必要時對沖
+     * 第一次請求在當前線程中同步執行，此方法在它結束後才返回，返回的Future總是已經完成。
+     * 對沖請求先完成時會斷開第一次請求的連接，第一次請求因此很快結束，但調用者（以及共享此結果的
+     * 其他調用者）仍要等它在當前線程中退出後才收到結果。第一次請求失敗時不等待對沖，交給重試處理。
+     * attempt 可能同時在兩個線程中執行，每次執行都以各自的請求句柄作為當前請求
+     */
+    public <T> CompletableFuture<T> execute(Callable<T> attempt) {
+        requestCount.incrementAndGet();
+        synchronized (this) {
+            credits = Math.min(MAX_CREDITS, credits + budgetRatio);
+        }
+        long start = System.nanoTime();
+        long delay = getHedgeDelayMillis();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        if (!enabled || delay < 0) {
+            try {
+                winner.complete(attempt.call());
+                long elapsed = elapsedMillis(start);
+                primaryLatency.record(elapsed);
+                effectiveLatency.record(elapsed);
+            } catch (Exception e) {
+                winner.completeExceptionally(e);
+            }
+            return winner;
+        }
+
+        // 外層請求取消時取消兩個請求；但有其他調用者共享此結果時保留
+        RequestHandle parent = RequestHandle.current();
+        SingleFlight.SharedCheck sharing = SingleFlight.currentSharing();
+        RequestHandle primary = new RequestHandle();
+        RequestHandle hedge = new RequestHandle();
+        Runnable cancelBoth = () -> {
+            if (!sharing.isShared()) {
+                primary.cancel();
+                hedge.cancel();
+            }
+        };
+        if (parent != null) {
+            parent.onCancel(cancelBoth);
+        }
+        winner.whenComplete((result, error) -> {
+            if (parent != null) {
+                parent.removeOnCancel(cancelBoth);
+            }
+            if (error == null) {
+                effectiveLatency.record(elapsedMillis(start));
+            }
+        });
+
+        try {
+            governor.schedule(() -> launchHedge(attempt, winner, primary, hedge), delay);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "無法安排對沖請求", e);
+        }
+
+        try {
+            // 第一次請求不屬於外層的合併調用，被淘汰時可以直接斷開連接
+            T result = primary.call(() -> SingleFlight.detached(attempt));
+            if (winner.complete(result)) {
+                hedge.cancel();
+            }
+        } catch (Exception e) {
+            // 對沖已先完成時，第一次請求是因被淘汰而斷開的
+            if (winner.completeExceptionally(e)) {
+                hedge.cancel();
+            }
+        }
+        primaryLatency.record(elapsedMillis(start));
+        return winner;
+    }
+
+    private <T> void launchHedge(Callable<T> attempt, CompletableFuture<T> winner,
+                                 RequestHandle primary, RequestHandle hedge) {
+        if (winner.isDone() || hedge.isCancelled()) {
+            return;
+        }
+        synchronized (this) {
+            if (credits < 1) {
+                budgetDeniedCount.incrementAndGet();
+                return;
+            }
+            credits -= 1;
+        }
+        hedgeCount.incrementAndGet();
+        try {
+            submitter.submit(hedge, () -> {
+                try {
+                    T result = attempt.call();
+                    if (winner.complete(result)) {
+                        hedgeWinCount.incrementAndGet();
+                        primary.cancel();
+                    }
+                } catch (Exception e) {
+                    Log.d(TAG, "對沖請求失敗: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "對沖請求被拒絕", e);
+        }
+    }
+
+    /**
+     * 發出對沖請求前的等待時間（第一次請求延遲的 p90），樣本不足時返回 -1
+     */
+    public long getHedgeDelayMillis() {
+        if (primaryLatency.getSampleCount() < MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max(MIN_DELAY_MILLIS, primaryLatency.getPercentile(90));
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** 發出的對沖請求數 */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /** 對沖請求先完成的次數 */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /** 因預算不足而沒有發出的對沖數 */
+    public long getBudgetDeniedCount() {
+        return budgetDeniedCount.get();
+    }
+
+    /** 只用第一次請求時的 p99（被淘汰的請求按淘汰時的耗時計，為下限估計） */
+    public long getPrimaryP99Millis() {
+        return primaryLatency.getPercentile(99);
+    }
+
+    /** 調用者實際等待的 p99 */
+    public long getEffectiveP99Millis() {
+        return effectiveLatency.getPercentile(99);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 以指定的請求句柄提交對沖任務
+     */
+    public interface HedgeSubmitter {
+        void submit(RequestHandle handle, Runnable task);
+    }
+}
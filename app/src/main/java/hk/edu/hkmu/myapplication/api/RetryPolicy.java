@@ -0,0 +1,30 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重試退避策略
+ * 每次重試的等待上限按指數增長，實際等待時間在上限的一半到上限之間隨機選取，
+ * 避免多個客戶端在同一時間一起重試
+ */
+public class RetryPolicy {
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(long baseDelayMillis, long maxDelayMillis) {
+        if (baseDelayMillis < 1 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("invalid backoff: " + baseDelayMillis + "-" + maxDelayMillis);
+        }
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * 第 attempt 次嘗試失敗後，下一次嘗試前的等待時間
+     */
+    public long getBackoffMillis(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 20);
+        long cap = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+}
@@ -0,0 +1,179 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 錄製的請求/響應存檔
+ * 每個響應保存為兩個文件：NNNNNN.meta（請求、狀態碼、響應頭及耗時）和 NNNNNN.body（解壓後的內容），
+ * 編號按完成順序遞增，回放時按相同順序提供。
+ */
+public class SessionArchive {
+    private static final String META_SUFFIX = ".meta";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String HEADER_PREFIX = "header.";
+
+    // 客戶端會讀取的響應頭
+    static final List<String> RECORDED_HEADERS = Arrays.asList("ETag", "Last-Modified");
+
+    private final File directory;
+    private int nextIndex = -1;
+
+    public SessionArchive(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 追加一個響應
+     */
+    public synchronized void append(Record record) throws IOException {
+        if (nextIndex < 0) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("無法創建存檔目錄: " + directory);
+            }
+            nextIndex = listIndexes().size();
+        }
+        String name = String.format(Locale.ROOT, "%06d", nextIndex++);
+
+        Properties properties = new Properties();
+        properties.setProperty("url", record.url);
+        properties.setProperty("method", record.method);
+        properties.setProperty("status", String.valueOf(record.statusCode));
+        properties.setProperty("protocol", record.protocol);
+        properties.setProperty("offsetMillis", String.valueOf(record.offsetMillis));
+        properties.setProperty("connectMillis", String.valueOf(record.connectMillis));
+        properties.setProperty("responseMillis", String.valueOf(record.responseMillis));
+        properties.setProperty("bodyMillis", String.valueOf(record.bodyMillis));
+        for (Map.Entry<String, String> header : record.headers.entrySet()) {
+            properties.setProperty(HEADER_PREFIX + header.getKey(), header.getValue());
+        }
+        try (OutputStream out = new FileOutputStream(new File(directory, name + BODY_SUFFIX))) {
+            out.write(record.body);
+        }
+        // meta 最後寫入，讀取時只承認有 meta 的記錄
+        try (OutputStream out = new FileOutputStream(new File(directory, name + META_SUFFIX))) {
+            properties.store(out, null);
+        }
+    }
+
+    /**
+     * 按錄製順序讀取所有響應
+     */
+    public synchronized List<Record> load() throws IOException {
+        List<Record> records = new ArrayList<>();
+        for (String name : listIndexes()) {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(new File(directory, name + META_SUFFIX))) {
+                properties.load(in);
+            }
+            Map<String, String> headers = new HashMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(HEADER_PREFIX)) {
+                    headers.put(key.substring(HEADER_PREFIX.length()), properties.getProperty(key));
+                }
+            }
+            records.add(new Record(
+                    properties.getProperty("url"),
+                    properties.getProperty("method", "GET"),
+                    Integer.parseInt(properties.getProperty("status")),
+                    properties.getProperty("protocol", ""),
+                    headers,
+                    readFile(new File(directory, name + BODY_SUFFIX)),
+                    Long.parseLong(properties.getProperty("offsetMillis", "0")),
+                    Long.parseLong(properties.getProperty("connectMillis", "0")),
+                    Long.parseLong(properties.getProperty("responseMillis", "0")),
+                    Long.parseLong(properties.getProperty("bodyMillis", "0"))));
+        }
+        return records;
+    }
+
+    private List<String> listIndexes() {
+        List<String> names = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String fileName = file.getName();
+                if (fileName.endsWith(META_SUFFIX)) {
+                    names.add(fileName.substring(0, fileName.length() - META_SUFFIX.length()));
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        if (!file.exists()) {
+            return new byte[0];
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 一個錄製的響應
+     */
+    public static class Record {
+        final String url;
+        final String method;
+        final int statusCode;
+        final String protocol;
+        final Map<String, String> headers;
+        final byte[] body;
+        final long offsetMillis;    // 距離開始錄製的時間
+        final long connectMillis;   // 建立連接
+        final long responseMillis;  // 發出請求到收到響應頭
+        final long bodyMillis;      // 讀取響應內容
+
+        Record(String url, String method, int statusCode, String protocol, Map<String, String> headers, byte[] body,
+               long offsetMillis, long connectMillis, long responseMillis, long bodyMillis) {
+            this.url = url;
+            this.method = method;
+            this.statusCode = statusCode;
+            this.protocol = protocol;
+            this.headers = headers;
+            this.body = body;
+            this.offsetMillis = offsetMillis;
+            this.connectMillis = connectMillis;
+            this.responseMillis = responseMillis;
+            this.bodyMillis = bodyMillis;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /** 原始的總耗時 */
+        public long getTotalMillis() {
+            return connectMillis + responseMillis + bodyMillis;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 相同請求合併器 (single-flight)
+ * 同一時間對同一個 key 的多個調用只執行一次，其餘調用共享同一結果。
+ * 共享的調用者在結果上註冊後續處理，不佔用線程等待。
+ * 結果對象會被多個調用者共享，調用者應將其視為只讀。
+ */
+public class SingleFlight {
+    // 當前線程作為執行者正在執行的調用（可以嵌套，例如解析合併內再有請求合併）
+    private static final ThreadLocal<ArrayDeque<Flight<?>>> LEADING = new ThreadLocal<>();
+
+    private final ConcurrentHashMap<String, Flight<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * 在當前線程執行 loader；如果相同 key 的調用正在進行，則直接返回其結果的Future
+     */
+    public <T> CompletableFuture<T> execute(String key, Callable<T> loader) {
+        return executeAsync(key, () -> CompletableFuture.completedFuture(loader.call()));
+    }
+
+    /**
+     * 同上，loader 返回的Future完成時才算調用結束（例如結果由其他線程完成）
+     * 結果完成前 key 已移除，之後的調用會重新執行
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Callable<? extends CompletableFuture<T>> loader) {
+        Flight<T> flight = new Flight<>();
+        Flight<?> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            existing.shared = true;
+            // 調用者不能通過返回的Future完成或取消共享的結果
+            return ((CompletableFuture<T>) existing.result).thenApply(result -> result);
+        }
+
+        executedCount.incrementAndGet();
+        ArrayDeque<Flight<?>> leading = LEADING.get();
+        if (leading == null) {
+            leading = new ArrayDeque<>();
+            LEADING.set(leading);
+        }
+        CompletableFuture<T> pending;
+        leading.push(flight);
+        try {
+            pending = loader.call();
+        } catch (Exception | Error e) {
+            pending = new CompletableFuture<>();
+            pending.completeExceptionally(e);
+        } finally {
+            leading.pop();
+        }
+        // 共享者的後續處理在完成結果的線程中執行，此時已不屬於本調用
+        pending.whenComplete((result, error) -> {
+            inFlight.remove(key, flight);
+            if (error != null) {
+                flight.result.completeExceptionally(unwrap(error));
+            } else {
+                flight.result.complete(result);
+            }
+        });
+        return flight.result;
+    }
+
+    /** 實際執行的次數 */
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    /** 被合併（共享其他調用結果）的次數 */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * 當前線程正在執行的調用是否有其他調用者在等待其結果
+     * 返回的檢查可在其他線程中使用，例如取消請求時判斷能否斷開連接
+     */
+    public static SharedCheck currentSharing() {
+        ArrayDeque<Flight<?>> leading = LEADING.get();
+        final List<Flight<?>> flights = leading == null ? new ArrayList<>() : new ArrayList<>(leading);
+        return () -> {
+            for (Flight<?> flight : flights) {
+                if (flight.shared) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * 在不屬於任何調用的情況下執行 callable：其中的 currentSharing() 不會看到外層的合併調用
+     * 用於外層共享、但內部連接可以獨立斷開的情況（例如對沖請求中被淘汰的一方）
+     */
+    static <T> T detached(Callable<T> callable) throws Exception {
+        ArrayDeque<Flight<?>> leading = LEADING.get();
+        LEADING.remove();
+        try {
+            return callable.call();
+        } finally {
+            if (leading != null) {
+                LEADING.set(leading);
+            }
+        }
+    }
+
+    /**
+     * 取出Future失敗的原始異常（去掉 CompletionException / ExecutionException 的包裝）
+     */
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * 共享狀態檢查
+     */
+    public interface SharedCheck {
+        boolean isShared();
+    }
+
+    private static class Flight<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        volatile boolean shared;
+    }
+}
@@ -0,0 +1,243 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import hk.edu.hkmu.myapplication.model.BusStop;
+
+/**
+ * 站點詳情解析器
+ * 以有限的並發數並行獲取每個站點的 stop/{id} 詳情，
+ * 結果按 seq 排序返回，單個站點失敗不會影響整條路線
+ */
+public class StopDetailResolver {
+    private static final String TAG = "StopDetailResolver";
+
+    private final Executor executor;
+    private volatile int maxConcurrency;
+
+    public StopDetailResolver(Executor executor, int maxConcurrency) {
+        this.executor = executor;
+        setMaxConcurrency(maxConcurrency);
+    }
+
+    /**
+     * 設置同時進行的站點詳情請求上限
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be >= 1: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 並行解析站點詳情
+     * 每個站點的請求是一個獨立任務，完成後再提交下一個未處理的站點，
+     * 因此同一時間最多只有 maxConcurrency 個請求，且等待執行或等待結果的站點不佔用線程。
+     * 傳入的 executor 可以是限流器，每個站點請求都會經過限流。
+     * 最後一個完成的任務負責回調 listener。此方法應在工作線程中調用。
+     * @return 用於取消解析：取消後不再提交新的站點，也不會回調 listener
+     */
+    public Resolution resolve(List<BusStop> stops, StopDetailFetcher fetcher, Listener listener) {
+        final int total = stops.size();
+        if (total == 0) {
+            listener.onResolved(new Result(new ArrayList<>(), new AtomicReferenceArray<>(0)));
+            return () -> { };
+        }
+
+        final List<BusStop> ordered = new ArrayList<>(stops);
+        Collections.sort(ordered, (a, b) -> Integer.compare(parseSeq(a), parseSeq(b)));
+
+        Batch batch = new Batch(ordered, fetcher, listener);
+        int workers = Math.min(maxConcurrency, total);
+        for (int i = 0; i < workers; i++) {
+            try {
+                executor.execute(batch::runNext);
+            } catch (RejectedExecutionException e) {
+                if (i == 0) {
+                    // 一個任務都無法提交時在調用線程中處理
+                    Log.w(TAG, "站點詳情任務被拒絕，在當前線程處理");
+                    batch.runNext();
+                } else {
+                    Log.w(TAG, "站點詳情任務被拒絕，以 " + i + " 個並發繼續");
+                }
+                break;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 一次解析的共享狀態
+     */
+    private class Batch implements Resolution {
+        private final List<BusStop> ordered;
+        private final StopDetailFetcher fetcher;
+        private final Listener listener;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final AtomicReferenceArray<Exception> errors;
+        private volatile boolean cancelled;
+
+        Batch(List<BusStop> ordered, StopDetailFetcher fetcher, Listener listener) {
+            this.ordered = ordered;
+            this.fetcher = fetcher;
+            this.listener = listener;
+            this.remaining = new AtomicInteger(ordered.size());
+            this.errors = new AtomicReferenceArray<>(ordered.size());
+        }
+
+        // 處理一個站點，完成後把下一個站點重新提交；提交被拒絕時在當前線程繼續
+        void runNext() {
+            if (cancelled) {
+                return;
+            }
+            int index = nextIndex.getAndIncrement();
+            if (index >= ordered.size()) {
+                return;
+            }
+            BusStop stop = ordered.get(index);
+            CompletionStage<?> pending;
+            try {
+                pending = fetcher.fetch(stop);
+            } catch (Exception e) {
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                pending = failed;
+            }
+            pending.whenComplete((result, error) -> {
+                if (error != null) {
+                    Throwable cause = SingleFlight.unwrap(error);
+                    Log.e(TAG, "獲取站點詳情出錯: " + stop.getStopId(), cause);
+                    errors.set(index, cause instanceof Exception ? (Exception) cause : new Exception(cause));
+                }
+                if (cancelled) {
+                    return;
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    listener.onResolved(new Result(ordered, errors));
+                } else if (nextIndex.get() < ordered.size()) {
+                    submitNext();
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                Log.d(TAG, "站點詳情解析已取消，已提交 " + Math.min(nextIndex.get(), ordered.size())
+                        + "/" + ordered.size() + " 個站點");
+            }
+        }
+
+        private void submitNext() {
+            try {
+                executor.execute(this::runNext);
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "站點詳情任務被拒絕，在當前線程繼續");
+                runNext();
+            }
+        }
+    }
+
+    private static int parseSeq(BusStop stop) {
+        try {
+            return Integer.parseInt(stop.getSequence());
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 單個站點詳情的獲取方式，直接把詳情寫入傳入的站點對象
+     * 返回的Future完成（可以在其他線程）時才算該站點處理完畢
+     */
+    public interface StopDetailFetcher {
+        CompletionStage<?> fetch(BusStop stop) throws Exception;
+    }
+
+    /**
+     * 進行中的解析
+     */
+    public interface Resolution {
+        void cancel();
+    }
+
+    /**
+     * 解析完成回調（在工作線程中調用）
+     */
+    public interface Listener {
+        void onResolved(Result result);
+    }
+
+    /**
+     * 解析結果：按 seq 排序的站點以及每個失敗站點的錯誤
+     */
+    public static class Result {
+        private final List<BusStop> stops;
+        private final List<BusStop> resolvedStops = new ArrayList<>();
+        private final List<Failure> failures = new ArrayList<>();
+
+        Result(List<BusStop> stops, AtomicReferenceArray<Exception> errors) {
+            this.stops = stops;
+            for (int i = 0; i < stops.size(); i++) {
+                Exception error = errors.get(i);
+                if (error == null) {
+                    resolvedStops.add(stops.get(i));
+                } else {
+                    failures.add(new Failure(stops.get(i), error));
+                }
+            }
+        }
+
+        /** 所有站點（包括獲取詳情失敗的） */
+        public List<BusStop> getStops() {
+            return stops;
+        }
+
+        /** 成功獲取詳情的站點 */
+        public List<BusStop> getResolvedStops() {
+            return resolvedStops;
+        }
+
+        public List<Failure> getFailures() {
+            return failures;
+        }
+    }
+
+    /**
+     * 單個站點的失敗信息
+     */
+    public static class Failure {
+        private final BusStop stop;
+        private final Exception error;
+
+        Failure(BusStop stop, Exception error) {
+            this.stop = stop;
+            this.error = error;
+        }
+
+        public BusStop getStop() {
+            return stop;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.Locale;
+
+/**
+ * stop-eta 響應的過濾條件：路線、方向及服務類型，null 表示不限
+ * 解析時不符合條件的元素直接跳過，不會為它們生成對象
+ */
+public final class StopEtaFilter {
+    /** 不過濾，返回站點所有路線的到站時間 */
+    public static final StopEtaFilter ALL = new StopEtaFilter(null, null, null);
+
+    private final String routeId;
+    private final String direction;     // 統一為 "O" / "I"
+    private final String serviceType;
+
+    /**
+     * @param direction "O"/"I" 或 "outbound"/"inbound"
+     */
+    public StopEtaFilter(String routeId, String direction, String serviceType) {
+        this.routeId = routeId;
+        this.direction = direction == null || direction.isEmpty()
+                ? null : direction.substring(0, 1).toUpperCase(Locale.US);
+        this.serviceType = serviceType;
+    }
+
+    /**
+     * 只保留指定路線；routeId 為 null 時不過濾
+     */
+    public static StopEtaFilter forRoute(String routeId) {
+        return routeId == null ? ALL : new StopEtaFilter(routeId, null, null);
+    }
+
+    public boolean isAll() {
+        return routeId == null && direction == null && serviceType == null;
+    }
+
+    public boolean matches(String route, String dir, String type) {
+        return matchesRoute(route) && matchesDirection(dir) && matchesServiceType(type);
+    }
+
+    /**
+     * 檢查解析到的單個字段，其他字段一律通過
+     */
+    public boolean acceptField(String field, String value) {
+        switch (field) {
+            case "route":
+                return matchesRoute(value);
+            case "dir":
+                return matchesDirection(value);
+            case "service_type":
+                return matchesServiceType(value);
+            default:
+                return true;
+        }
+    }
+
+    public boolean matchesRoute(String route) {
+        return routeId == null || routeId.equals(route);
+    }
+
+    public boolean matchesDirection(String dir) {
+        return direction == null || direction.equalsIgnoreCase(dir);
+    }
+
+    public boolean matchesServiceType(String type) {
+        return serviceType == null || serviceType.equals(type);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StopEtaFilter)) {
+            return false;
+        }
+        StopEtaFilter other = (StopEtaFilter) o;
+        return equal(routeId, other.routeId) && equal(direction, other.direction)
+                && equal(serviceType, other.serviceType);
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    // 例如 1A/O/1，不限的條件以 * 表示；同時用作共享解析結果的鍵
+    @Override
+    public String toString() {
+        return orAny(routeId) + "/" + orAny(direction) + "/" + orAny(serviceType);
+    }
+
+    private static String orAny(String value) {
+        return value == null ? "*" : value;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
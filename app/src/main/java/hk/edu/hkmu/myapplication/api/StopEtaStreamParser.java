@@ -0,0 +1,43 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import hk.edu.hkmu.myapplication.model.StopEta;
+import hk.edu.hkmu.myapplication.model.StopEtaJsonCodec;
+
+/**
+ * stop-eta 響應的串流解析器，解析時套用 StopEtaFilter
+ * 一個站點的響應包含所有途經路線，通常只需要其中一條。route、dir、service_type
+ * 在每個元素中排在前面，讀到不符合條件的值後，元素餘下的字段直接跳過，
+ * 不讀取字符串也不生成 StopEta。
+ */
+final class StopEtaStreamParser {
+    private static final String TAG = "StopEtaStreamParser";
+
+    private StopEtaStreamParser() {
+    }
+
+    /**
+     * 解析已讀入的響應內容
+     * 響應先整個讀成字符串：同一站點的一次請求由不同過濾條件、對沖請求及批量請求共享，
+     * 各自從同一份內容解析。因此過濾只省去跳過元素的對象及字符串分配，不減少響應本身佔用的內存；
+     * stop-eta 響應一般只有數 KB。
+     */
+    static List<StopEta> parse(String json, StopEtaFilter filter) throws IOException {
+        BiPredicate<String, String> fieldFilter = filter.isAll() ? null : filter::acceptField;
+        List<StopEta> etas = CatalogStreamParser.readData(json, reader -> {
+            StopEta eta = StopEtaJsonCodec.read(reader, fieldFilter);
+            // 響應缺少某個字段時不會經過 fieldFilter，按空值再檢查一次
+            if (eta == null || !filter.matches(eta.getRouteId(), eta.getDirection(), eta.getServiceType())) {
+                return null;
+            }
+            return eta;
+        });
+        Log.d(TAG, "獲取到" + etas.size() + "個到站時間數據 (" + filter + ")");
+        return etas;
+    }
+}
@@ -0,0 +1,23 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * 解析目錄時使用的字符串符號表
+ * 目錄中的方向、服務類型、起訖站及站名大量重複，相同的值只保留第一次讀到的實例，
+ * 之後生成的對象都引用它。表只在一次解析期間存在，不會長期持有字符串；非線程安全。
+ */
+final class SymbolTable implements UnaryOperator<String> {
+    private final Map<String, String> symbols = new HashMap<>();
+
+    @Override
+    public String apply(String value) {
+        if (value == null) {
+            return null;
+        }
+        String canonical = symbols.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+}
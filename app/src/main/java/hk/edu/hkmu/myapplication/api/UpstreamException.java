@@ -0,0 +1,66 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * 九巴API請求失敗
+ * 區分可以重試的錯誤（網絡錯誤、5xx、429）與重試也不會成功的錯誤（其他4xx、熔斷中、響應無法解析）
+ */
+public class UpstreamException extends IOException {
+    private final int statusCode;
+    private final boolean retryable;
+
+    public UpstreamException(String message, int statusCode, boolean retryable) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryable = retryable;
+    }
+
+    public UpstreamException(String message, Throwable cause) {
+        this(message, -1, true, cause);
+    }
+
+    public UpstreamException(String message, int statusCode, boolean retryable, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.retryable = retryable;
+    }
+
+    /**
+     * 響應內容無法解析（格式錯誤或API格式已改變）
+     * 服務器已正常回應，重試也不會成功，也不表示服務器出錯
+     */
+    public static UpstreamException malformed(Throwable cause) {
+        return new UpstreamException("響應格式錯誤: " + cause.getMessage(), HttpURLConnection.HTTP_OK, false, cause);
+    }
+
+    /**
+     * HTTP狀態碼，沒有收到響應時為-1
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * 判斷HTTP狀態碼是否值得重試
+     */
+    public static boolean isRetryableStatus(int statusCode) {
+        return statusCode >= 500 || statusCode == 429 || statusCode == 408;
+    }
+
+    /**
+     * 判斷異常是否值得重試：其他IOException視為網絡錯誤，其他異常不重試
+     * 解析錯誤在解析時已轉換為不可重試的 UpstreamException（見 malformed）
+     */
+    public static boolean isRetryable(Throwable error) {
+        if (error instanceof UpstreamException) {
+            return ((UpstreamException) error).isRetryable();
+        }
+        return error instanceof IOException;
+    }
+}
@@ -0,0 +1,113 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 基於 HttpURLConnection 的傳輸層（預設）
+ * 使用系統的 keep-alive 連接池，每個連接同時只處理一個請求 (HTTP/1.1)。
+ */
+public class UrlConnectionTransport implements HttpTransport {
+    // 連接池保留的最大空閒連接數
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+
+    static {
+        // HttpURLConnection 的 keep-alive 連接池大小，未設置時預設只有5個
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "HttpURLConnection";
+    }
+
+    @Override
+    public HttpExchange newExchange(String url, String method, int connectTimeoutMillis, int readTimeoutMillis)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        // 顯式要求gzip壓縮，由 decode 負責解壓
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return new Exchange(connection);
+    }
+
+    private static class Exchange implements HttpExchange {
+        private final HttpURLConnection connection;
+        private long connectNanos = -1;
+
+        Exchange(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            connection.setRequestProperty(name, value);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            long start = System.nanoTime();
+            connection.connect();
+            connectNanos = System.nanoTime() - start;
+        }
+
+        @Override
+        public int getStatusCode() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        // HttpURLConnection 在 connect() 中建立連接或從連接池取出連接
+        @Override
+        public long getConnectNanos() {
+            return connectNanos;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return decode(connection.getInputStream());
+        }
+
+        @Override
+        public InputStream getErrorBody() throws IOException {
+            InputStream errorStream = connection.getErrorStream();
+            return errorStream == null ? null : decode(errorStream);
+        }
+
+        @Override
+        public String getProtocol() {
+            return "http/1.1";
+        }
+
+        @Override
+        public void abort() {
+            connection.disconnect();
+        }
+
+        @Override
+        public void release(boolean reusable) {
+            // 出錯的連接可能處於未知狀態，不放回連接池
+            if (!reusable) {
+                connection.disconnect();
+            }
+        }
+
+        private InputStream decode(InputStream in) throws IOException {
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                return new GZIPInputStream(in, 8192);
+            }
+            return in;
+        }
+    }
+}
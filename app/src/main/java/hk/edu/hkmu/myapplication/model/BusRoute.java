@@ -3,10 +3,14 @@ package hk.edu.hkmu.myapplication.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import hk.edu.hkmu.codec.JsonCodec;
+import hk.edu.hkmu.codec.JsonField;
+
 /**
  * 巴士路線模型類
  * 實現Parcelable接口以支持在Activity間傳遞
  */
+@JsonCodec
 public class BusRoute implements Parcelable {
     private String routeId;       // 路線編號
     private String originTC;      // 起點(中文)
@@ -29,9 +33,14 @@ public class BusRoute implements Parcelable {
         this.isFavorite = false;
     }
     
-    // 從API創建對象的完整構造函數
-    public BusRoute(String routeId, String originTC, String originEN, String destinationTC, 
-                   String destinationEN, String direction, String serviceType) {
+    // 從API創建對象的完整構造函數；目錄中路線號、起訖站、方向及服務類型大量重複，解析時共用實例
+    public BusRoute(@JsonField(value = "route", required = true, intern = true) String routeId,
+                    @JsonField(value = "orig_tc", intern = true) String originTC,
+                    @JsonField(value = "orig_en", intern = true) String originEN,
+                    @JsonField(value = "dest_tc", intern = true) String destinationTC,
+                    @JsonField(value = "dest_en", intern = true) String destinationEN,
+                    @JsonField(value = "bound", intern = true) String direction,
+                    @JsonField(value = "service_type", intern = true) String serviceType) {
         this.routeId = routeId;
         this.originTC = originTC;
         this.originEN = originEN;
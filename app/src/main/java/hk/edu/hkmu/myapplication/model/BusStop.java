@@ -1,8 +1,12 @@
 package hk.edu.hkmu.myapplication.model;
 
+import hk.edu.hkmu.codec.JsonCodec;
+import hk.edu.hkmu.codec.JsonField;
+
 /**
  * 巴士站模型類
  */
+@JsonCodec
 public class BusStop {
     private String stopId;      // 站點編號
     private String routeId;     // 路線編號
@@ -14,7 +18,9 @@ public class BusStop {
     private String nameEN;      // 站點名稱(英文)
     private String location;    // 位置
 
-    public BusStop(String stopId, String routeId, String direction, String serviceType, String sequence) {
+    // route-stop 的元素；路線、方向及服務類型取自請求
+    public BusStop(@JsonField(value = "stop", required = true) String stopId, String routeId,
+                   String direction, String serviceType, @JsonField("seq") String sequence) {
         this.stopId = stopId;
         this.routeId = routeId;
         this.direction = direction;
@@ -0,0 +1,40 @@
+package hk.edu.hkmu.myapplication.model;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 計算到站剩餘分鐘數所用的時鐘
+ * 預設為系統時間；測試時可以換成固定的時鐘。
+ * 到站時間只保存到達的時刻，剩餘分鐘數每次按當前時間計算，界面可以在兩次請求之間自行倒數。
+ */
+public final class EtaClock {
+    private static volatile Clock clock = Clock.systemUTC();
+
+    private EtaClock() {
+    }
+
+    public static void setClock(Clock newClock) {
+        clock = newClock;
+    }
+
+    public static long currentTimeMillis() {
+        return clock.millis();
+    }
+
+    /**
+     * 剩餘分鐘數：已過站為 -1，一分鐘內到達為 0；沒有到達時間 (EtaTimeParser.INVALID) 時為 -1
+     */
+    public static long minutesUntil(long etaMillis, long nowMillis) {
+        if (etaMillis == EtaTimeParser.INVALID) {
+            return -1;
+        }
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(etaMillis - nowMillis);
+        if (minutes < -1) {
+            return -1; // 已過站
+        } else if (minutes < 0) {
+            return 0; // 即將到達
+        }
+        return minutes;
+    }
+}
@@ -0,0 +1,120 @@
+package hk.edu.hkmu.myapplication.model;
+
+/**
+ * 九巴到站時間的解析器
+ * 只接受固定格式 yyyy-MM-dd'T'HH:mm:ss[.SSS]+08:00（時區也可以是 Z 或其他 ±hh:mm），
+ * 直接讀取字符，不創建任何對象，返回 epoch 毫秒。
+ */
+public final class EtaTimeParser {
+    /** 無法解析時的返回值 */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private EtaTimeParser() {
+    }
+
+    /**
+     * 解析時間為 epoch 毫秒，格式不符或日期無效時返回 INVALID
+     */
+    public static long parseEpochMillis(CharSequence text) {
+        if (text == null || text.length() < 20) {
+            return INVALID;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return INVALID;
+        }
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return INVALID;
+        }
+
+        int length = text.length();
+        int pos = 19;
+        int millis = 0;
+        if (text.charAt(pos) == '.') {
+            // 小數秒：取前三位，其餘忽略
+            int start = ++pos;
+            int scale = 100;
+            while (pos < length && isDigit(text.charAt(pos))) {
+                millis += (text.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+            if (pos == start || pos >= length) {
+                return INVALID;
+            }
+        }
+
+        int offsetMinutes;
+        char sign = text.charAt(pos);
+        if (sign == 'Z' && pos + 1 == length) {
+            offsetMinutes = 0;
+        } else if ((sign == '+' || sign == '-') && pos + 6 == length && text.charAt(pos + 3) == ':') {
+            int offsetHours = digits(text, pos + 1, 2);
+            int offsetMins = digits(text, pos + 4, 2);
+            if (offsetHours < 0 || offsetMins < 0 || offsetHours > 18 || offsetMins > 59) {
+                return INVALID;
+            }
+            offsetMinutes = offsetHours * 60 + offsetMins;
+            if (sign == '-') {
+                offsetMinutes = -offsetMinutes;
+            }
+        } else {
+            return INVALID;
+        }
+
+        long minutes = (daysFromCivil(year, month, day) * 24 + hour) * 60 + minute - offsetMinutes;
+        return minutes * MILLIS_PER_MINUTE + second * 1000L + millis;
+    }
+
+    // 讀取固定位數的十進制數，有非數字字符時返回 -1
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // 公曆日期到 1970-01-01 的天數
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
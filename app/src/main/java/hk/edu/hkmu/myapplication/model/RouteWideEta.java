@@ -0,0 +1,69 @@
+package hk.edu.hkmu.myapplication.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 整條路線的預計到達時間
+ * 由 route-eta/{route}/{service_type} 一次獲取，按方向及站點順序(seq)分組
+ */
+public class RouteWideEta {
+    private final String routeId;      // 路線編號
+    private final String serviceType;  // 服務類型
+    private final Map<String, List<RouteEta>> etaBySeq = new HashMap<>();
+
+    public RouteWideEta(String routeId, String serviceType) {
+        this.routeId = routeId;
+        this.serviceType = serviceType;
+    }
+
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public String getServiceType() {
+        return serviceType;
+    }
+
+    /**
+     * 添加某個站點順序的到達時間
+     */
+    public void add(String direction, int seq, RouteEta eta) {
+        String key = key(direction, String.valueOf(seq));
+        List<RouteEta> etaList = etaBySeq.get(key);
+        if (etaList == null) {
+            etaList = new ArrayList<>();
+            etaBySeq.put(key, etaList);
+        }
+        etaList.add(eta);
+    }
+
+    /**
+     * 獲取指定方向及站點順序的到達時間
+     */
+    public List<RouteEta> getEtas(String direction, String seq) {
+        List<RouteEta> etaList = etaBySeq.get(key(direction, seq));
+        return etaList != null ? etaList : Collections.<RouteEta>emptyList();
+    }
+
+    /**
+     * 獲取指定站點的到達時間（按站點的方向及順序匹配）
+     */
+    public List<RouteEta> getEtasForStop(BusStop stop) {
+        return getEtas(stop.getDirection(), stop.getSequence());
+    }
+
+    public boolean isEmpty() {
+        return etaBySeq.isEmpty();
+    }
+
+    // 方向統一為首字母大寫 ("outbound"/"O" -> "O", "inbound"/"I" -> "I")
+    private static String key(String direction, String seq) {
+        String dir = direction == null || direction.isEmpty()
+                ? "" : String.valueOf(Character.toUpperCase(direction.charAt(0)));
+        return dir + ":" + seq;
+    }
+}
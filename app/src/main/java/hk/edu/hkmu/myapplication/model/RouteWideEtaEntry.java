@@ -0,0 +1,49 @@
+package hk.edu.hkmu.myapplication.model;
+
+import hk.edu.hkmu.codec.JsonCodec;
+import hk.edu.hkmu.codec.JsonField;
+
+/**
+ * route-eta 響應的元素
+ * 條目沒有站點ID，只有方向(dir)和站點順序(seq)，讀出後按這兩者加入 RouteWideEta
+ */
+@JsonCodec
+public class RouteWideEtaEntry {
+    private final String routeId;     // 路線編號，可能為空
+    private final String direction;   // 方向
+    private final String serviceType; // 服務類型，可能為空
+    private final String seq;         // 站點順序
+    private final String etaTime;     // 預計到達時間 (ISO8601 format)
+    private final String remarkTC;    // 備註(中文)
+    private final String remarkEN;    // 備註(英文)
+
+    public RouteWideEtaEntry(@JsonField("route") String routeId, @JsonField("dir") String direction,
+                             @JsonField("service_type") String serviceType,
+                             @JsonField(value = "seq", required = true) String seq,
+                             @JsonField("eta") String etaTime, @JsonField("rmk_tc") String remarkTC,
+                             @JsonField("rmk_en") String remarkEN) {
+        this.routeId = routeId;
+        this.direction = direction;
+        this.serviceType = serviceType;
+        this.seq = seq;
+        this.etaTime = etaTime;
+        this.remarkTC = remarkTC;
+        this.remarkEN = remarkEN;
+    }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public String getSeq() {
+        return seq;
+    }
+
+    /**
+     * 轉換為到站時間；條目沒有路線或服務類型時使用請求中的值
+     */
+    public RouteEta toRouteEta(String requestRouteId, String requestServiceType) {
+        return new RouteEta(routeId.isEmpty() ? requestRouteId : routeId, "", direction,
+                serviceType.isEmpty() ? requestServiceType : serviceType, etaTime, remarkTC, remarkEN);
+    }
+}
@@ -0,0 +1,41 @@
+package hk.edu.hkmu.myapplication.model;
+
+import hk.edu.hkmu.codec.JsonCodec;
+import hk.edu.hkmu.codec.JsonField;
+
+/**
+ * stop 目錄的元素及 stop/{stop_id} 的 data 對象
+ * 位置由 lat 及 long 兩個字段組成，讀出後再合併到 BusStop
+ */
+@JsonCodec
+public class StopDetail {
+    private final String stopId;    // 站點編號
+    private final String nameTC;    // 站點名稱(中文)
+    private final String nameEN;    // 站點名稱(英文)
+    private final String latitude;  // 緯度
+    private final String longitude; // 經度
+
+    public StopDetail(@JsonField(value = "stop", required = true) String stopId,
+                      @JsonField(value = "name_tc", intern = true) String nameTC,
+                      @JsonField(value = "name_en", intern = true) String nameEN,
+                      @JsonField("lat") String latitude, @JsonField("long") String longitude) {
+        this.stopId = stopId;
+        this.nameTC = nameTC;
+        this.nameEN = nameEN;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public String getStopId() {
+        return stopId;
+    }
+
+    /**
+     * 把名稱及位置寫入站點
+     */
+    public void applyTo(BusStop stop) {
+        stop.setNameTC(nameTC);
+        stop.setNameEN(nameEN);
+        stop.setLocation(latitude + "," + longitude);
+    }
+}
@@ -1,5 +1,9 @@
 package hk.edu.hkmu.myapplication.model;
 
+import hk.edu.hkmu.codec.JsonCodec;
+import hk.edu.hkmu.codec.JsonField;
+
+@JsonCodec
 public class StopEta {
 
 
@@ -11,9 +15,12 @@ public class StopEta {
     private String remarkEN;     // 備註(英文)
     private String destEN;
 
+    private final long etaMillis; // 預計到達的時刻 (epoch 毫秒)，沒有時為 EtaTimeParser.INVALID
 
-    public StopEta(String routeId, String direction, String serviceType,
-                    String etaTime, String remarkTC, String remarkEN, String destEn) {
+    public StopEta(@JsonField(value = "route", required = true) String routeId,
+                   @JsonField("dir") String direction, @JsonField("service_type") String serviceType,
+                   @JsonField("eta") String etaTime, @JsonField("rmk_tc") String remarkTC,
+                   @JsonField("rmk_en") String remarkEN, @JsonField("dest_en") String destEn) {
         this.routeId = routeId;
         this.direction = direction;
         this.serviceType = serviceType;
@@ -21,7 +28,8 @@ public class StopEta {
         this.remarkTC = remarkTC;
         this.remarkEN = remarkEN;
         this.destEN=destEn;
-
+        this.etaMillis = etaTime == null || etaTime.isEmpty()
+                ? EtaTimeParser.INVALID : EtaTimeParser.parseEpochMillis(etaTime);
     }
 
     public String getRouteId() {
@@ -52,5 +60,20 @@ public class StopEta {
         return destEN;
     }
 
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    /**
+     * 按 EtaClock 的當前時間計算剩餘分鐘數
+     */
+    public long getMinutesRemaining() {
+        return getMinutesRemaining(EtaClock.currentTimeMillis());
+    }
+
+    public long getMinutesRemaining(long nowMillis) {
+        return EtaClock.minutesUntil(etaMillis, nowMillis);
+    }
+
 
 }
@@ -0,0 +1,85 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveTimeoutTest {
+    // 樣本足夠且剛好觸發重新計算的數量
+    private static final int SAMPLES = 3 * AdaptiveTimeout.RECOMPUTE_INTERVAL;
+
+    private final Endpoint endpoint = Endpoint.STOP;
+    private final AdaptiveTimeout timeout = new AdaptiveTimeout(endpoint);
+
+    @Test
+    public void readTimeoutIsP99TimesOneAndAHalfPlusMargin() {
+        for (int i = 1; i <= SAMPLES; i++) {
+            timeout.recordResponse(i * 100);
+        }
+        // p99 = 2400ms
+        assertEquals(2400 * 3 / 2 + 500, timeout.getReadTimeoutMillis());
+    }
+
+    @Test
+    public void usesCeilingUntilEnoughSamples() {
+        assertEquals(endpoint.getMaxTimeoutMillis(), timeout.getReadTimeoutMillis());
+        assertEquals(AdaptiveTimeout.CONNECT_CEILING_MILLIS, timeout.getConnectTimeoutMillis());
+
+        int belowMin = AdaptiveTimeout.MIN_SAMPLES / AdaptiveTimeout.RECOMPUTE_INTERVAL * AdaptiveTimeout.RECOMPUTE_INTERVAL;
+        record(belowMin, 2000);
+        assertEquals(endpoint.getMaxTimeoutMillis(), timeout.getReadTimeoutMillis());
+
+        record(SAMPLES - belowMin, 2000);
+        assertEquals(2000 * 3 / 2 + 500, timeout.getReadTimeoutMillis());
+    }
+
+    @Test
+    public void fastNetworkIsClampedToFloor() {
+        for (int i = 0; i < SAMPLES; i++) {
+            timeout.recordConnect(10);
+            timeout.recordResponse(10);
+        }
+        assertEquals(endpoint.getMinTimeoutMillis(), timeout.getReadTimeoutMillis());
+        assertEquals(AdaptiveTimeout.CONNECT_FLOOR_MILLIS, timeout.getConnectTimeoutMillis());
+    }
+
+    @Test
+    public void slowNetworkIsClampedToCeiling() {
+        for (int i = 0; i < SAMPLES; i++) {
+            timeout.recordConnect(9000);
+            timeout.recordResponse(9000);
+        }
+        assertEquals(endpoint.getMaxTimeoutMillis(), timeout.getReadTimeoutMillis());
+        assertEquals(AdaptiveTimeout.CONNECT_CEILING_MILLIS, timeout.getConnectTimeoutMillis());
+    }
+
+    @Test
+    public void readTimeoutsWidenTheTimeout() {
+        record(SAMPLES, 10);
+        int floor = endpoint.getMinTimeoutMillis();
+        assertEquals(floor, timeout.getReadTimeoutMillis());
+
+        // 每次超時以當前超時時間作為樣本，p99 隨之上升
+        recordReadTimeouts(AdaptiveTimeout.RECOMPUTE_INTERVAL);
+        int widened = floor * 3 / 2 + 500;
+        assertEquals(widened, timeout.getReadTimeoutMillis());
+
+        recordReadTimeouts(AdaptiveTimeout.RECOMPUTE_INTERVAL);
+        assertEquals(widened * 3 / 2 + 500, timeout.getReadTimeoutMillis());
+
+        recordReadTimeouts(2 * AdaptiveTimeout.RECOMPUTE_INTERVAL);
+        assertEquals(endpoint.getMaxTimeoutMillis(), timeout.getReadTimeoutMillis());
+    }
+
+    private void record(int count, long millis) {
+        for (int i = 0; i < count; i++) {
+            timeout.recordResponse(millis);
+        }
+    }
+
+    private void recordReadTimeouts(int count) {
+        for (int i = 0; i < count; i++) {
+            timeout.recordReadTimeout();
+        }
+    }
+}
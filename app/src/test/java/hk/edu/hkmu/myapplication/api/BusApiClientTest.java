@@ -0,0 +1,83 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 關閉客戶端時，尚未交付結果的請求都以 UNAVAILABLE 結束
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BusApiClientTest {
+    private static final String BASE_URL = "https://kmb.test/v1/transport/kmb/";
+    private static final String EMPTY_BODY = "{\"data\":[]}";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        BusApiClient.shutdown();
+        release.countDown();
+    }
+
+    @Test
+    public void shutdownCompletesPendingFutures() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        String runningUrl = Endpoint.ROUTE_ETA.url(BASE_URL, "1A", "1");
+        String retryingUrl = Endpoint.ROUTE_ETA.url(BASE_URL, "2", "1");
+        transport.enqueue(runningUrl, FakeTransport.ok(EMPTY_BODY).holdUntil(release));
+        transport.enqueue(retryingUrl, FakeTransport.failure("connection reset"),
+                FakeTransport.ok(EMPTY_BODY).holdUntil(release));
+        transport.enqueue(Endpoint.ROUTE_ETA.url(BASE_URL, "3", "1"), FakeTransport.ok(EMPTY_BODY).holdUntil(release));
+        transport.enqueue(Endpoint.ROUTE_ETA.url(BASE_URL, "4", "1"), FakeTransport.ok(EMPTY_BODY).holdUntil(release));
+        BusApiClient client = BusApiClient.getInstance();
+        client.setBaseUrl(BASE_URL);
+        client.setTransport(transport);
+        RequestGovernor governor = client.getRequestGovernor();
+
+        ApiFuture<RouteWideEta> running = client.getRouteWideEtaAsync("1A", "1", Runnable::run, this);
+        ApiFuture<RouteWideEta> retrying = client.getRouteWideEtaAsync("2", "1", Runnable::run, this);
+        // 第二個請求失敗後等待重試，只剩第一個請求在執行
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (transport.requestsTo(retryingUrl).isEmpty() || governor.getInFlightCount() > 1) {
+            assertTrue("request not started", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+        // 只剩一個令牌：第三個請求執行，第四個排隊
+        client.setRateLimit(0.01, 1);
+        client.getRouteWideEtaAsync("3", "1", Runnable::run, this);
+        ApiFuture<RouteWideEta> queued = client.getRouteWideEtaAsync("4", "1", Runnable::run, this);
+        assertEquals(1, governor.getQueuedCount());
+
+        BusApiClient.shutdown();
+        assertShutDown(running);
+        assertShutDown(retrying);
+        assertShutDown(queued);
+        assertEquals(0, governor.getQueuedCount());
+
+        // 關閉後的請求立即結束
+        assertShutDown(client.getRouteWideEtaAsync("5", "1", Runnable::run, this));
+    }
+
+    private static void assertShutDown(ApiFuture<?> future) throws Exception {
+        assertTrue(future.isDone());
+        try {
+            future.get(0, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof UpstreamException);
+            assertEquals("客戶端已關閉", e.getCause().getMessage());
+        }
+    }
+}
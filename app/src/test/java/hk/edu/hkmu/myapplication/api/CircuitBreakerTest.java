@@ -0,0 +1,157 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class CircuitBreakerTest {
+    private static final String BASE_URL = "https://kmb.test/v1/transport/kmb/";
+    private static final long OPEN_MILLIS = 30000;
+
+    private long nanos = TimeUnit.HOURS.toNanos(1);
+    private final CircuitBreaker breaker = new CircuitBreaker("ETA", 3, OPEN_MILLIS, () -> nanos);
+
+    @After
+    public void tearDown() {
+        BusApiClient.shutdown();
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        recordFailures(2);
+        breaker.recordSuccess();
+        // 成功後重新計數
+        recordFailures(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        recordFailures(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(OPEN_MILLIS, breaker.getRetryAfterMillis());
+    }
+
+    @Test
+    public void halfOpensAfterCoolDownWithSingleProbe() {
+        recordFailures(3);
+        advance(OPEN_MILLIS - 1);
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getRetryAfterMillis());
+
+        advance(1);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 探測請求未完成前不放行其他請求
+        assertFalse(breaker.tryAcquire());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void failedProbeReopensForAnotherCoolDown() {
+        recordFailures(3);
+        advance(OPEN_MILLIS);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(OPEN_MILLIS, breaker.getRetryAfterMillis());
+        advance(OPEN_MILLIS / 2);
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void releasedProbeLetsAnotherRequestThrough() {
+        recordFailures(3);
+        advance(OPEN_MILLIS);
+        assertTrue(breaker.tryAcquire());
+        breaker.release();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void openBreakerStopsClientFromReachingUpstream() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        String url = Endpoint.ROUTE_ETA.url(BASE_URL, "1A", "1");
+        transport.enqueue(url, FakeTransport.failure("connection reset"));
+        BusApiClient client = BusApiClient.getInstance();
+        client.setBaseUrl(BASE_URL);
+        client.setTransport(transport);
+
+        // 每次調用最多嘗試兩次，第 5 次失敗後熔斷，之後的重試不再發出
+        for (int i = 0; i < 3; i++) {
+            assertFails(client);
+        }
+        assertEquals(5, transport.requestsTo(url).size());
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker(Endpoint.ROUTE_ETA).getState());
+
+        assertFails(client);
+        assertEquals(5, transport.requestsTo(url).size());
+    }
+
+    @Test
+    public void malformedResponsesAreNeitherRetriedNorCounted() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        String etaUrl = Endpoint.ROUTE_ETA.url(BASE_URL, "1A", "1");
+        String routesUrl = Endpoint.ROUTE.url(BASE_URL);
+        transport.enqueue(etaUrl, FakeTransport.ok("{\"data\":[{\"dir\":\"O\",\"seq\":\"first\"}]}"));
+        transport.enqueue(routesUrl, FakeTransport.ok("{\"data\":[{\"route\":"));
+        BusApiClient client = BusApiClient.getInstance();
+        client.setBaseUrl(BASE_URL);
+        client.setTransport(transport);
+
+        // 超過熔斷閾值的次數，每次只發出一個請求
+        for (int i = 0; i < 6; i++) {
+            assertMalformed(assertFails(client));
+            try {
+                client.getAllRoutesAsync(Runnable::run, this).get(10, TimeUnit.SECONDS);
+                fail("expected failure");
+            } catch (ExecutionException e) {
+                assertMalformed(e.getCause());
+            }
+        }
+        assertEquals(6, transport.requestsTo(etaUrl).size());
+        assertEquals(6, transport.requestsTo(routesUrl).size());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker(Endpoint.ROUTE_ETA).getState());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker(Endpoint.ROUTE).getState());
+    }
+
+    private static void assertMalformed(Throwable error) {
+        assertTrue(String.valueOf(error), error instanceof UpstreamException);
+        assertFalse(((UpstreamException) error).isRetryable());
+        assertTrue(error.getMessage(), error.getMessage().startsWith("響應格式錯誤"));
+    }
+
+    private Throwable assertFails(BusApiClient client) throws Exception {
+        try {
+            client.getRouteWideEtaAsync("1A", "1", Runnable::run, this).get(10, TimeUnit.SECONDS);
+            fail("expected failure");
+            return null;
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UpstreamException);
+            return e.getCause();
+        }
+    }
+
+    private void recordFailures(int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure();
+        }
+    }
+
+    private void advance(long millis) {
+        nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
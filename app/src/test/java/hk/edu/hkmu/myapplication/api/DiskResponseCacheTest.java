@@ -0,0 +1,132 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import hk.edu.hkmu.myapplication.model.BusRoute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 經 BusApiClient 檢查磁盤緩存的條件請求及過期處理，網絡由 FakeTransport 代替
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DiskResponseCacheTest {
+    private static final String BASE_URL = "https://kmb.test/v1/transport/kmb/";
+    private static final String ROUTES_URL = Endpoint.ROUTE.url(BASE_URL);
+    private static final String ROUTES_BODY = "{\"type\":\"RouteList\",\"data\":[{\"route\":\"1A\",\"bound\":\"O\","
+            + "\"service_type\":\"1\",\"orig_en\":\"STAR FERRY\",\"orig_tc\":\"尖沙咀碼頭\","
+            + "\"dest_en\":\"SAU MAU PING (CENTRAL)\",\"dest_tc\":\"秀茂坪(中)\"}]}";
+    private static final String ETAG = "\"routes-v1\"";
+    private static final String LAST_MODIFIED = "Mon, 01 Jan 2024 00:00:00 GMT";
+
+    private final FakeTransport transport = new FakeTransport();
+    private File directory;
+    private BusApiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("response-cache").toFile();
+        client = BusApiClient.getInstance();
+        client.setBaseUrl(BASE_URL);
+        client.setTransport(transport);
+        client.installDiskCache(directory, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        BusApiClient.shutdown();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void validatorsAreStoredAndNotModifiedKeepsEntryFresh() throws Exception {
+        transport.enqueue(ROUTES_URL,
+                FakeTransport.ok(ROUTES_BODY).header("ETag", ETAG).header("Last-Modified", LAST_MODIFIED),
+                FakeTransport.status(304));
+
+        ApiResult<List<BusRoute>> first = loadRoutes();
+        assertEquals(ApiResult.Freshness.FRESH, first.getFreshness());
+        assertEquals("1A", first.getData().get(0).getRouteId());
+        DiskResponseCache.Entry stored = client.getDiskCache().get(ROUTES_URL);
+        assertEquals(ETAG, stored.getEtag());
+        assertEquals(LAST_MODIFIED, stored.getLastModified());
+
+        // 未過期時不發出請求
+        loadRoutes();
+        assertEquals(1, transport.requestsTo(ROUTES_URL).size());
+        assertEquals(1, client.getDiskCache().getHitCount());
+
+        // 過期後帶上驗證信息重新驗證，304 時繼續使用本地副本
+        expireEntries();
+        ApiResult<List<BusRoute>> revalidated = loadRoutes();
+        List<FakeTransport.Request> requests = transport.requestsTo(ROUTES_URL);
+        assertEquals(2, requests.size());
+        assertNull(requests.get(0).header("If-None-Match"));
+        assertEquals(ETAG, requests.get(1).header("If-None-Match"));
+        assertEquals(LAST_MODIFIED, requests.get(1).header("If-Modified-Since"));
+        assertEquals(ApiResult.Freshness.FRESH, revalidated.getFreshness());
+        assertEquals("1A", revalidated.getData().get(0).getRouteId());
+        assertEquals(1, client.getDiskCache().getRevalidatedCount());
+        assertTrue(client.getDiskCache().get(ROUTES_URL).isFresh(Endpoint.ROUTE.getMaxAgeMillis()));
+    }
+
+    @Test
+    public void expiredEntryIsServedStaleWhenUpstreamFails() throws Exception {
+        transport.enqueue(ROUTES_URL, FakeTransport.ok(ROUTES_BODY).header("ETag", ETAG), FakeTransport.status(503));
+        loadRoutes();
+
+        expireEntries();
+        ApiResult<List<BusRoute>> result = loadRoutes();
+        assertEquals(ApiResult.Freshness.STALE, result.getFreshness());
+        assertEquals("1A", result.getData().get(0).getRouteId());
+        assertTrue(result.getAgeMillis() >= TimeUnit.DAYS.toMillis(2));
+        // 重試全部失敗後才使用過期緩存
+        assertEquals(1 + Endpoint.ROUTE.getMaxAttempts(), transport.requestsTo(ROUTES_URL).size());
+    }
+
+    private ApiResult<List<BusRoute>> loadRoutes() throws Exception {
+        return client.getAllRoutesAsync(Runnable::run, this).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 把緩存項的保存時間改為兩天前，並重新安裝緩存使索引從磁盤重新加載
+     */
+    private void expireEntries() throws Exception {
+        long storedAt = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+        File[] metaFiles = directory.listFiles((dir, name) -> name.endsWith(".meta"));
+        assertTrue(metaFiles != null && metaFiles.length > 0);
+        for (File metaFile : metaFiles) {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(metaFile)) {
+                properties.load(in);
+            }
+            properties.setProperty("storedAt", String.valueOf(storedAt));
+            try (OutputStream out = new FileOutputStream(metaFile)) {
+                properties.store(out, null);
+            }
+        }
+        client.installDiskCache(directory, 1024 * 1024);
+    }
+}
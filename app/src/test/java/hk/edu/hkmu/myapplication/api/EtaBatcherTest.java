@@ -0,0 +1,192 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import hk.edu.hkmu.myapplication.model.BusStop;
+import hk.edu.hkmu.myapplication.model.RouteEta;
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
+import hk.edu.hkmu.myapplication.model.StopEta;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 檢查一個窗口內的到站時間請求合併成哪些請求
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EtaBatcherTest {
+    private final HeldScheduler scheduler = new HeldScheduler();
+    private final RequestGovernor governor = new RequestGovernor(Runnable::run, scheduler, System::nanoTime,
+            1000, 1000, 256, 8, 1);
+    private final FakeLoader loader = new FakeLoader();
+    private final EtaBatcher batcher = new EtaBatcher(governor, loader, 40);
+    private final List<String> delivered = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void singleRequestUsesOriginalEtaEndpoint() {
+        addRouteEta("STOP1", "1A");
+        flush();
+        assertEquals(Collections.singletonList("ETA STOP1 1A/1"), loader.loads);
+        assertEquals(Collections.singletonList("STOP1 1A=[1A]"), delivered);
+    }
+
+    @Test
+    public void sameRouteAtStopSharesOneEtaRequest() {
+        addRouteEta("STOP1", "1A");
+        addRouteEta("STOP1", "1A");
+        flush();
+        assertEquals(Collections.singletonList("ETA STOP1 1A/1"), loader.loads);
+        assertEquals(2, delivered.size());
+    }
+
+    @Test
+    public void distinctRoutesAtStopShareStopEta() {
+        addRouteEta("STOP1", "1A");
+        addRouteEta("STOP1", "2");
+        flush();
+        assertEquals(Collections.singletonList("STOP_ETA STOP1"), loader.loads);
+        // 每個調用者只收到自己的路線
+        assertEquals(Arrays.asList("STOP1 1A=[1A]", "STOP1 2=[2]"), delivered);
+    }
+
+    @Test
+    public void routeRequestJoinsStopEtaAtSameStop() {
+        addRouteEta("STOP1", "1A");
+        batcher.addStopEta("STOP1", StopEtaFilter.ALL, new RequestHandle(), result -> delivered.add("stop"));
+        flush();
+        assertEquals(Collections.singletonList("STOP_ETA STOP1"), loader.loads);
+        assertEquals(2, delivered.size());
+    }
+
+    @Test
+    public void stopsWithUnknownPositionsUseOriginalRequests() {
+        addRouteEta("STOP1", "1A");
+        addRouteEta("STOP2", "1A");
+        flush();
+        assertEquals(Arrays.asList("ETA STOP1 1A/1", "ETA STOP2 1A/1"), loader.loads);
+    }
+
+    @Test
+    public void stopsOnKnownRouteShareRouteWideRequest() {
+        batcher.rememberRouteStops(routeStops("1A"));
+        addRouteEta("STOP1", "1A");
+        addRouteEta("STOP2", "1A");
+        flush();
+        assertEquals(Collections.singletonList("ROUTE_ETA 1A/1"), loader.loads);
+        assertEquals(Arrays.asList("STOP1 1A=[1A]", "STOP2 1A=[1A]"), delivered);
+    }
+
+    @Test
+    public void routeStopIndexKeepsOnlyRecentRoutes() {
+        for (int i = 0; i <= EtaBatcher.MAX_INDEXED_ROUTES; i++) {
+            batcher.rememberRouteStops(routeStops("R" + i));
+        }
+        // 最早記錄的路線已被淘汰，逐站請求
+        addRouteEta("STOP1", "R0");
+        addRouteEta("STOP2", "R0");
+        addRouteEta("STOP1", "R" + EtaBatcher.MAX_INDEXED_ROUTES);
+        addRouteEta("STOP2", "R" + EtaBatcher.MAX_INDEXED_ROUTES);
+        flush();
+        assertEquals(Arrays.asList("ROUTE_ETA R" + EtaBatcher.MAX_INDEXED_ROUTES + "/1",
+                "ETA STOP1 R0/1", "ETA STOP2 R0/1"), loader.loads);
+    }
+
+    private void addRouteEta(String stopId, String routeId) {
+        batcher.addRouteEta(stopId, routeId, "1", new RequestHandle(), result -> {
+            StringBuilder routes = new StringBuilder();
+            for (RouteEta eta : result.getData()) {
+                routes.append(routes.length() > 0 ? "," : "").append(eta.getRouteId());
+            }
+            delivered.add(stopId + " " + routeId + "=[" + routes + "]");
+        });
+    }
+
+    private void flush() {
+        assertEquals(1, scheduler.tasks.size());
+        scheduler.tasks.remove(0).run();
+    }
+
+    private static List<BusStop> routeStops(String routeId) {
+        return Arrays.asList(new BusStop("STOP1", routeId, "O", "1", "1"),
+                new BusStop("STOP2", routeId, "O", "1", "2"));
+    }
+
+    /**
+     * 定時任務由測試手動運行
+     */
+    private static class HeldScheduler extends ScheduledThreadPoolExecutor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        HeldScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            tasks.add(command);
+            return null;
+        }
+    }
+
+    /**
+     * 記錄發出的請求並立即返回；響應內容為以逗號分隔的路線，解析時每條路線生成一個到站時間
+     */
+    private static class FakeLoader implements EtaBatcher.Loader {
+        final List<String> loads = new ArrayList<>();
+
+        @Override
+        public RequestHandle load(Endpoint endpoint, String stopId, String routeId, String serviceType,
+                                  Consumer<ApiResult<String>> consumer) {
+            String params;
+            if (endpoint == Endpoint.ROUTE_ETA) {
+                params = routeId + "/" + serviceType;
+            } else if (endpoint == Endpoint.ETA) {
+                params = stopId + " " + routeId + "/" + serviceType;
+            } else {
+                params = stopId;
+            }
+            loads.add(endpoint + " " + params);
+            consumer.accept(ApiResult.fresh(endpoint == Endpoint.ETA ? routeId : "1A,2"));
+            return new RequestHandle();
+        }
+
+        // eta 的響應只有請求的路線，stop-eta 的響應包括站點的所有路線
+        @Override
+        public List<RouteEta> parseStopRoutes(String json, String stopId) {
+            List<RouteEta> etas = new ArrayList<>();
+            for (String routeId : json.split(",")) {
+                etas.add(new RouteEta(routeId, stopId, "O", "1", "", "", ""));
+            }
+            return etas;
+        }
+
+        @Override
+        public List<StopEta> parseStopEtas(String json, StopEtaFilter filter) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public RouteWideEta parseRouteWide(String json, String routeId, String serviceType) {
+            RouteWideEta routeWideEta = new RouteWideEta(routeId, serviceType);
+            routeWideEta.add("O", 1, new RouteEta(routeId, "", "O", serviceType, "", "", ""));
+            routeWideEta.add("O", 2, new RouteEta(routeId, "", "O", serviceType, "", "", ""));
+            return routeWideEta;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package hk.edu.hkmu.myapplication.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 測試用的傳輸層
+ * 按URL返回預設的響應（同一URL按加入順序，用完後重複最後一個），沒有預設的URL返回404；
+ * 記錄每個請求的請求頭，並統計同時進行的請求數。響應可以等待 CountDownLatch 才返回。
+ */
+class FakeTransport implements HttpTransport {
+    private final Map<String, ArrayDeque<Response>> responses = new HashMap<>();
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return "Fake";
+    }
+
+    /**
+     * 為URL加入響應
+     */
+    synchronized FakeTransport enqueue(String url, Response... list) {
+        ArrayDeque<Response> queue = responses.get(url);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            responses.put(url, queue);
+        }
+        Collections.addAll(queue, list);
+        return this;
+    }
+
+    @Override
+    public HttpExchange newExchange(String url, String method, int connectTimeoutMillis, int readTimeoutMillis) {
+        Request request = new Request(url);
+        requests.add(request);
+        return new Exchange(request, next(url));
+    }
+
+    private synchronized Response next(String url) {
+        ArrayDeque<Response> queue = responses.get(url);
+        if (queue == null || queue.isEmpty()) {
+            return status(404);
+        }
+        return queue.size() > 1 ? queue.poll() : queue.peek();
+    }
+
+    /** 發往某個URL的請求 */
+    List<Request> requestsTo(String url) {
+        List<Request> matched = new ArrayList<>();
+        synchronized (requests) {
+            for (Request request : requests) {
+                if (request.url.equals(url)) {
+                    matched.add(request);
+                }
+            }
+        }
+        return matched;
+    }
+
+    int getRequestCount() {
+        return requests.size();
+    }
+
+    /** 同時進行的請求數的最大值 */
+    int getMaxActive() {
+        return maxActive.get();
+    }
+
+    static Response ok(String body) {
+        return new Response(200, body, null);
+    }
+
+    static Response status(int statusCode) {
+        return new Response(statusCode, "", null);
+    }
+
+    /** 連接失敗 */
+    static Response failure(String message) {
+        return new Response(-1, "", new IOException(message));
+    }
+
+    /**
+     * 一個預設的響應
+     */
+    static class Response {
+        final int statusCode;
+        final byte[] body;
+        final IOException error;
+        final Map<String, String> headers = new HashMap<>();
+        CountDownLatch hold;
+
+        Response(int statusCode, String body, IOException error) {
+            this.statusCode = statusCode;
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+            this.error = error;
+        }
+
+        Response header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        /** 響應在 latch 打開後才返回 */
+        Response holdUntil(CountDownLatch latch) {
+            this.hold = latch;
+            return this;
+        }
+    }
+
+    /**
+     * 一個收到的請求
+     */
+    static class Request {
+        final String url;
+        final Map<String, String> headers = new HashMap<>();
+
+        Request(String url) {
+            this.url = url;
+        }
+
+        String header(String name) {
+            return headers.get(name);
+        }
+    }
+
+    private class Exchange implements HttpExchange {
+        private final Request request;
+        private final Response response;
+        private final CountDownLatch aborted = new CountDownLatch(1);
+        private boolean started;
+        private boolean released;
+
+        Exchange(Request request, Response response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            request.headers.put(name, value);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (!started) {
+                started = true;
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            }
+            if (response.error != null) {
+                throw response.error;
+            }
+        }
+
+        @Override
+        public int getStatusCode() throws IOException {
+            connect();
+            if (response.hold != null) {
+                try {
+                    CountDownLatch hold = response.hold;
+                    while (!hold.await(10, TimeUnit.MILLISECONDS)) {
+                        if (aborted.getCount() == 0) {
+                            throw new InterruptedIOException("aborted");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted");
+                }
+            }
+            return response.statusCode;
+        }
+
+        @Override
+        public long getConnectNanos() {
+            return started && response.error == null ? 0 : -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response.headers.get(name);
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(response.body);
+        }
+
+        @Override
+        public InputStream getErrorBody() {
+            return new ByteArrayInputStream(response.body);
+        }
+
+        @Override
+        public String getProtocol() {
+            return "http/1.1";
+        }
+
+        @Override
+        public void abort() {
+            aborted.countDown();
+        }
+
+        @Override
+        public void release(boolean reusable) {
+            if (started && !released) {
+                released = true;
+                active.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyTrackerTest {
+
+    @Test
+    public void percentilesUseNearestRank() {
+        LatencyTracker tracker = new LatencyTracker(128);
+        assertEquals(0, tracker.getPercentile(99));
+        // 亂序記錄 1 - 100
+        for (int i = 0; i < 100; i++) {
+            tracker.record((i * 37) % 100 + 1);
+        }
+        assertEquals(100, tracker.getSampleCount());
+        assertEquals(50, tracker.getPercentile(50));
+        assertEquals(90, tracker.getPercentile(90));
+        assertEquals(99, tracker.getPercentile(99));
+        assertEquals(100, tracker.getPercentile(100));
+        assertEquals(1, tracker.getPercentile(0));
+    }
+
+    @Test
+    public void oldSamplesAreOverwritten() {
+        LatencyTracker tracker = new LatencyTracker(4);
+        for (int i = 1; i <= 6; i++) {
+            tracker.record(i * 1000);
+        }
+        assertEquals(4, tracker.getSampleCount());
+        // 只保留 3000 - 6000
+        assertEquals(3000, tracker.getPercentile(0));
+        assertEquals(6000, tracker.getPercentile(100));
+    }
+}
@@ -0,0 +1,59 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * OkHttp 在 getStatusCode 中才建立連接，建立連接的耗時由連接事件測量
+ */
+public class OkHttpTransportTest {
+    private final MockWebServer server = new MockWebServer();
+    private final OkHttpTransport transport = new OkHttpTransport();
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void newConnectionIsTimedAndPooledConnectionIsNot() throws IOException {
+        server.enqueue(new MockResponse().setBody("first"));
+        server.enqueue(new MockResponse().setBody("second"));
+        server.start();
+        String url = server.url("/route/").toString();
+
+        HttpExchange first = transport.newExchange(url, "GET", 10000, 10000);
+        first.connect();
+        // connect() 不建立連接
+        assertEquals(-1, first.getConnectNanos());
+        assertEquals(200, first.getStatusCode());
+        assertTrue(first.getConnectNanos() > 0);
+        readAndRelease(first);
+
+        HttpExchange second = transport.newExchange(url, "GET", 10000, 10000);
+        second.connect();
+        assertEquals(200, second.getStatusCode());
+        assertEquals(0, second.getConnectNanos());
+        readAndRelease(second);
+        assertEquals(1, transport.getConnectionCount());
+    }
+
+    // 完整讀取響應後連接回到連接池
+    private static void readAndRelease(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getBody()) {
+            while (in.read() != -1) {
+                // 讀到結尾
+            }
+        }
+        exchange.release(true);
+    }
+}
@@ -0,0 +1,230 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 以手動推進的時鐘及定時器檢查限流和調度
+ */
+public class RequestGovernorTest {
+    private final ManualClock clock = new ManualClock();
+    private final ManualScheduler scheduler = new ManualScheduler(clock);
+    private final HeldExecutor held = new HeldExecutor();
+    private final List<String> started = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void burstIsLimitedThenRefillsAtConfiguredRate() {
+        RequestGovernor governor = new RequestGovernor(Runnable::run, scheduler, clock, 10, 20, 256, 100, 1);
+        for (int i = 0; i < 30; i++) {
+            governor.submit(Priority.INTERACTIVE, "page", record("eta" + i));
+        }
+        assertEquals(20, started.size());
+        assertEquals(10, governor.getQueuedCount());
+
+        scheduler.advance(50);
+        assertEquals(20, started.size());
+        scheduler.advance(50);
+        assertEquals(21, started.size());
+        scheduler.advance(500);
+        assertEquals(26, started.size());
+        scheduler.advance(1000);
+        assertEquals(30, started.size());
+        assertEquals(0, governor.getQueuedCount());
+        assertEquals(20, governor.getImmediateCount());
+        assertEquals(10, governor.getDelayedCount());
+    }
+
+    @Test
+    public void idleBucketRefillsOnlyUpToBurst() {
+        RequestGovernor governor = new RequestGovernor(Runnable::run, scheduler, clock, 10, 5, 256, 100, 1);
+        for (int i = 0; i < 5; i++) {
+            governor.submit(Priority.INTERACTIVE, "page", record("first" + i));
+        }
+        scheduler.advance(TimeUnit.SECONDS.toMillis(60));
+        for (int i = 0; i < 8; i++) {
+            governor.submit(Priority.INTERACTIVE, "page", record("second" + i));
+        }
+        assertEquals(10, started.size());
+    }
+
+    @Test
+    public void interactiveRequestUsesReservedSlotWhileBackgroundSaturates() {
+        RequestGovernor governor = new RequestGovernor(held, scheduler, clock, 1000, 1000, 256, 4, 1);
+        for (int i = 0; i < 10; i++) {
+            governor.submit(Priority.BACKGROUND, "catalog", record("bg" + i));
+        }
+        // 背景請求最多用 3 個名額，第 4 個留給互動請求
+        assertEquals(3, held.size());
+        governor.submit(Priority.INTERACTIVE, "eta", record("eta0"));
+        assertEquals(4, held.size());
+
+        // 名額已滿時，等待中的互動請求先於背景請求執行
+        governor.submit(Priority.INTERACTIVE, "eta", record("eta1"));
+        governor.submit(Priority.INTERACTIVE, "eta", record("eta2"));
+        assertEquals(4, held.size());
+        held.runNext(7);
+        assertEquals(Arrays.asList("bg0", "bg1", "bg2", "eta0", "eta1", "eta2", "bg3"), started);
+    }
+
+    @Test
+    public void starvedLowerPriorityWorkIsPromotedAfterItsBound() {
+        RequestGovernor governor = new RequestGovernor(held, scheduler, clock, 1000, 1000, 256, 1, 0);
+        governor.submit(Priority.INTERACTIVE, "eta", record("running"));
+        governor.submit(Priority.BACKGROUND, "catalog", record("background"));
+        governor.submit(Priority.VISIBLE, "page", record("visible"));
+
+        // 未到等待上限時，互動請求一直插隊
+        for (int i = 0; i < 3; i++) {
+            scheduler.advance(500);
+            governor.submit(Priority.INTERACTIVE, "eta", record("eta" + i));
+            held.runNext(1);
+        }
+        // VISIBLE 等待超過 2 秒後先於互動請求執行
+        scheduler.advance(600);
+        governor.submit(Priority.INTERACTIVE, "eta", record("eta3"));
+        held.runNext(2);
+        // BACKGROUND 等待超過 5 秒後先於互動請求執行
+        scheduler.advance(3000);
+        governor.submit(Priority.INTERACTIVE, "eta", record("eta4"));
+        held.runNext(3);
+
+        assertEquals(Arrays.asList("running", "eta0", "eta1", "eta2", "visible", "eta3", "background", "eta4"),
+                started);
+    }
+
+    @Test
+    public void sourcesInOneLaneTakeTurns() {
+        RequestGovernor governor = new RequestGovernor(held, scheduler, clock, 1000, 1000, 256, 1, 0);
+        governor.submit(Priority.VISIBLE, "blocker", record("blocker"));
+        governor.submit(Priority.VISIBLE, "routeA", record("a1"));
+        governor.submit(Priority.VISIBLE, "routeA", record("a2"));
+        governor.submit(Priority.VISIBLE, "routeA", record("a3"));
+        governor.submit(Priority.VISIBLE, "routeB", record("b1"));
+        held.runNext(5);
+        assertEquals(Arrays.asList("blocker", "a1", "b1", "a2", "a3"), started);
+    }
+
+    @Test
+    public void shutdownDropsQueuedTasksAndRejectsNewOnes() {
+        RequestGovernor governor = new RequestGovernor(Runnable::run, scheduler, clock, 10, 1, 256, 100, 1);
+        governor.submit(Priority.INTERACTIVE, "page", record("eta0"));
+        governor.submit(Priority.INTERACTIVE, "page", record("eta1"));
+        governor.submit(Priority.BACKGROUND, "page", record("routes"));
+        assertEquals(2, governor.getQueuedCount());
+
+        governor.shutdown();
+        assertTrue(governor.isShutdown());
+        assertEquals(0, governor.getQueuedCount());
+        try {
+            governor.submit(Priority.INTERACTIVE, "page", record("eta2"));
+            fail("expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // 提交者自行結束請求
+        }
+        // 令牌補充後也不會執行已丟棄的任務
+        scheduler.advance(1000);
+        assertEquals(Arrays.asList("eta0"), started);
+    }
+
+    private Runnable record(String name) {
+        return () -> started.add(name);
+    }
+
+    /**
+     * 手動推進的納秒時鐘
+     */
+    private static class ManualClock implements LongSupplier {
+        long nanos = TimeUnit.HOURS.toNanos(1);
+
+        @Override
+        public long getAsLong() {
+            return nanos;
+        }
+    }
+
+    /**
+     * 不開線程的定時器：任務在 advance 推進時鐘時按到期順序在調用線程中執行
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+        private final ManualClock clock;
+        private final List<Scheduled> scheduled = new ArrayList<>();
+
+        ManualScheduler(ManualClock clock) {
+            super(1);
+            this.clock = clock;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            scheduled.add(new Scheduled(clock.nanos + unit.toNanos(delay), command));
+            return null;
+        }
+
+        void advance(long millis) {
+            long target = clock.nanos + TimeUnit.MILLISECONDS.toNanos(millis);
+            while (true) {
+                scheduled.sort(Comparator.comparingLong(task -> task.dueNanos));
+                if (scheduled.isEmpty() || scheduled.get(0).dueNanos > target) {
+                    break;
+                }
+                Scheduled next = scheduled.remove(0);
+                clock.nanos = Math.max(clock.nanos, next.dueNanos);
+                next.command.run();
+            }
+            clock.nanos = target;
+        }
+
+        private static class Scheduled {
+            final long dueNanos;
+            final Runnable command;
+
+            Scheduled(long dueNanos, Runnable command) {
+                this.dueNanos = dueNanos;
+                this.command = command;
+            }
+        }
+    }
+
+    /**
+     * 任務交給它後算作開始執行，由測試按開始的順序逐個運行；運行完畢即釋放名額
+     */
+    private class HeldExecutor implements Executor {
+        private final ArrayDeque<Runnable> running = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            running.add(task);
+        }
+
+        int size() {
+            return running.size();
+        }
+
+        void runNext(int count) {
+            for (int i = 0; i < count; i++) {
+                running.poll().run();
+            }
+        }
+    }
+}
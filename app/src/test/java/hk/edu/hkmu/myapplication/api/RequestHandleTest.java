@@ -0,0 +1,96 @@
+package hk.edu.hkmu.myapplication.api;
+
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleObserver;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * 句柄與生命週期的綁定：完成、取消或頁面銷毀後都不再被生命週期引用
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RequestHandleTest {
+    private final FakeLifecycle lifecycle = new FakeLifecycle();
+    private final RequestHandle handle = new RequestHandle();
+
+    @Test
+    public void finishRemovesObserver() {
+        handle.bindTo(lifecycle);
+        assertEquals(1, lifecycle.observers.size());
+
+        assertTrue(handle.finish());
+        idleMainLooper();
+        assertTrue(lifecycle.observers.isEmpty());
+    }
+
+    @Test
+    public void bindingFinishedHandleDoesNotLeakObserver() {
+        // 結果可能在 bindTo 之前已在後台線程交付
+        assertTrue(handle.finish());
+        handle.bindTo(lifecycle);
+        idleMainLooper();
+        assertTrue(lifecycle.observers.isEmpty());
+    }
+
+    @Test
+    public void destroyCancelsAndRemovesObserver() {
+        handle.bindTo(lifecycle);
+        lifecycle.destroy();
+        idleMainLooper();
+        assertTrue(handle.isCancelled());
+        assertTrue(lifecycle.observers.isEmpty());
+        assertFalse(handle.finish());
+    }
+
+    @Test
+    public void bindingToDestroyedLifecycleCancels() {
+        lifecycle.destroy();
+        handle.bindTo(lifecycle);
+        assertTrue(handle.isCancelled());
+        assertTrue(lifecycle.observers.isEmpty());
+    }
+
+    private static void idleMainLooper() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static class FakeLifecycle extends Lifecycle {
+        final List<LifecycleEventObserver> observers = new ArrayList<>();
+        private State state = State.RESUMED;
+
+        @Override
+        public void addObserver(LifecycleObserver observer) {
+            observers.add((LifecycleEventObserver) observer);
+        }
+
+        @Override
+        public void removeObserver(LifecycleObserver observer) {
+            observers.remove(observer);
+        }
+
+        @Override
+        public State getCurrentState() {
+            return state;
+        }
+
+        void destroy() {
+            state = State.DESTROYED;
+            for (LifecycleEventObserver observer : new ArrayList<>(observers)) {
+                observer.onStateChanged(() -> this, Event.ON_DESTROY);
+            }
+        }
+    }
+}
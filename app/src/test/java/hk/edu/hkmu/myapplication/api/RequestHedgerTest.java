@@ -0,0 +1,262 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 以手動執行的定時器及提交器檢查對沖的時機、預算及取消
+ * 請求在測試線程中立即完成，對沖只在請求內手動執行定時任務時發出
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RequestHedgerTest {
+    private static final String KEY = "eta/STOP1/1A/1";
+    private static final int MIN_SAMPLES = 20;
+
+    private final HeldScheduler scheduler = new HeldScheduler();
+    private final RequestGovernor governor = new RequestGovernor(Runnable::run, scheduler, System::nanoTime,
+            1000, 1000, 256, 8, 1);
+    private final HeldSubmitter submitter = new HeldSubmitter();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void noHedgeBeforeEnoughSamples() throws Exception {
+        RequestHedger hedger = new RequestHedger(governor, submitter, 1);
+        hedger.setEnabled(true);
+        for (int i = 0; i < MIN_SAMPLES; i++) {
+            assertEquals(-1, hedger.getHedgeDelayMillis());
+            assertEquals("primary", hedger.execute(() -> "primary").get());
+        }
+        assertTrue(scheduler.tasks.isEmpty());
+
+        assertTrue(hedger.getHedgeDelayMillis() >= 0);
+        hedger.execute(() -> "primary");
+        assertEquals(1, scheduler.tasks.size());
+    }
+
+    @Test
+    public void creditsAreCappedAndKeepAccruing() throws Exception {
+        RequestHedger hedger = new RequestHedger(governor, submitter, 0.25);
+        // 40 個請求累積 10 個額度，但最多保留 5 個
+        prime(hedger, 2 * MIN_SAMPLES);
+        hedger.setEnabled(true);
+
+        for (int i = 0; i < 7; i++) {
+            hedger.execute(this::primaryWaitingForHedge);
+        }
+        // 5 + 6 × 0.25 = 6.5 個額度，足夠 6 個對沖
+        assertEquals(6, hedger.getHedgeCount());
+        assertEquals(1, hedger.getBudgetDeniedCount());
+
+        // 之後每 4 個請求累積一個額度
+        hedger.execute(this::primaryWaitingForHedge);
+        assertEquals(6, hedger.getHedgeCount());
+        hedger.execute(this::primaryWaitingForHedge);
+        assertEquals(7, hedger.getHedgeCount());
+        assertEquals(2, hedger.getBudgetDeniedCount());
+        assertEquals(2 * MIN_SAMPLES + 9, hedger.getRequestCount());
+    }
+
+    @Test
+    public void hedgesStayWithinBudget() throws Exception {
+        RequestHedger hedger = new RequestHedger(governor, submitter, 0.05);
+        prime(hedger, MIN_SAMPLES);
+        hedger.setEnabled(true);
+
+        for (int i = 0; i < 200; i++) {
+            hedger.execute(this::primaryWaitingForHedge);
+        }
+        // 220 個請求 × 5% = 11 個額度（累加的浮點誤差可能少一個）
+        long hedges = hedger.getHedgeCount();
+        assertTrue(String.valueOf(hedges), hedges >= 10 && hedges <= 11);
+        assertEquals(200, hedges + hedger.getBudgetDeniedCount());
+        assertEquals(hedges, submitter.handles.size());
+    }
+
+    @Test
+    public void hedgeWinCancelsPrimary() throws Exception {
+        RequestHedger hedger = new RequestHedger(governor, submitter, 1);
+        prime(hedger, MIN_SAMPLES);
+        hedger.setEnabled(true);
+        List<RequestHandle> attempts = new ArrayList<>();
+
+        CompletableFuture<String> result = hedger.execute(() -> {
+            RequestHandle handle = RequestHandle.current();
+            attempts.add(handle);
+            if (attempts.size() > 1) {
+                return "hedge";
+            }
+            // 第一次請求仍在等待響應時發出對沖，對沖先完成
+            scheduler.runAll();
+            submitter.runAll();
+            if (handle.isCancelled()) {
+                throw new InterruptedIOException("aborted");
+            }
+            return "primary";
+        });
+
+        assertEquals("hedge", result.get());
+        assertEquals(2, attempts.size());
+        assertTrue(attempts.get(0).isCancelled());
+        assertFalse(attempts.get(1).isCancelled());
+        assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    public void primaryFailureDoesNotWaitForHedge() throws Exception {
+        RequestHedger hedger = new RequestHedger(governor, submitter, 1);
+        prime(hedger, MIN_SAMPLES);
+        hedger.setEnabled(true);
+        AtomicInteger attempts = new AtomicInteger();
+
+        CompletableFuture<String> result = hedger.execute(() -> {
+            attempts.incrementAndGet();
+            scheduler.runAll();
+            throw new IOException("connection reset");
+        });
+
+        // 對沖已發出但仍在排隊，失敗直接交給重試處理並取消對沖
+        assertTrue(result.isDone());
+        try {
+            result.get();
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(1, submitter.handles.size());
+        assertTrue(submitter.handles.get(0).isCancelled());
+        submitter.runAll();
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    public void parentCancelStopsUnsharedRequest() throws Exception {
+        RequestHedger hedger = new RequestHedger(governor, submitter, 1);
+        prime(hedger, MIN_SAMPLES);
+        hedger.setEnabled(true);
+        RequestHandle parent = new RequestHandle();
+        List<RequestHandle> attempts = new ArrayList<>();
+
+        CompletableFuture<String> result = parent.call(() -> new SingleFlight().execute(KEY,
+                () -> hedger.execute(() -> {
+                    attempts.add(RequestHandle.current());
+                    parent.cancel();
+                    return "primary";
+                }).get()));
+
+        assertEquals("primary", result.get());
+        assertTrue(attempts.get(0).isCancelled());
+    }
+
+    @Test
+    public void parentCancelIsIgnoredWhileFlightIsShared() throws Exception {
+        RequestHedger hedger = new RequestHedger(governor, submitter, 1);
+        prime(hedger, MIN_SAMPLES);
+        hedger.setEnabled(true);
+        SingleFlight flight = new SingleFlight();
+        RequestHandle parent = new RequestHandle();
+        List<RequestHandle> attempts = new ArrayList<>();
+        List<CompletableFuture<String>> followers = new ArrayList<>();
+
+        CompletableFuture<String> leader = parent.call(() -> flight.execute(KEY,
+                () -> hedger.execute(() -> {
+                    attempts.add(RequestHandle.current());
+                    // 另一個調用者加入後，發起的調用者取消
+                    followers.add(flight.execute(KEY, () -> "unused"));
+                    parent.cancel();
+                    return "primary";
+                }).get()));
+
+        assertFalse(attempts.get(0).isCancelled());
+        assertEquals("primary", leader.get());
+        assertEquals("primary", followers.get(0).get());
+        assertEquals(1, flight.getCoalescedCount());
+    }
+
+    /**
+     * 在停用對沖時執行請求，累積延遲樣本（及額度）
+     */
+    private static void prime(RequestHedger hedger, int count) {
+        hedger.setEnabled(false);
+        for (int i = 0; i < count; i++) {
+            hedger.execute(() -> "primary");
+        }
+    }
+
+    /**
+     * 第一次請求：在完成前到達對沖時間，對沖是否發出取決於預算
+     */
+    private String primaryWaitingForHedge() {
+        scheduler.runAll();
+        return "primary";
+    }
+
+    /**
+     * 記錄延遲任務，由測試手動執行
+     */
+    private static class HeldScheduler extends ScheduledThreadPoolExecutor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        HeldScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            tasks.add(command);
+            return null;
+        }
+
+        void runAll() {
+            List<Runnable> due = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * 記錄對沖請求，由測試手動執行；與真實提交一樣，句柄已取消時跳過
+     */
+    private static class HeldSubmitter implements RequestHedger.HedgeSubmitter {
+        final List<RequestHandle> handles = new ArrayList<>();
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void submit(RequestHandle handle, Runnable task) {
+            handles.add(handle);
+            tasks.add(handle.wrap(task));
+        }
+
+        void runAll() {
+            List<Runnable> due = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+}
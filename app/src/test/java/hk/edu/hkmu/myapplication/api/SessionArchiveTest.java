@@ -0,0 +1,176 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 經 FakeTransport 錄製，重新載入存檔後回放
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SessionArchiveTest {
+    private static final String BASE_URL = "https://kmb.test/v1/transport/kmb/";
+    private static final String ROUTES_URL = Endpoint.ROUTE.url(BASE_URL);
+    private static final String STOPS_URL = Endpoint.STOP_LIST.url(BASE_URL);
+    private static final String ETA_URL = Endpoint.ROUTE_ETA.url(BASE_URL, "1A", "1");
+    private static final String STOP_URL = Endpoint.STOP.url(BASE_URL, "STOP1");
+    private static final String ETAG = "\"routes-v1\"";
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+    private static final long SLOW_MILLIS = 100;
+
+    private final FakeTransport transport = new FakeTransport();
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("session-archive").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void replaysRecordedResponsesInOrder() throws Exception {
+        transport.enqueue(ROUTES_URL, FakeTransport.ok("first").header("ETag", ETAG), FakeTransport.ok("second"));
+        RecordingTransport recorder = new RecordingTransport(transport, new SessionArchive(directory));
+        assertEquals("200 first", fetch(recorder, ROUTES_URL, READ_TIMEOUT_MILLIS));
+        assertEquals("200 second", fetch(recorder, ROUTES_URL, READ_TIMEOUT_MILLIS));
+
+        List<SessionArchive.Record> records = new SessionArchive(directory).load();
+        assertEquals(2, records.size());
+        assertEquals(ROUTES_URL, records.get(0).getUrl());
+        assertEquals(ETAG, records.get(0).headers.get("ETag"));
+        assertNull(records.get(1).headers.get("ETag"));
+
+        ReplayTransport replay = new ReplayTransport(new SessionArchive(directory), 5);
+        HttpExchange exchange = replay.newExchange(ROUTES_URL, "GET", 1000, READ_TIMEOUT_MILLIS);
+        assertEquals("200 first", read(exchange));
+        assertEquals(ETAG, exchange.getHeader("ETag"));
+        assertEquals("200 second", fetch(replay, ROUTES_URL, READ_TIMEOUT_MILLIS));
+        // 用完後重複最後一個
+        assertEquals("200 second", fetch(replay, ROUTES_URL, READ_TIMEOUT_MILLIS));
+        assertEquals(3, replay.getServedCount());
+
+        assertEquals("404 ", fetch(replay, STOPS_URL, READ_TIMEOUT_MILLIS));
+        assertEquals(1, replay.getMissingCount());
+    }
+
+    @Test
+    public void abortedAndUnreusableExchangesAreNotRecorded() throws Exception {
+        transport.enqueue(ETA_URL, FakeTransport.ok("eta"));
+        transport.enqueue(STOP_URL, FakeTransport.ok("stop"));
+        transport.enqueue(STOPS_URL, FakeTransport.ok("stops"));
+        RecordingTransport recorder = new RecordingTransport(transport, new SessionArchive(directory));
+
+        HttpExchange aborted = recorder.newExchange(ETA_URL, "GET", 1000, READ_TIMEOUT_MILLIS);
+        aborted.connect();
+        assertEquals(200, aborted.getStatusCode());
+        aborted.abort();
+        drain(aborted.getBody());
+        aborted.release(true);
+
+        HttpExchange unreusable = recorder.newExchange(STOP_URL, "GET", 1000, READ_TIMEOUT_MILLIS);
+        unreusable.connect();
+        assertEquals(200, unreusable.getStatusCode());
+        drain(unreusable.getBody());
+        unreusable.release(false);
+
+        assertEquals("200 stops", fetch(recorder, STOPS_URL, READ_TIMEOUT_MILLIS));
+
+        List<SessionArchive.Record> records = new SessionArchive(directory).load();
+        assertEquals(1, records.size());
+        assertEquals(STOPS_URL, records.get(0).getUrl());
+
+        ReplayTransport replay = new ReplayTransport(new SessionArchive(directory), 1);
+        assertEquals("404 ", fetch(replay, ETA_URL, READ_TIMEOUT_MILLIS));
+        assertEquals("404 ", fetch(replay, STOP_URL, READ_TIMEOUT_MILLIS));
+        assertEquals(2, replay.getMissingCount());
+    }
+
+    @Test
+    public void scaledDelayBeyondReadTimeoutTimesOut() throws Exception {
+        CountDownLatch respond = new CountDownLatch(1);
+        transport.enqueue(ETA_URL, FakeTransport.ok("eta").holdUntil(respond));
+        RecordingTransport recorder = new RecordingTransport(transport, new SessionArchive(directory));
+        Thread server = new Thread(() -> {
+            try {
+                Thread.sleep(SLOW_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond.countDown();
+        });
+        server.start();
+        assertEquals("200 eta", fetch(recorder, ETA_URL, READ_TIMEOUT_MILLIS));
+        server.join();
+
+        List<SessionArchive.Record> records = new SessionArchive(directory).load();
+        assertTrue(String.valueOf(records.get(0).responseMillis), records.get(0).responseMillis >= SLOW_MILLIS);
+
+        // 回放時延遲放大 5 倍，超過讀取超時
+        ReplayTransport replay = new ReplayTransport(new SessionArchive(directory), 5);
+        HttpExchange exchange = replay.newExchange(ETA_URL, "GET", 1000, (int) (2 * SLOW_MILLIS));
+        exchange.connect();
+        try {
+            exchange.getStatusCode();
+            fail("expected timeout");
+        } catch (SocketTimeoutException expected) {
+            // 與真實連接一樣以讀取超時結束
+        }
+    }
+
+    /**
+     * 以客戶端的方式完成一個請求，返回狀態碼及響應內容
+     */
+    private static String fetch(HttpTransport transport, String url, int readTimeoutMillis) throws IOException {
+        return read(transport.newExchange(url, "GET", 1000, readTimeoutMillis));
+    }
+
+    private static String read(HttpExchange exchange) throws IOException {
+        exchange.connect();
+        int status = exchange.getStatusCode();
+        String body = "";
+        if (status == 200) {
+            body = drain(exchange.getBody());
+        }
+        exchange.release(true);
+        return status + " " + body;
+    }
+
+    private static String drain(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
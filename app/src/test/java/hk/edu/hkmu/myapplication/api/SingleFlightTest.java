@@ -0,0 +1,121 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+    private static final String KEY = "eta/STOP1/1A/1";
+
+    private final SingleFlight flight = new SingleFlight();
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        AtomicBoolean sharedSeenByLeader = new AtomicBoolean();
+        Object value = new Object();
+
+        CompletableFuture<CompletableFuture<Object>> leader = CompletableFuture.supplyAsync(() ->
+                flight.execute(KEY, () -> {
+                    loads.incrementAndGet();
+                    SingleFlight.SharedCheck sharing = SingleFlight.currentSharing();
+                    started.countDown();
+                    release.await();
+                    sharedSeenByLeader.set(sharing.isShared());
+                    return value;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 跟隨者立即返回，不在此線程等待
+        CompletableFuture<Object> follower = flight.execute(KEY, () -> {
+            loads.incrementAndGet();
+            return new Object();
+        });
+        assertFalse(follower.isDone());
+
+        release.countDown();
+        assertSame(value, follower.get(5, TimeUnit.SECONDS));
+        assertSame(value, leader.get(5, TimeUnit.SECONDS).get());
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.getExecutedCount());
+        assertEquals(1, flight.getCoalescedCount());
+        assertTrue(sharedSeenByLeader.get());
+    }
+
+    @Test
+    public void leaderFailureReachesFollowers() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> leader = flight.executeAsync(KEY, () -> upstream);
+        CompletableFuture<String> follower = flight.executeAsync(KEY, () -> CompletableFuture.completedFuture("unused"));
+
+        IOException failure = new IOException("HTTP 503");
+        upstream.completeExceptionally(failure);
+
+        for (CompletableFuture<String> future : Arrays.asList(leader, follower)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("expected failure");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        assertEquals(1, flight.getExecutedCount());
+    }
+
+    @Test
+    public void synchronousLoaderFailureCompletesExceptionally() {
+        IOException failure = new IOException("connect failed");
+        CompletableFuture<String> result = flight.execute(KEY, () -> {
+            throw failure;
+        });
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    public void keyIsRemovedBeforeResultIsDelivered() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = flight.executeAsync(KEY, () -> upstream);
+
+        // 結果交付時 key 已移除：在後續處理中再次調用會重新執行
+        CompletableFuture<String> again = first.thenCompose(result -> flight.execute(KEY, () -> result + "-reloaded"));
+        upstream.complete("first");
+
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("first-reloaded", again.get(5, TimeUnit.SECONDS));
+        assertEquals(2, flight.getExecutedCount());
+        assertEquals(0, flight.getCoalescedCount());
+
+        // 失敗後同樣移除
+        flight.execute(KEY, () -> {
+            throw new IOException("failed");
+        });
+        assertEquals("fresh", flight.execute(KEY, () -> "fresh").get());
+        assertEquals(4, flight.getExecutedCount());
+    }
+
+    @Test
+    public void followerCannotCompleteSharedResult() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> leader = flight.executeAsync(KEY, () -> upstream);
+        CompletableFuture<String> follower = flight.executeAsync(KEY, () -> upstream);
+
+        follower.cancel(true);
+        upstream.complete("value");
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,232 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import hk.edu.hkmu.myapplication.model.BusStop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class StopDetailResolverTest {
+    private static final String BASE_URL = "https://kmb.test/v1/transport/kmb/";
+
+    private final List<Pending> pending = new ArrayList<>();
+    private final AtomicReference<StopDetailResolver.Result> resolved = new AtomicReference<>();
+    private int fetchedCount;
+    private int maxOutstanding;
+
+    @After
+    public void tearDown() {
+        BusApiClient.shutdown();
+    }
+
+    @Test
+    public void outstandingFetchesNeverExceedCapAndEveryStopIsDelivered() {
+        StopDetailResolver resolver = new StopDetailResolver(Runnable::run, 3);
+        List<BusStop> stops = stops(12);
+        Collections.shuffle(stops);
+
+        resolver.resolve(stops, this::fetch, resolved::set);
+        assertEquals(3, outstanding());
+        // 每完成一個站點才提交下一個
+        while (!pending.isEmpty() && resolved.get() == null) {
+            Pending next = pending.remove(0);
+            if ("7".equals(next.stop.getSequence())) {
+                next.future.completeExceptionally(new IOException("HTTP 503"));
+            } else {
+                next.stop.setNameTC("站點" + next.stop.getSequence());
+                next.future.complete(null);
+            }
+        }
+
+        assertEquals(3, maxOutstanding);
+        StopDetailResolver.Result result = resolved.get();
+        assertEquals(12, result.getStops().size());
+        for (int i = 0; i < 12; i++) {
+            assertEquals(String.valueOf(i + 1), result.getStops().get(i).getSequence());
+        }
+        assertEquals(11, result.getResolvedStops().size());
+        assertEquals(1, result.getFailures().size());
+        assertEquals("7", result.getFailures().get(0).getStop().getSequence());
+        assertTrue(result.getFailures().get(0).getError() instanceof IOException);
+    }
+
+    @Test
+    public void concurrentWorkersStayWithinCap() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            StopDetailResolver resolver = new StopDetailResolver(executor, 4);
+            Object lock = new Object();
+            int[] active = new int[2];
+            CountDownLatch done = new CountDownLatch(1);
+            resolver.resolve(stops(40), stop -> CompletableFuture.runAsync(() -> {
+                synchronized (lock) {
+                    active[1] = Math.max(active[1], ++active[0]);
+                }
+                sleep(2);
+                synchronized (lock) {
+                    active[0]--;
+                }
+            }, executor), result -> {
+                resolved.set(result);
+                done.countDown();
+            });
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(40, resolved.get().getResolvedStops().size());
+            assertTrue("max active " + active[1], active[1] <= 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelStopsSubmittingRemainingStops() {
+        StopDetailResolver resolver = new StopDetailResolver(Runnable::run, 2);
+        StopDetailResolver.Resolution resolution = resolver.resolve(stops(10), this::fetch, resolved::set);
+        pending.remove(0).future.complete(null);
+        assertEquals(3, fetchedCount);
+
+        resolution.cancel();
+        for (Pending next : pending) {
+            next.future.complete(null);
+        }
+        // 取消後完成的請求不再帶出下一個站點，也不回調
+        assertEquals(3, fetchedCount);
+        assertNull(resolved.get());
+    }
+
+    @Test
+    public void clientResolvesEveryStopWithinConcurrencyCap() throws Exception {
+        FakeTransport transport = routeWithStops(8, null);
+        BusApiClient client = client(transport);
+
+        ApiResult<List<BusStop>> result = client.getRouteStopsAsync("1A", "O", "1", Runnable::run, this)
+                .get(10, TimeUnit.SECONDS);
+        assertEquals(8, result.getData().size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("站" + (i + 1), result.getData().get(i).getNameTC());
+        }
+        assertTrue("max active " + transport.getMaxActive(), transport.getMaxActive() <= 2);
+        assertEquals(1 + 8, transport.getRequestCount());
+    }
+
+    @Test
+    public void cancelledRequestStopsFetchingStopDetails() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeTransport transport = routeWithStops(8, release);
+        BusApiClient client = client(transport);
+
+        ApiFuture<List<BusStop>> future = client.getRouteStopsAsync("1A", "O", "1", Runnable::run, this);
+        // 路線站點請求加上兩個站點詳情請求
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (transport.getRequestCount() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(3, transport.getRequestCount());
+
+        future.cancel(true);
+        release.countDown();
+        // 進行中的站點詳情完成後，限流器沒有排隊或執行中的請求，即不會再發出請求
+        awaitIdle(client.getRequestGovernor());
+        assertEquals(3, transport.getRequestCount());
+    }
+
+    private static void awaitIdle(RequestGovernor governor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (governor.getInFlightCount() + governor.getQueuedCount() > 0) {
+            assertTrue("governor still busy", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 一條有 count 個站點的路線；release 不為 null 時站點詳情等待其打開才返回
+     */
+    private static FakeTransport routeWithStops(int count, CountDownLatch release) {
+        FakeTransport transport = new FakeTransport();
+        StringBuilder routeStops = new StringBuilder();
+        for (BusStop stop : stops(count)) {
+            routeStops.append(routeStops.length() == 0 ? "{\"data\":[" : ",")
+                    .append("{\"route\":\"1A\",\"bound\":\"O\",\"service_type\":\"1\",\"seq\":\"")
+                    .append(stop.getSequence()).append("\",\"stop\":\"").append(stop.getStopId()).append("\"}");
+            FakeTransport.Response detail = FakeTransport.ok("{\"data\":{\"stop\":\"" + stop.getStopId()
+                    + "\",\"name_en\":\"STOP " + stop.getSequence() + "\",\"name_tc\":\"站" + stop.getSequence()
+                    + "\",\"lat\":\"22.3\",\"long\":\"114.1\"}}");
+            transport.enqueue(Endpoint.STOP.url(BASE_URL, stop.getStopId()),
+                    release != null ? detail.holdUntil(release) : detail);
+        }
+        routeStops.append("]}");
+        transport.enqueue(Endpoint.ROUTE_STOP.url(BASE_URL, "1A", "outbound", "1"),
+                FakeTransport.ok(routeStops.toString()));
+        return transport;
+    }
+
+    private static BusApiClient client(FakeTransport transport) {
+        BusApiClient client = BusApiClient.getInstance();
+        client.setBaseUrl(BASE_URL);
+        client.setTransport(transport);
+        client.setStopDetailConcurrency(2);
+        return client;
+    }
+
+    private CompletableFuture<Void> fetch(BusStop stop) {
+        fetchedCount++;
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        pending.add(new Pending(stop, future));
+        maxOutstanding = Math.max(maxOutstanding, outstanding());
+        return future;
+    }
+
+    private int outstanding() {
+        int count = 0;
+        for (Pending next : pending) {
+            if (!next.future.isDone()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<BusStop> stops(int count) {
+        List<BusStop> stops = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            stops.add(new BusStop(String.format("STOP%02d", i), "1A", "O", "1", String.valueOf(i)));
+        }
+        return stops;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Pending {
+        final BusStop stop;
+        final CompletableFuture<Void> future;
+
+        Pending(BusStop stop, CompletableFuture<Void> future) {
+            this.stop = stop;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package hk.edu.hkmu.myapplication.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StopEtaFilterTest {
+
+    @Test
+    public void unrestrictedFilterIsAll() {
+        assertTrue(StopEtaFilter.ALL.isAll());
+        assertSame(StopEtaFilter.ALL, StopEtaFilter.forRoute(null));
+        assertTrue(new StopEtaFilter(null, "", null).isAll());
+        assertTrue(StopEtaFilter.ALL.matches("1A", "O", "1"));
+        assertTrue(StopEtaFilter.ALL.matches(null, null, null));
+
+        assertFalse(StopEtaFilter.forRoute("1A").isAll());
+        assertFalse(new StopEtaFilter(null, "I", null).isAll());
+        assertFalse(new StopEtaFilter(null, null, "2").isAll());
+    }
+
+    @Test
+    public void routeMustMatchExactly() {
+        StopEtaFilter filter = StopEtaFilter.forRoute("1A");
+        assertTrue(filter.matches("1A", "O", "1"));
+        assertTrue(filter.matches("1A", "I", "2"));
+        assertFalse(filter.matches("1", "O", "1"));
+        assertFalse(filter.matches("1a", "O", "1"));
+        assertFalse(filter.matches(null, "O", "1"));
+    }
+
+    @Test
+    public void directionIsNormalizedToInitial() {
+        StopEtaFilter outbound = new StopEtaFilter("1A", "outbound", null);
+        assertEquals(new StopEtaFilter("1A", "O", null), outbound);
+        assertTrue(outbound.matchesDirection("O"));
+        assertTrue(outbound.matchesDirection("o"));
+        assertFalse(outbound.matchesDirection("I"));
+        assertFalse(outbound.matchesDirection(null));
+        assertTrue(new StopEtaFilter(null, "inbound", null).matches("1A", "I", "1"));
+    }
+
+    @Test
+    public void serviceTypeMustMatch() {
+        StopEtaFilter filter = new StopEtaFilter("1A", "O", "1");
+        assertTrue(filter.matches("1A", "O", "1"));
+        assertFalse(filter.matches("1A", "O", "2"));
+        assertFalse(filter.matches("1A", "O", ""));
+    }
+
+    @Test
+    public void acceptFieldChecksOnlyFilteredFields() {
+        StopEtaFilter filter = new StopEtaFilter("1A", "O", "1");
+        assertTrue(filter.acceptField("route", "1A"));
+        assertFalse(filter.acceptField("route", "2"));
+        assertTrue(filter.acceptField("dir", "O"));
+        assertFalse(filter.acceptField("dir", "I"));
+        assertTrue(filter.acceptField("service_type", "1"));
+        assertFalse(filter.acceptField("service_type", "2"));
+        assertTrue(filter.acceptField("eta", "2024-01-01T10:00:00+08:00"));
+        assertTrue(filter.acceptField("dest_en", null));
+    }
+
+    @Test
+    public void equalFiltersShareKey() {
+        StopEtaFilter a = new StopEtaFilter("1A", "outbound", "1");
+        StopEtaFilter b = new StopEtaFilter("1A", "O", "1");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals("1A/O/1", a.toString());
+        assertEquals("*/*/*", StopEtaFilter.ALL.toString());
+        assertNotEquals(StopEtaFilter.forRoute("1A"), a);
+    }
+}
@@ -0,0 +1,64 @@
+package hk.edu.hkmu.myapplication.loadtest;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import hk.edu.hkmu.myapplication.api.BusApiClient;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 以本地模擬服務器對 BusApiClient 進行負載測試
+ * 默認不運行，以 ./gradlew testDebugUnitTest -Ploadtest 開啟；
+ * 用戶數及時長可通過 -Ploadtest.users / -Ploadtest.durationSeconds 調整。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BusApiClientLoadTest {
+    private static final String TAG = "BusApiClientLoadTest";
+    private static final double SERVER_ERROR_RATE = 0.01;
+
+    private KmbStubServer server;
+    private KmbStubServer.Config config;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new KmbStubServer.Config()
+                .latency(LatencyModel.logNormal(40, 0.6))
+                .errors(SERVER_ERROR_RATE, 503);
+        server = new KmbStubServer(config);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        // 測試修改了共享實例的地址及限流，關閉後下次 getInstance() 重新創建
+        BusApiClient.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void routeAndEtaMix_completesUnderLoad() throws Exception {
+        BusApiClient client = BusApiClient.getInstance();
+        client.setBaseUrl(server.getBaseUrl());
+        client.setRateLimit(1000, 1000);
+
+        LoadGenerator.Report report = new LoadGenerator(client, config)
+                .users(Integer.getInteger("loadtest.users", 8))
+                .duration(Long.getLong("loadtest.durationSeconds", 3), TimeUnit.SECONDS)
+                .run();
+        Log.i(TAG, report + "\nserver requests=" + server.getRequestCount() + ", errors=" + server.getErrorCount());
+
+        assertTrue("no operation completed", report.getCompletedCount() > 0);
+        assertTrue("no data parsed", report.getParsedCount() > 0);
+        assertTrue("server returned no errors", server.getErrorCount() > 0);
+        // 服務器錯誤經重試後，調用方看到的失敗率不應超過服務器的錯誤率
+        assertTrue("failure rate " + report.getFailureRate(), report.getFailureRate() < SERVER_ERROR_RATE);
+    }
+}
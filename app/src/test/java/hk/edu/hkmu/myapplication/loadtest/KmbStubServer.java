@@ -0,0 +1,264 @@
+package hk.edu.hkmu.myapplication.loadtest;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * 本地的九巴API模擬服務器
+ * 提供 BusApiClient 使用的端點（route/、route-stop/、stop/、stop、eta/、stop-eta/、route-eta/），
+ * 響應格式與 data.etabus.gov.hk 相同。響應大小、延遲分佈及錯誤率可以設置。
+ * 基於 MockWebServer，每個連接由獨立線程處理，延遲不會阻塞其他連接。
+ */
+public class KmbStubServer {
+    static final String API_PATH = "/v1/transport/kmb/";
+
+    private final Config config;
+    private final MockWebServer server = new MockWebServer();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    public KmbStubServer(Config config) {
+        this.config = config;
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request.getPath());
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public void stop() throws IOException {
+        server.shutdown();
+    }
+
+    /** BusApiClient.setBaseUrl 使用的地址 */
+    public String getBaseUrl() {
+        return server.url(API_PATH).toString();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    private MockResponse respond(String requestPath) {
+        requestCount.incrementAndGet();
+        Random random = ThreadLocalRandom.current();
+        long delay = config.latency.sample(random);
+        if (random.nextDouble() < config.errorRate) {
+            errorCount.incrementAndGet();
+            return json(config.errorStatus, "{\"error\":\"simulated\"}", delay);
+        }
+        if (requestPath == null || !requestPath.startsWith(API_PATH)) {
+            return json(404, "{}", delay);
+        }
+
+        String[] path = requestPath.substring(API_PATH.length()).split("/");
+        try {
+            switch (path[0]) {
+                case "route":
+                    return json(200, routes(), delay);
+                case "route-stop":
+                    return json(200, routeStops(path[1], path[2], path[3]), delay);
+                case "stop":
+                    return json(200, path.length > 1 ? stop(path[1]) : stops(), delay);
+                case "eta":
+                    return json(200, etas(path[2], path[3], 1), delay);
+                case "stop-eta":
+                    return json(200, etas(null, "1", config.routesPerStop), delay);
+                case "route-eta":
+                    return json(200, routeEtas(path[1], path[2]), delay);
+                default:
+                    return json(404, "{}", delay);
+            }
+        } catch (RuntimeException e) {
+            return json(422, "{\"error\":\"" + e + "\"}", delay);
+        }
+    }
+
+    private static MockResponse json(int status, String body, long delayMillis) {
+        return new MockResponse()
+                .setResponseCode(status)
+                .setHeader("Content-Type", "application/json")
+                .setBody(body)
+                .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private String routes() {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < config.routeCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"route\":\"").append(routeId(i)).append("\",\"bound\":\"O\",\"service_type\":\"1\"")
+                    .append(",\"orig_en\":\"Origin ").append(i).append("\",\"orig_tc\":\"起點").append(i)
+                    .append("\",\"dest_en\":\"Destination ").append(i).append("\",\"dest_tc\":\"終點").append(i)
+                    .append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private String routeStops(String route, String bound, String serviceType) {
+        String dir = bound.startsWith("i") ? "I" : "O";
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int seq = 1; seq <= config.stopsPerRoute; seq++) {
+            if (seq > 1) {
+                json.append(',');
+            }
+            json.append("{\"route\":\"").append(route).append("\",\"bound\":\"").append(dir)
+                    .append("\",\"service_type\":\"").append(serviceType).append("\",\"seq\":\"").append(seq)
+                    .append("\",\"stop\":\"").append(stopId(route, seq)).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private String stop(String stopId) {
+        return "{\"data\":" + stopObject(stopId) + "}";
+    }
+
+    private String stops() {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < config.stopCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(stopObject(String.format(Locale.ROOT, "STOP%012d", i)));
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String stopObject(String stopId) {
+        return "{\"stop\":\"" + stopId + "\",\"name_en\":\"Stop " + stopId + "\",\"name_tc\":\"站點" + stopId
+                + "\",\"lat\":\"22.3\",\"long\":\"114.1\"}";
+    }
+
+    // route 為 null 時返回 routesPerStop 條不同路線（stop-eta）
+    private String etas(String route, String serviceType, int routes) {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        boolean first = true;
+        for (int r = 0; r < routes; r++) {
+            String routeId = route != null ? route : routeId(r);
+            for (int n = 1; n <= config.etasPerRoute; n++) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendEta(json, routeId, serviceType, "O", 1, n);
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    private String routeEtas(String route, String serviceType) {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        boolean first = true;
+        for (int seq = 1; seq <= config.stopsPerRoute; seq++) {
+            for (int n = 1; n <= config.etasPerRoute; n++) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendEta(json, route, serviceType, "O", seq, n);
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void appendEta(StringBuilder json, String route, String serviceType, String dir, int seq, int n) {
+        json.append("{\"co\":\"KMB\",\"route\":\"").append(route).append("\",\"dir\":\"").append(dir)
+                .append("\",\"service_type\":").append(serviceType).append(",\"seq\":").append(seq)
+                .append(",\"dest_tc\":\"終點\",\"dest_en\":\"DESTINATION\",\"eta_seq\":").append(n)
+                .append(",\"eta\":\"").append(isoTime(n * 5)).append("\",\"rmk_tc\":\"\",\"rmk_en\":\"\"")
+                .append(",\"data_timestamp\":\"").append(isoTime(0)).append("\"}");
+    }
+
+    private static String isoTime(int minutesFromNow) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("Asia/Hong_Kong"));
+        return format.format(new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(minutesFromNow)));
+    }
+
+    static String routeId(int index) {
+        return String.valueOf(index + 1);
+    }
+
+    static String stopId(String route, int seq) {
+        return String.format(Locale.ROOT, "R%sS%03d", route, seq);
+    }
+
+    /**
+     * 模擬服務器的設置
+     */
+    public static class Config {
+        int routeCount = 100;
+        int stopCount = 500;
+        int stopsPerRoute = 20;
+        int routesPerStop = 5;
+        int etasPerRoute = 3;
+        LatencyModel latency = LatencyModel.none();
+        double errorRate;
+        int errorStatus = 503;
+
+        /** 路線目錄的路線數及站點目錄的站點數 */
+        public Config catalogSize(int routeCount, int stopCount) {
+            this.routeCount = routeCount;
+            this.stopCount = stopCount;
+            return this;
+        }
+
+        /** 每條路線的站點數（route-stop 及 route-eta 的大小） */
+        public Config stopsPerRoute(int stopsPerRoute) {
+            this.stopsPerRoute = stopsPerRoute;
+            return this;
+        }
+
+        /** 每個站點的路線數（stop-eta 的大小）及每條路線的班次數 */
+        public Config etas(int routesPerStop, int etasPerRoute) {
+            this.routesPerStop = routesPerStop;
+            this.etasPerRoute = etasPerRoute;
+            return this;
+        }
+
+        public Config latency(LatencyModel latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param errorRate 返回錯誤的比例 (0 - 1)
+         * @param errorStatus 錯誤的狀態碼，例如 503
+         */
+        public Config errors(double errorRate, int errorStatus) {
+            this.errorRate = errorRate;
+            this.errorStatus = errorStatus;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "latency=" + latency + ", errors=" + errorRate + " (" + errorStatus + ")"
+                    + ", stopsPerRoute=" + stopsPerRoute + ", routesPerStop=" + routesPerStop
+                    + ", etasPerRoute=" + etasPerRoute;
+        }
+    }
+}
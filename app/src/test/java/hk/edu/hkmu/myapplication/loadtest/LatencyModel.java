@@ -0,0 +1,62 @@
+package hk.edu.hkmu.myapplication.loadtest;
+
+import java.util.Random;
+
+/**
+ * 模擬服務器的響應延遲分佈
+ */
+public abstract class LatencyModel {
+
+    /** 抽取一個延遲（毫秒） */
+    public abstract long sample(Random random);
+
+    public static LatencyModel none() {
+        return fixed(0);
+    }
+
+    public static LatencyModel fixed(long millis) {
+        return new LatencyModel() {
+            @Override
+            public long sample(Random random) {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed(" + millis + "ms)";
+            }
+        };
+    }
+
+    public static LatencyModel uniform(long minMillis, long maxMillis) {
+        return new LatencyModel() {
+            @Override
+            public long sample(Random random) {
+                return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform(" + minMillis + "-" + maxMillis + "ms)";
+            }
+        };
+    }
+
+    /**
+     * 對數正態分佈：大部分響應接近中位數，少數響應很慢（長尾），接近移動網絡的情況
+     * @param sigma 越大尾部越長，0.5 時 p99 約為中位數的3倍
+     */
+    public static LatencyModel logNormal(long medianMillis, double sigma) {
+        return new LatencyModel() {
+            @Override
+            public long sample(Random random) {
+                return (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "logNormal(median " + medianMillis + "ms, sigma " + sigma + ")";
+            }
+        };
+    }
+}
@@ -0,0 +1,301 @@
+package hk.edu.hkmu.myapplication.loadtest;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import hk.edu.hkmu.myapplication.api.BusApiClient;
+import hk.edu.hkmu.myapplication.model.RouteWideEta;
+
+/**
+ * BusApiClient 的負載生成器
+ * N 個模擬用戶同時重複「打開路線（站點列表 + 整條路線的到站時間）→ 查看幾個站點的到站時間」，
+ * 記錄每個操作的延遲，並統計吞吐量、延遲百分位數、線程數及內存分配速率。
+ * 單元測試以 android.jar 編譯，JVM 專有的管理接口 (java.lang.management) 通過反射使用。
+ * 結果在調用線程中完成 (Runnable::run)，不需要Android主線程。
+ */
+public class LoadGenerator {
+    private static final long OPERATION_TIMEOUT_SECONDS = 30;
+
+    private final BusApiClient client;
+    private final KmbStubServer.Config serverConfig;
+    private int users = 8;
+    private long durationMillis = 5000;
+    private long thinkTimeMillis = 20;
+    private int etaLookupsPerVisit = 3;
+
+    public LoadGenerator(BusApiClient client, KmbStubServer.Config serverConfig) {
+        this.client = client;
+        this.serverConfig = serverConfig;
+    }
+
+    public LoadGenerator users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    public LoadGenerator duration(long duration, TimeUnit unit) {
+        this.durationMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    public LoadGenerator thinkTime(long millis) {
+        this.thinkTimeMillis = millis;
+        return this;
+    }
+
+    public LoadGenerator etaLookupsPerVisit(int count) {
+        this.etaLookupsPerVisit = count;
+        return this;
+    }
+
+    public Report run() throws InterruptedException {
+        Report report = new Report(users);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        ThreadSampler sampler = new ThreadSampler();
+        sampler.start();
+        CountDownLatch done = new CountDownLatch(users);
+        for (int i = 0; i < users; i++) {
+            long seed = i;
+            Thread user = new Thread(() -> {
+                try {
+                    simulateUser("load-user-" + seed, new Random(seed), deadline, report);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-user-" + i);
+            user.start();
+        }
+        done.await();
+        sampler.interrupt();
+        sampler.join();
+
+        report.elapsedNanos = System.nanoTime() - start;
+        report.peakThreads = sampler.peak;
+        report.liveThreads = Thread.getAllStackTraces().size();
+        long allocatedAfter = allocatedBytes();
+        report.allocatedBytes = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+        return report;
+    }
+
+    // 每個模擬用戶是一個獨立的請求來源，與真實設備上的各個頁面一樣輪流使用請求額度
+    private void simulateUser(String source, Random random, long deadline, Report report) {
+        while (System.nanoTime() < deadline) {
+            String route = KmbStubServer.routeId(random.nextInt(serverConfig.routeCount));
+
+            // 打開路線頁面：站點列表及到站時間同時請求
+            CompletableFuture<?> stops = measure(report, "routeStopList",
+                    () -> client.getRouteStopListAsync(route, "outbound", "1", Runnable::run, source));
+            CompletableFuture<?> routeEta = measure(report, "routeWideEta",
+                    () -> client.getRouteWideEtaAsync(route, "1", Runnable::run, source));
+            CompletableFuture.allOf(stops, routeEta).exceptionally(e -> null).join();
+
+            // 逐個查看站點的到站時間
+            List<CompletableFuture<?>> lookups = new ArrayList<>();
+            for (int i = 0; i < etaLookupsPerVisit; i++) {
+                String stopId = KmbStubServer.stopId(route, 1 + random.nextInt(serverConfig.stopsPerRoute));
+                lookups.add(measure(report, "stopEta", () -> client.getStopEtaAsync(route, stopId, Runnable::run, source)));
+                lookups.add(measure(report, "routeEta", () -> client.getRouteEtaAsync(stopId, route, "1", Runnable::run, source)));
+            }
+            CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+
+            if (thinkTimeMillis > 0) {
+                try {
+                    Thread.sleep(thinkTimeMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static CompletableFuture<?> measure(Report report, String operation,
+                                                Supplier<CompletableFuture<?>> call) {
+        long start = System.nanoTime();
+        return call.get()
+                .orTimeout(OPERATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .whenComplete((result, error) -> report.record(operation, System.nanoTime() - start, error == null,
+                        countItems(result)));
+    }
+
+    // 一次操作解析出的數據條數：列表按元素計算，整條路線的到站時間非空時算一條
+    private static int countItems(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof RouteWideEta) {
+            return ((RouteWideEta) result).isEmpty() ? 0 : 1;
+        }
+        return result != null ? 1 : 0;
+    }
+
+    // 所有存活線程已分配的字節數（已結束的線程不計入，因此是近似值）；JVM 不支持時返回 -1
+    private static long allocatedBytes() {
+        try {
+            Object threads = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            Class<?> threadBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!threadBean.isInstance(threads)) {
+                return -1;
+            }
+            long[] ids = (long[]) threadBean.getMethod("getAllThreadIds").invoke(threads);
+            Method allocated = threadBean.getMethod("getThreadAllocatedBytes", long[].class);
+            long total = 0;
+            for (long bytes : (long[]) allocated.invoke(threads, (Object) ids)) {
+                if (bytes > 0) {
+                    total += bytes;
+                }
+            }
+            return total;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 定時記錄線程數的峰值
+     */
+    private static class ThreadSampler extends Thread {
+        volatile int peak;
+
+        ThreadSampler() {
+            super("load-thread-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peak = Math.max(peak, Thread.getAllStackTraces().size());
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 負載測試結果
+     */
+    public static class Report {
+        private final int users;
+        private final Map<String, List<Long>> latencies = new TreeMap<>();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong parsedItems = new AtomicLong();
+        long elapsedNanos;
+        int peakThreads;
+        int liveThreads;
+        long allocatedBytes;
+
+        Report(int users) {
+            this.users = users;
+        }
+
+        synchronized void record(String operation, long nanos, boolean success, int items) {
+            if (!success) {
+                failures.incrementAndGet();
+                return;
+            }
+            parsedItems.addAndGet(items);
+            List<Long> list = latencies.get(operation);
+            if (list == null) {
+                list = new ArrayList<>();
+                latencies.put(operation, list);
+            }
+            list.add(nanos);
+        }
+
+        public synchronized long getCompletedCount() {
+            long count = 0;
+            for (List<Long> list : latencies.values()) {
+                count += list.size();
+            }
+            return count;
+        }
+
+        public long getFailureCount() {
+            return failures.get();
+        }
+
+        /** 成功的操作共解析出的數據條數 */
+        public long getParsedCount() {
+            return parsedItems.get();
+        }
+
+        /** 失敗操作佔所有操作的比例 */
+        public double getFailureRate() {
+            long total = getCompletedCount() + getFailureCount();
+            return total == 0 ? 0 : (double) getFailureCount() / total;
+        }
+
+        /** 每秒完成的操作數 */
+        public double getThroughput() {
+            return getCompletedCount() / (elapsedNanos / 1e9);
+        }
+
+        /** 所有操作延遲的百分位數（毫秒） */
+        public synchronized double getPercentileMillis(double percentile) {
+            List<Long> all = new ArrayList<>();
+            for (List<Long> list : latencies.values()) {
+                all.addAll(list);
+            }
+            return percentile(all, percentile);
+        }
+
+        public int getPeakThreads() {
+            return peakThreads;
+        }
+
+        /** 內存分配速率 (MB/s)，無法統計時返回負數 */
+        public double getAllocationRateMbPerSecond() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / 1048576.0 / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("users=%d, duration=%.1fs, completed=%d, failed=%d, parsed=%d, "
+                            + "throughput=%.1f ops/s%n", users, elapsedNanos / 1e9, getCompletedCount(),
+                    getFailureCount(), getParsedCount(), getThroughput()));
+            text.append(String.format("latency p50=%.1fms p95=%.1fms p99=%.1fms%n",
+                    getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99)));
+            for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+                List<Long> list = entry.getValue();
+                text.append(String.format("  %-14s n=%-6d p50=%.1fms p95=%.1fms p99=%.1fms%n", entry.getKey(),
+                        list.size(), percentile(list, 50), percentile(list, 95), percentile(list, 99)));
+            }
+            text.append(String.format("threads peak=%d live=%d, allocation=%.1f MB/s",
+                    peakThreads, liveThreads, getAllocationRateMbPerSecond()));
+            return text.toString();
+        }
+
+        private static double percentile(List<Long> nanos, double percentile) {
+            if (nanos.isEmpty()) {
+                return 0;
+            }
+            long[] sorted = new long[nanos.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = nanos.get(i);
+            }
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package hk.edu.hkmu.myapplication.model;
+
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * EtaTimeParser 與原來的 SimpleDateFormat 解析方式的耗時及內存分配比較
+ * 默認不運行，以 ./gradlew testDebugUnitTest -Pbenchmark 開啟；
+ * 迭代次數可通過 -Pbenchmark.iterations 調整。結果的正確性由 EtaTimeParserTest 檢查。
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EtaTimeParserBenchmark {
+    private static final String TAG = "EtaTimeParserBenchmark";
+    private static final String[] SAMPLES = EtaTimeParserTest.SAMPLES;
+
+    @Test
+    public void compareWithSimpleDateFormat() {
+        assumeTrue("benchmark disabled, run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+        int iterations = Integer.getInteger("benchmark.iterations", 200_000);
+        ToLongFunction<String> legacy = text -> {
+            try {
+                return EtaTimeParserTest.legacyParse(text);
+            } catch (ParseException e) {
+                return EtaTimeParser.INVALID;
+            }
+        };
+
+        // 預熱
+        run(legacy, iterations / 10);
+        run(EtaTimeParser::parseEpochMillis, iterations / 10);
+
+        Result legacyResult = run(legacy, iterations);
+        Result parserResult = run(EtaTimeParser::parseEpochMillis, iterations);
+        double speedup = legacyResult.nanosPerOp / parserResult.nanosPerOp;
+        Log.i(TAG, "SimpleDateFormat: " + legacyResult);
+        Log.i(TAG, "EtaTimeParser:    " + parserResult);
+        Log.i(TAG, String.format(Locale.US, "speedup: %.1fx", speedup));
+
+        assertEquals(legacyResult.checksum, parserResult.checksum);
+        assertTrue(String.format(Locale.US, "speedup %.1fx", speedup), speedup > 1);
+    }
+
+    private static Result run(ToLongFunction<String> parser, int iterations) {
+        long allocatedBefore = allocatedBytes();
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += parser.applyAsLong(SAMPLES[i % SAMPLES.length]);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        return new Result(elapsed / (double) iterations,
+                allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / (double) iterations, checksum);
+    }
+
+    // 當前線程已分配的字節數；JVM 不支持時返回 -1（單元測試以 android.jar 編譯，通過反射調用）
+    private static long allocatedBytes() {
+        try {
+            Object threads = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            Class<?> threadBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!threadBean.isInstance(threads)) {
+                return -1;
+            }
+            return (long) threadBean.getMethod("getThreadAllocatedBytes", long.class)
+                    .invoke(threads, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static class Result {
+        final double nanosPerOp;
+        final double bytesPerOp;
+        final long checksum;
+
+        Result(double nanosPerOp, double bytesPerOp, long checksum) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.1f ns/op, %.1f B/op (checksum %d)", nanosPerOp, bytesPerOp, checksum);
+        }
+    }
+}
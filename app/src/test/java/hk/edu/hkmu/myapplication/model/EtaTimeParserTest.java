@@ -0,0 +1,75 @@
+package hk.edu.hkmu.myapplication.model;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * EtaTimeParser 的結果與原來的 SimpleDateFormat 解析方式相同
+ */
+public class EtaTimeParserTest {
+    static final String[] SAMPLES = buildSamples();
+
+    @Test
+    public void matchesSimpleDateFormat() throws Exception {
+        for (String sample : SAMPLES) {
+            assertEquals(sample, legacyParse(sample), EtaTimeParser.parseEpochMillis(sample));
+        }
+        assertEquals(legacyParse("2024-02-29T23:59:59.250+08:00"),
+                EtaTimeParser.parseEpochMillis("2024-02-29T23:59:59.250+08:00"));
+        assertEquals(0L, EtaTimeParser.parseEpochMillis("1970-01-01T08:00:00+08:00"));
+        assertEquals(0L, EtaTimeParser.parseEpochMillis("1970-01-01T00:00:00Z"));
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        String[] invalid = {null, "", "2024-05-01", "2024-05-01T12:00:00", "2024-05-01 12:00:00+08:00",
+                "2024-13-01T12:00:00+08:00", "2023-02-29T12:00:00+08:00", "2024-05-01T24:00:00+08:00",
+                "2024-05-01T12:00:00+0800", "2024-05-01T12:00:00.+08:00", "2024-05-01T12:00:00+08:00x"};
+        for (String text : invalid) {
+            assertEquals(text, EtaTimeParser.INVALID, EtaTimeParser.parseEpochMillis(text));
+        }
+    }
+
+    /**
+     * 原來 RouteEta.calculateMinutes 的解析方式：每次創建 SimpleDateFormat 及 TimeZone
+     */
+    static long legacyParse(String text) throws ParseException {
+        try {
+            return legacyParse(text, "yyyy-MM-dd'T'HH:mm:ssXXX");
+        } catch (ParseException e) {
+            return legacyParse(text, "yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+        }
+    }
+
+    private static long legacyParse(String text, String format) throws ParseException {
+        SimpleDateFormat sdf = new SimpleDateFormat(format, Locale.US);
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        sdf.setLenient(false);
+        ParsePosition position = new ParsePosition(0);
+        Date date = sdf.parse(text, position);
+        if (date == null || position.getIndex() != text.length()) {
+            throw new ParseException(text, position.getErrorIndex());
+        }
+        return date.getTime();
+    }
+
+    // 九巴API常見的到站時間：同一天內不同的時分秒，部分帶毫秒
+    private static String[] buildSamples() {
+        String[] samples = new String[64];
+        for (int i = 0; i < samples.length; i++) {
+            int minuteOfDay = i * 22 % 1440;
+            String fraction = i % 4 == 0 ? "." + String.format(Locale.US, "%03d", i * 7) : "";
+            samples[i] = String.format(Locale.US, "2024-%02d-%02dT%02d:%02d:%02d%s+08:00",
+                    1 + i % 12, 1 + i % 28, minuteOfDay / 60, minuteOfDay % 60, i % 60, fraction);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,13 @@
+plugins {
+    `java-library`
+}
+
+// 模型類的JSON解碼器生成器：app 以 compileOnly 使用註解，以 annotationProcessor 運行處理器
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,17 @@
+package hk.edu.hkmu.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 為模型類生成串流JSON解碼器 {模型名}JsonCodec，與模型放在同一個包
+ * 解碼器使用構造函數中帶 @JsonField 的參數，按字段名 switch 分派，
+ * 不使用反射，也不建立JSON樹；沒有 @JsonField 的參數由調用者傳入。
+ * 可選的 filter 在讀到字段時提前跳過整個對象，symbols 用於共享重複的字符串。
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JsonCodec {
+}
@@ -0,0 +1,262 @@
+package hk.edu.hkmu.codec;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * 為帶 @JsonCodec 的模型類生成 {模型名}JsonCodec
+ * 生成的代碼只依賴 android.util.JsonReader，運行時不需要此模組
+ */
+public class JsonCodecProcessor extends AbstractProcessor {
+
+    // 生成代碼內部使用的變量名，構造函數參數不能與之同名
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList("reader", "filter", "symbols", "field", "rejected"));
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(JsonCodec.class.getCanonicalName(), JsonField.class.getCanonicalName()));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JsonCodec.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@JsonCodec 只能用於類");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            ExecutableElement constructor = findConstructor(type);
+            if (constructor == null || !validate(constructor)) {
+                continue;
+            }
+            try {
+                write(type, constructor);
+            } catch (IOException e) {
+                error(type, "無法生成解碼器: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    // 帶 @JsonField 參數的構造函數，必須剛好一個
+    private ExecutableElement findConstructor(TypeElement type) {
+        ExecutableElement found = null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            for (VariableElement parameter : constructor.getParameters()) {
+                if (parameter.getAnnotation(JsonField.class) != null) {
+                    if (found != null && found != constructor) {
+                        error(type, "只能有一個構造函數使用 @JsonField");
+                        return null;
+                    }
+                    found = constructor;
+                }
+            }
+        }
+        if (found == null) {
+            error(type, "沒有使用 @JsonField 的構造函數");
+        } else if (found.getModifiers().contains(Modifier.PRIVATE)) {
+            error(found, "使用 @JsonField 的構造函數不能是 private");
+            return null;
+        }
+        return found;
+    }
+
+    private boolean validate(ExecutableElement constructor) {
+        boolean valid = true;
+        Set<String> fields = new HashSet<>();
+        for (VariableElement parameter : constructor.getParameters()) {
+            String name = parameter.getSimpleName().toString();
+            if (RESERVED.contains(name)) {
+                error(parameter, "參數名與生成代碼的變量衝突: " + name);
+                valid = false;
+            }
+            JsonField field = parameter.getAnnotation(JsonField.class);
+            if (field == null) {
+                continue;
+            }
+            if (!"java.lang.String".equals(parameter.asType().toString())) {
+                error(parameter, "@JsonField 參數必須是 String");
+                valid = false;
+            }
+            if (!fields.add(field.value())) {
+                error(parameter, "重複的JSON字段: " + field.value());
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    private void write(TypeElement type, ExecutableElement constructor) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String model = type.getSimpleName().toString();
+        String codec = model + "JsonCodec";
+        List<VariableElement> mapped = new ArrayList<>();
+        List<VariableElement> context = new ArrayList<>();
+        for (VariableElement parameter : constructor.getParameters()) {
+            (parameter.getAnnotation(JsonField.class) != null ? mapped : context).add(parameter);
+        }
+        String contextParams = join(context, true);
+        String contextArgs = join(context, false);
+
+        Writer writer = processingEnv.getFiler()
+                .createSourceFile(pkg.getQualifiedName() + "." + codec, type).openWriter();
+        try (PrintWriter out = new PrintWriter(writer)) {
+            if (!pkg.isUnnamed()) {
+                out.println("package " + pkg.getQualifiedName() + ";");
+                out.println();
+            }
+            out.println("import android.util.JsonReader;");
+            out.println("import android.util.JsonToken;");
+            out.println();
+            out.println("import java.io.IOException;");
+            out.println("import java.util.function.BiPredicate;");
+            out.println("import java.util.function.UnaryOperator;");
+            out.println();
+            out.println("/**");
+            out.println(" * " + model + " 的JSON解碼器，由 JsonCodecProcessor 生成，請勿修改");
+            out.println(" */");
+            out.println("public final class " + codec + " {");
+            out.println();
+            out.println("    private " + codec + "() {");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * 讀取一個JSON對象，缺少必需字段時返回 null");
+            out.println("     */");
+            out.println("    public static " + model + " read(JsonReader reader" + contextParams + ") throws IOException {");
+            out.println("        return read(reader, (BiPredicate<String, String>) null" + contextArgs + ");");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * 讀取一個JSON對象；每讀到一個字段就以 (字段名, 值) 交給 filter 檢查，");
+            out.println("     * 不通過時跳過對象餘下的字段並返回 null。filter 為 null 時不檢查");
+            out.println("     */");
+            out.println("    public static " + model + " read(JsonReader reader, BiPredicate<String, String> filter"
+                    + contextParams + ") throws IOException {");
+            out.println("        return read(reader, filter, (UnaryOperator<String>) null" + contextArgs + ");");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * 同上；intern 的字段讀出後經 symbols 換成共享的實例，symbols 為 null 時不換");
+            out.println("     */");
+            out.println("    public static " + model + " read(JsonReader reader, BiPredicate<String, String> filter,");
+            out.println("                                     UnaryOperator<String> symbols" + contextParams
+                    + ") throws IOException {");
+            for (VariableElement parameter : mapped) {
+                out.println("        String " + parameter.getSimpleName() + " = null;");
+            }
+            out.println("        boolean rejected = false;");
+            out.println();
+            out.println("        reader.beginObject();");
+            out.println("        while (reader.hasNext()) {");
+            out.println("            String field = reader.nextName();");
+            out.println("            if (rejected) {");
+            out.println("                reader.skipValue();");
+            out.println("                continue;");
+            out.println("            }");
+            out.println("            switch (field) {");
+            for (VariableElement parameter : mapped) {
+                String name = parameter.getSimpleName().toString();
+                out.println("                case \"" + escape(parameter.getAnnotation(JsonField.class).value()) + "\":");
+                out.println("                    " + name + " = nextString(reader, "
+                        + (parameter.getAnnotation(JsonField.class).intern() ? "symbols" : "null") + ");");
+                out.println("                    rejected = filter != null && !filter.test(field, " + name + ");");
+                out.println("                    break;");
+            }
+            out.println("                default:");
+            out.println("                    reader.skipValue();");
+            out.println("                    break;");
+            out.println("            }");
+            out.println("        }");
+            out.println("        reader.endObject();");
+            out.println();
+            StringBuilder missing = new StringBuilder("rejected");
+            for (VariableElement parameter : mapped) {
+                if (parameter.getAnnotation(JsonField.class).required()) {
+                    missing.append(" || ").append(parameter.getSimpleName()).append(" == null");
+                }
+            }
+            out.println("        if (" + missing + ") {");
+            out.println("            return null;");
+            out.println("        }");
+            StringBuilder args = new StringBuilder();
+            for (VariableElement parameter : constructor.getParameters()) {
+                if (args.length() > 0) {
+                    args.append(", ");
+                }
+                String name = parameter.getSimpleName().toString();
+                JsonField field = parameter.getAnnotation(JsonField.class);
+                args.append(field == null || field.required() ? name : "orEmpty(" + name + ")");
+            }
+            out.println("        return new " + model + "(" + args + ");");
+            out.println("    }");
+            out.println();
+            out.println("    // 讀取字符串或數字值，null 返回 null");
+            out.println("    private static String nextString(JsonReader reader, UnaryOperator<String> symbols) throws IOException {");
+            out.println("        if (reader.peek() == JsonToken.NULL) {");
+            out.println("            reader.nextNull();");
+            out.println("            return null;");
+            out.println("        }");
+            out.println("        String value = reader.nextString();");
+            out.println("        return symbols != null ? symbols.apply(value) : value;");
+            out.println("    }");
+            out.println();
+            out.println("    private static String orEmpty(String value) {");
+            out.println("        return value == null ? \"\" : value;");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    // 調用者傳入的參數，declare 為 true 時生成聲明（", String stopId"），否則生成實參（", stopId"）
+    private static String join(List<VariableElement> parameters, boolean declare) {
+        StringBuilder sb = new StringBuilder();
+        for (VariableElement parameter : parameters) {
+            sb.append(", ");
+            if (declare) {
+                sb.append(typeName(parameter)).append(' ');
+            }
+            sb.append(parameter.getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    // java.lang 的類型不需要導入，使用簡單名稱
+    private static String typeName(VariableElement parameter) {
+        String name = parameter.asType().toString();
+        String simple = name.substring(name.lastIndexOf('.') + 1);
+        return name.equals("java.lang." + simple) ? simple : name;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
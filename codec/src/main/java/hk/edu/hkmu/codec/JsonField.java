@@ -0,0 +1,21 @@
+package hk.edu.hkmu.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 構造函數參數對應的JSON字段名（String 類型）
+ * 字段不存在或為 null 時傳入空字符串；required 的字段缺少時整個對象被跳過
+ * intern 的字段在調用者提供符號表時，相同的值共用一個實例（用於大量重複的目錄值）
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.PARAMETER)
+public @interface JsonField {
+    String value();
+
+    boolean required() default false;
+
+    boolean intern() default false;
+}
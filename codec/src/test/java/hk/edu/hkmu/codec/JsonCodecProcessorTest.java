@@ -0,0 +1,208 @@
+package hk.edu.hkmu.codec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 以處理器編譯一個小模型，再運行生成的解碼器
+ * android.util.JsonReader 由一個按順序返回字段名及值的簡化版本代替
+ */
+public class JsonCodecProcessorTest {
+    private static final String JSON_TOKEN = "package android.util;\n"
+            + "public enum JsonToken { BEGIN_ARRAY, BEGIN_OBJECT, STRING, NULL }\n";
+
+    // 只支持一個平面對象：構造參數為字段名及值交替；值為 String、null 或代表嵌套值的 Object[]
+    private static final String JSON_READER = "package android.util;\n"
+            + "public final class JsonReader {\n"
+            + "    private final Object[] fields;\n"
+            + "    private int index = -1;\n"
+            + "    public int skipped;\n"
+            + "    public JsonReader(Object... fields) { this.fields = fields; }\n"
+            + "    public void beginObject() { expect(index == -1); index = 0; }\n"
+            + "    public void endObject() { expect(index == fields.length); index++; }\n"
+            + "    public boolean hasNext() { return index < fields.length; }\n"
+            + "    public String nextName() { expect(index % 2 == 0); return (String) fields[index++]; }\n"
+            + "    public JsonToken peek() {\n"
+            + "        Object value = fields[index];\n"
+            + "        return value == null ? JsonToken.NULL\n"
+            + "                : value instanceof String ? JsonToken.STRING : JsonToken.BEGIN_ARRAY;\n"
+            + "    }\n"
+            + "    public void nextNull() { expect(fields[index] == null); index++; }\n"
+            + "    public String nextString() { expect(fields[index] instanceof String); return (String) fields[index++]; }\n"
+            + "    public void skipValue() { expect(index % 2 == 1); index++; skipped++; }\n"
+            + "    private static void expect(boolean state) { if (!state) throw new IllegalStateException(); }\n"
+            + "}\n";
+
+    private static final String MODEL = "package sample;\n"
+            + "import hk.edu.hkmu.codec.JsonCodec;\n"
+            + "import hk.edu.hkmu.codec.JsonField;\n"
+            + "@JsonCodec\n"
+            + "public class Stop {\n"
+            + "    public final String stopId, name, district, source;\n"
+            + "    public Stop(@JsonField(value = \"stop\", required = true) String stopId,\n"
+            + "                @JsonField(\"name_en\") String name,\n"
+            + "                @JsonField(value = \"district\", intern = true) String district, String source) {\n"
+            + "        this.stopId = stopId;\n"
+            + "        this.name = name;\n"
+            + "        this.district = district;\n"
+            + "        this.source = source;\n"
+            + "    }\n"
+            + "}\n";
+
+    private Path directory;
+    private URLClassLoader loader;
+    private Class<?> readerClass;
+    private Method read;
+    private Method readWithSymbols;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("json-codec");
+        compile(directory);
+        loader = new URLClassLoader(new URL[]{directory.resolve("classes").toUri().toURL()},
+                getClass().getClassLoader());
+        readerClass = loader.loadClass("android.util.JsonReader");
+        Class<?> codec = loader.loadClass("sample.StopJsonCodec");
+        read = codec.getMethod("read", readerClass, String.class);
+        readWithSymbols = codec.getMethod("read", readerClass, BiPredicate.class, UnaryOperator.class, String.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        loader.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws Exception {
+        Object reader = reader("stop", "A1", "name_sc", "站", "lat", new Object[0], "name_en", "STAR FERRY");
+        Object stop = read.invoke(null, reader, "route-stop");
+
+        assertEquals("A1", field(stop, "stopId"));
+        assertEquals("STAR FERRY", field(stop, "name"));
+        assertEquals("route-stop", field(stop, "source"));
+        assertEquals(2, readerClass.getField("skipped").getInt(reader));
+    }
+
+    @Test
+    public void missingRequiredFieldRejectsObject() throws Exception {
+        assertNull(read.invoke(null, reader("name_en", "STAR FERRY"), "route-stop"));
+        // 值為 null 的必需字段同樣視為缺少
+        assertNull(read.invoke(null, reader("stop", null, "name_en", "STAR FERRY"), "route-stop"));
+    }
+
+    @Test
+    public void nullOrAbsentOptionalFieldBecomesEmpty() throws Exception {
+        Object stop = read.invoke(null, reader("stop", "A1", "name_en", null), "route-stop");
+        assertNotNull(stop);
+        assertEquals("", field(stop, "name"));
+        assertEquals("", field(stop, "district"));
+    }
+
+    @Test
+    public void internedFieldSharesInstanceAcrossReads() throws Exception {
+        Map<String, String> table = new HashMap<>();
+        UnaryOperator<String> symbols = value -> {
+            String canonical = table.putIfAbsent(value, value);
+            return canonical != null ? canonical : value;
+        };
+        Object first = readWithSymbols.invoke(null, reader("stop", "A1", "district", new String("KOWLOON CITY")),
+                null, symbols, "stop");
+        Object second = readWithSymbols.invoke(null, reader("stop", "A2", "district", new String("KOWLOON CITY")),
+                null, symbols, "stop");
+        assertSame(field(first, "district"), field(second, "district"));
+
+        // 不是 intern 的字段不經過符號表
+        Object third = readWithSymbols.invoke(null, reader("stop", new String("A1")), null, symbols, "stop");
+        assertEquals("A1", field(third, "stopId"));
+        assertTrue(field(third, "stopId") != field(first, "stopId"));
+    }
+
+    private Object reader(Object... fields) throws Exception {
+        return readerClass.getConstructor(Object[].class).newInstance((Object) fields);
+    }
+
+    private static Object field(Object model, String name) throws Exception {
+        return model.getClass().getField(name).get(model);
+    }
+
+    /**
+     * 以 JsonCodecProcessor 編譯模型及簡化的 android.util 類
+     */
+    private static void compile(Path directory) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("需要在JDK中運行", compiler);
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+        Path generated = Files.createDirectories(directory.resolve("generated"));
+        List<File> sources = new ArrayList<>();
+        sources.add(write(directory, "android/util/JsonToken.java", JSON_TOKEN));
+        sources.add(write(directory, "android/util/JsonReader.java", JSON_READER));
+        sources.add(write(directory, "sample/Stop.java", MODEL));
+
+        // 註解類與處理器在同一個輸出目錄或JAR
+        String annotations;
+        try {
+            annotations = Paths.get(JsonCodec.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toString();
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+                    Arrays.asList("-classpath", annotations, "-d", classes.toString(), "-s", generated.toString()),
+                    null, files.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Collections.singletonList(new JsonCodecProcessor()));
+            boolean success = task.call();
+            StringBuilder messages = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                messages.append(diagnostic).append('\n');
+            }
+            assertTrue(messages.toString(), success);
+        }
+    }
+
+    private static File write(Path directory, String path, String source) throws IOException {
+        Path file = directory.resolve("src").resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+}